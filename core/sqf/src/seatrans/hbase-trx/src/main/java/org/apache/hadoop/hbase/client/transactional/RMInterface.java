@@ -42,7 +42,6 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HTableDescriptor;
-import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.ZooKeeperConnectionException;
@@ -78,6 +77,7 @@ import org.apache.hadoop.hbase.client.transactional.TransactionMap;
 import org.apache.hadoop.hbase.regionserver.transactional.IdTm;
 import org.apache.hadoop.hbase.regionserver.transactional.IdTmException;
 import org.apache.hadoop.hbase.regionserver.transactional.IdTmId;
+import org.apache.hadoop.hbase.regionserver.transactional.IdTmBatcher;
 
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.TrxRegionService;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.PushEpochRequest;
@@ -146,6 +146,17 @@ public class RMInterface {
     private static AlgorithmType envTransactionAlgorithm;
     private AlgorithmType transactionAlgorithm;
 
+    // SSCC start ids taken in shared id_block requests, null when disabled
+    private static IdTmBatcher startIdBatcher;
+    static {
+        int idBatchSize = 0;
+        String envset = System.getenv("TM_IDTM_BATCH_SIZE");
+        if (envset != null)
+           idBatchSize = Integer.parseInt(envset);
+        if (envTransactionAlgorithm == AlgorithmType.SSCC && idBatchSize > 1)
+           startIdBatcher = new IdTmBatcher(new IdTm(false), ID_TM_SERVER_TIMEOUT, idBatchSize);
+    }
+
     public RMInterface(final String tableName, Connection connection) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("RMInterface constructor:"
 					    + " tableName: " + tableName);
@@ -171,6 +182,10 @@ public class RMInterface {
 
     }
 
+    public AlgorithmType getTransactionAlgorithm() {
+        return transactionAlgorithm;
+    }
+
     public void pushRegionEpoch (HTableDescriptor desc, final TransactionState ts) throws IOException {
        if (LOG.isDebugEnabled()) LOG.debug("pushRegionEpoch start; transId: " + ts.getTransactionId());
 
@@ -292,7 +307,9 @@ public class RMInterface {
        }
     }
 
-    public synchronized TransactionState registerTransaction(final TransactionalTableClient pv_table,
+    // Not synchronized on the table; concurrent DML of different transactions, or
+    // of one transaction on different regions, only meet on the TransactionState.
+    public TransactionState registerTransaction(final TransactionalTableClient pv_table,
 							     final long transactionID,
 							     final byte[] row) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("Enter registerTransaction, transaction ID: " + transactionID
@@ -317,8 +334,12 @@ public class RMInterface {
               IdTmId startId;
               try {
                  startId = new IdTmId();
-                 if (LOG.isTraceEnabled()) LOG.trace("registerTransaction getting new startId with timeout " + ID_TM_SERVER_TIMEOUT);
-                 idServer.id(ID_TM_SERVER_TIMEOUT, startId);
+                 if (startIdBatcher != null)
+                    startId.val = startIdBatcher.id();
+                 else {
+                    if (LOG.isTraceEnabled()) LOG.trace("registerTransaction getting new startId with timeout " + ID_TM_SERVER_TIMEOUT);
+                    idServer.id(ID_TM_SERVER_TIMEOUT, startId);
+                 }
                  if (LOG.isTraceEnabled()) LOG.trace("registerTransaction idServer.id returned: " + startId.val);
               } catch (IdTmException exc) {
                  LOG.error("registerTransaction: IdTm threw exception " , exc);
@@ -339,9 +360,9 @@ public class RMInterface {
               else {
                  if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction, adding new TransactionState to map " + ts);
                  mapTransactionStates.put(transactionID, ts);
+                 register = true;
               }
            }// end synchronized
-           register = true;
         }
         else {
             if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction - Found TS in map for tx " + ts);
@@ -351,28 +372,15 @@ public class RMInterface {
         if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction - retrieved location with startKey="
               + Hex.encodeHexString(location.getRegionInfo().getStartKey()) + ", endKey="
               + Hex.encodeHexString(location.getRegionInfo().getEndKey()) + " row= " + Hex.encodeHexString(row));
-        TransactionRegionLocation trLocation = new TransactionRegionLocation(location.getRegionInfo(),
-                                                                             location.getServerName());
-        if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction, created TransactionRegionLocation [" + trLocation.getRegionInfo().getRegionNameAsString() + "], endKey: "
-                  + Hex.encodeHexString(trLocation.getRegionInfo().getEndKey()) + " and transaction [" + transactionID + "]");
-
-        // if this region hasn't been registered as participating in the transaction, we need to register it
-        if (ts.addRegion(trLocation)) {
-          register = true;
-          if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction, added TransactionRegionLocation ["
-                  + trLocation.getRegionInfo().getRegionNameAsString() + "], endKey: "
-                  + Hex.encodeHexString(trLocation.getRegionInfo().getEndKey()) + " to transaction " + transactionID
-                  + " with " + ts.getParticipantCount() + " participants");
-        }
-
-        // register region with TM.
-        if (register) {
-            ts.registerLocation(location);
-             if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction, called registerLocation TransactionRegionLocation [" + trLocation.getRegionInfo().getRegionNameAsString() +  "\nEncodedName: [" + trLocation.getRegionInfo().getEncodedName() + "], endKey: "
-                  + Hex.encodeHexString(trLocation.getRegionInfo().getEndKey()) + " to transaction [" + transactionID + "]");
+        // Serialize region registration of this transaction only
+        if (ts.addAndRegisterLocation(location, register)) {
+            if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction, registered region ["
+                  + location.getRegionInfo().getRegionNameAsString() + "], endKey: "
+                  + Hex.encodeHexString(location.getRegionInfo().getEndKey()) + " to transaction [" + transactionID
+                  + "] with " + ts.getParticipantCount() + " participants");
         }
         else {
-          if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction did not send registerRegion for transaction " + transactionID);
+            if (LOG.isTraceEnabled()) LOG.trace("RMInterface:registerTransaction did not send registerRegion for transaction " + transactionID);
         }
 
         if ((ts == null) || (ret != 0)) {
@@ -384,7 +392,7 @@ public class RMInterface {
         return ts;
     }
 
-    public synchronized TransactionState registerTransaction(final long transactionID,
+    public TransactionState registerTransaction(final long transactionID,
 							     final byte[] row) throws IOException {
 
        if (LOG.isTraceEnabled()) LOG.trace("Enter registerTransaction,"
@@ -396,12 +404,11 @@ public class RMInterface {
        return ts;
     }
 
-    public static synchronized TransactionState registerTransaction(final TransactionalTableClient pv_table,
+    public static TransactionState registerTransaction(final TransactionalTableClient pv_table,
 		     TransactionState ts,
 		     final byte[] row) throws IOException {
        if (LOG.isTraceEnabled()) LOG.trace("Enter static registerTransaction, trans: " + ts
               + " row " + Hex.encodeHexString(row));
-       boolean register = false;
        final long transactionID = ts.getTransactionId();
        short ret = 0;
        HRegionLocation location = pv_table.getRegionLocation(row, false /*reload*/);
@@ -409,29 +416,15 @@ public class RMInterface {
        if (LOG.isTraceEnabled()) LOG.trace("static RMInterface:registerTransaction - retrieved location with startKey="
                + Hex.encodeHexString(location.getRegionInfo().getStartKey()) + ", endKey="
                + Hex.encodeHexString(location.getRegionInfo().getEndKey()) + " row= " + Hex.encodeHexString(row));
-       HRegionInfo hri = location.getRegionInfo();
-       TransactionRegionLocation trLocation = new TransactionRegionLocation(hri, location.getServerName());
-
-       if (LOG.isTraceEnabled()) LOG.trace("static RMInterface:registerTransaction, created TransactionRegionLocation [" + trLocation.getRegionInfo().getRegionNameAsString() + "], endKey: "
-               + Hex.encodeHexString(trLocation.getRegionInfo().getEndKey()) + " and transaction [" + transactionID + "]");
-
-       // if this region hasn't been registered as participating in the transaction, we need to register it
-       if (ts.addRegion(trLocation)) {
-          register = true;
-          if (LOG.isTraceEnabled()) LOG.trace("static RMInterface:registerTransaction, added TransactionRegionLocation ["
-                + trLocation.getRegionInfo().getRegionNameAsString() + "], endKey: "
-                + Hex.encodeHexString(trLocation.getRegionInfo().getEndKey()) + " to transaction " + transactionID
-                + " with " + ts.getParticipantCount() + " participants");
-       }
-
-       // register region with TM.
-       if (register) {
-          ts.registerLocation(location);
-          if (LOG.isTraceEnabled()) LOG.trace("static RMInterface:registerTransaction, called registerLocation TransactionRegionLocation [" + trLocation.getRegionInfo().getRegionNameAsString() +  "\nEncodedName: [" + trLocation.getRegionInfo().getEncodedName() + "], endKey: "
-                   + Hex.encodeHexString(trLocation.getRegionInfo().getEndKey()) + " to transaction [" + transactionID + "]");
+       // Serialize region registration of this transaction only
+       if (ts.addAndRegisterLocation(location, false)) {
+          if (LOG.isTraceEnabled()) LOG.trace("static RMInterface:registerTransaction, registered region ["
+                + location.getRegionInfo().getRegionNameAsString() + "], endKey: "
+                + Hex.encodeHexString(location.getRegionInfo().getEndKey()) + " to transaction [" + transactionID
+                + "] with " + ts.getParticipantCount() + " participants");
        }
        else {
-          if (LOG.isTraceEnabled()) LOG.trace("static RMInterface:registerTransaction did not send registerRegion for transaction " + ts.getTransactionId());
+          if (LOG.isTraceEnabled()) LOG.trace("static RMInterface:registerTransaction did not send registerRegion for transaction " + transactionID);
        }
 
        if ((ts == null) || (ret != 0)) {
@@ -521,7 +514,7 @@ public class RMInterface {
       if (LOG.isTraceEnabled()) LOG.trace("clearTransactionStates exit txid: " + transactionID);
     }
 
-    static public synchronized void unregisterTransaction(final long transactionID) {
+    static public void unregisterTransaction(final long transactionID) {
       TransactionState ts = null;
       if (LOG.isTraceEnabled()) LOG.trace("Enter unregisterTransaction txid: " + transactionID);
       ts = mapTransactionStates.remove(transactionID);
@@ -532,13 +525,13 @@ public class RMInterface {
     }
 
     // Not used?
-    static public synchronized void unregisterTransaction(TransactionState ts) {
+    static public void unregisterTransaction(TransactionState ts) {
         if (LOG.isTraceEnabled()) LOG.trace("Enter unregisterTransaction ts: " + ts.getTransactionId());
         mapTransactionStates.remove(ts.getTransactionId());
         if (LOG.isTraceEnabled()) LOG.trace("Exit unregisterTransaction ts: " + ts.getTransactionId());
     }
 
-    public synchronized TransactionState getTransactionState(final long transactionID) throws IOException {
+    public TransactionState getTransactionState(final long transactionID) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("getTransactionState txid: " + transactionID);
         TransactionState ts = mapTransactionStates.get(transactionID);
         if (ts == null) {
@@ -548,7 +541,7 @@ public class RMInterface {
         if (LOG.isTraceEnabled()) LOG.trace("EXIT getTransactionState");
         return ts;
     }
-    public synchronized Result get(final long transactionID, final Get get) throws IOException {
+    public Result get(final long transactionID, final Get get) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("get txid: " + transactionID);
         TransactionState ts = registerTransaction(transactionID, get.getRow());
         Result res = ttable.get(ts, get, false);
@@ -556,20 +549,34 @@ public class RMInterface {
         return res;	
     }
 
-    public synchronized void delete(final long transactionID, final Delete delete) throws IOException {
+    public Result[] get(final long transactionID, final List<Get> gets) throws IOException {
+        if (LOG.isTraceEnabled()) LOG.trace("Enter get (list of gets) txid: " + transactionID);
+        TransactionState ts = null;
+        for (Get get : gets) {
+            ts = registerTransaction(transactionID, get.getRow());
+        }
+        if (ts == null){
+           ts = mapTransactionStates.get(transactionID);
+        }
+        Result[] res = ttable.get(ts, gets);
+        if (LOG.isTraceEnabled()) LOG.trace("Exit get (list of gets) txid: " + transactionID);
+        return res;
+    }
+
+    public void delete(final long transactionID, final Delete delete) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("delete txid: " + transactionID);
         TransactionState ts = registerTransaction(transactionID, delete.getRow());
         ttable.delete(ts, delete, false);
     }
 
-    public synchronized void deleteRegionTx(final Delete delete, final boolean autoCommit) throws IOException {
+    public void deleteRegionTx(final Delete delete, final boolean autoCommit) throws IOException {
         long tid = getTmId();
         if (LOG.isTraceEnabled()) LOG.trace("deleteRegionTx tid: " + tid  + " autoCommit " + autoCommit);
         ttable.deleteRegionTx(tid, delete, autoCommit);
         if (LOG.isTraceEnabled()) LOG.trace("deleteRegionTx EXIT tid: " + tid);
     }
 
-    public synchronized void delete(final long transactionID, final List<Delete> deletes) throws IOException {
+    public void delete(final long transactionID, final List<Delete> deletes) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("Enter delete (list of deletes) txid: " + transactionID);
         TransactionState ts = null;
 	for (Delete delete : deletes) {
@@ -582,7 +589,7 @@ public class RMInterface {
         if (LOG.isTraceEnabled()) LOG.trace("Exit delete (list of deletes) txid: " + transactionID);
     }
 
-    public synchronized ResultScanner getScanner(final long transactionID, final Scan scan) throws IOException {
+    public ResultScanner getScanner(final long transactionID, final Scan scan) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("getScanner txid: " + transactionID
            + " scan startRow=" + (Bytes.equals(scan.getStartRow(), HConstants.EMPTY_START_ROW) ?
                    "INFINITE" : Hex.encodeHexString(scan.getStartRow())) + ", endRow="
@@ -595,7 +602,7 @@ public class RMInterface {
         return res;
     }
 
-    public synchronized void putRegionTx(final Put put, final boolean autoCommit) throws IOException {
+    public void putRegionTx(final Put put, final boolean autoCommit) throws IOException {
         long tid = getTmId();
         if (LOG.isTraceEnabled()) LOG.trace("Enter putRegionTx, autoCommit: " + autoCommit
                + ", tid " + tid);
@@ -603,14 +610,14 @@ public class RMInterface {
         if (LOG.isTraceEnabled()) LOG.trace("putRegionTx Exit tid: " + tid);
     }
 
-    public synchronized void put(final long transactionID, final Put put) throws IOException {
+    public void put(final long transactionID, final Put put) throws IOException {
         if (LOG.isTraceEnabled()) LOG.trace("Enter Put txid: " + transactionID);
         TransactionState ts = registerTransaction(transactionID, put.getRow());
         ttable.put(ts, put, false);
         if (LOG.isTraceEnabled()) LOG.trace("Exit Put txid: " + transactionID);
     }
 
-    public synchronized void put(final long transactionID, final List<Put> puts) throws IOException {
+    public void put(final long transactionID, final List<Put> puts) throws IOException {
          if (LOG.isTraceEnabled()) LOG.trace("Enter put (list of puts) txid: " + transactionID);
         TransactionState ts = null;
       	for (Put put : puts) {
@@ -623,7 +630,7 @@ public class RMInterface {
         if (LOG.isTraceEnabled()) LOG.trace("Exit put (list of puts) txid: " + transactionID);
     }
 
-    public synchronized boolean checkAndPut(final long transactionID,
+    public boolean checkAndPut(final long transactionID,
                                             final byte[] row,
                                             final byte[] family,
                                             final byte[] qualifier,
@@ -635,7 +642,7 @@ public class RMInterface {
         return ttable.checkAndPut(ts, row, family, qualifier, value, put);
     }
 
-    public synchronized boolean checkAndPutRegionTx(byte[] row, byte[] family,
+    public boolean checkAndPutRegionTx(byte[] row, byte[] family,
     		byte[] qualifier, byte[] value, Put put, final boolean autoCommit) throws IOException {
 
         long tid = getTmId();
@@ -645,7 +652,7 @@ public class RMInterface {
                    put, autoCommit);
     }
 
-    public synchronized boolean checkAndDelete(final long transactionID,
+    public boolean checkAndDelete(final long transactionID,
                                                final byte[] row,
                                                final byte[] family,
                                                final byte[] qualifier,
@@ -657,7 +664,7 @@ public class RMInterface {
         return ttable.checkAndDelete(ts, row, family, qualifier, value, delete);
     }
 
-    public synchronized boolean checkAndDeleteRegionTx(byte[] row, byte[] family, byte[] qualifier,
+    public boolean checkAndDeleteRegionTx(byte[] row, byte[] family, byte[] qualifier,
             byte[] value, Delete delete, final boolean autoCommit) throws IOException {
        long tid = getTmId();
        if (LOG.isTraceEnabled()) LOG.trace("checkAndDeleteRegionTx, autoCommit: " + autoCommit
@@ -223,6 +223,23 @@ public class SsccTransactionalTable extends HTable implements TransactionalTable
           return ProtobufUtil.toResult(resultArray[0].getResult());
     }
 
+    /**
+     * Get a set of rows. The SSCC region service has no multi-row get, so
+     * the rows are fetched one at a time.
+     *
+     * @param transactionState
+     * @param gets
+     * @return the results, in the same order as the gets
+     * @throws IOException
+     */
+    public Result[] get(final TransactionState transactionState,
+                        final List<Get> gets) throws IOException {
+      Result[] results = new Result[gets.size()];
+      for (int i = 0; i < gets.size(); i++)
+        results[i] = get(transactionState, gets.get(i), false);
+      return results;
+    }
+
     /**
      * @param delete
      * @throws IOException
@@ -329,7 +346,7 @@ public class SsccTransactionalTable extends HTable implements TransactionalTable
      * @throws IOException
      * @since 0.20.0
      */
-    public synchronized void put(final TransactionState transactionState, final Put put) throws IOException {
+    public void put(final TransactionState transactionState, final Put put) throws IOException {
 
       if (LOG.isTraceEnabled()) LOG.trace("TransactionalTable.put without location ENTRY");
       put(transactionState, put, true);
@@ -337,7 +354,7 @@ public class SsccTransactionalTable extends HTable implements TransactionalTable
 
     }
 
-    public synchronized void put(final TransactionState transactionState, final Put put, final boolean bool_addLocation) throws IOException{
+    public void put(final TransactionState transactionState, final Put put, final boolean bool_addLocation) throws IOException{
       validatePut(put);
       if (LOG.isTraceEnabled()) LOG.trace("TransactionalTable.put ENTRY adding location with transactionState: " + transactionState);
 
@@ -391,7 +408,7 @@ public class SsccTransactionalTable extends HTable implements TransactionalTable
     if (LOG.isTraceEnabled()) LOG.trace("TransactionalTable.put EXIT");
   }
 
-  public synchronized ResultScanner getScanner(final TransactionState transactionState, final Scan scan) throws IOException {
+  public ResultScanner getScanner(final TransactionState transactionState, final Scan scan) throws IOException {
     if (LOG.isTraceEnabled()) LOG.trace("Enter TransactionalTable.getScanner");
     if (scan.getCaching() <= 0) {
         scan.setCaching(getScannerCaching());
@@ -418,7 +435,7 @@ public class SsccTransactionalTable extends HTable implements TransactionalTable
    * @throws IOException
    * @since 0.20.0
    */
-  public synchronized void putRegionTx(final long tsId, final Put put, final boolean autoCommit) throws IOException{
+  public void putRegionTx(final long tsId, final Put put, final boolean autoCommit) throws IOException{
       if (LOG.isTraceEnabled()) LOG.trace("TransactionalTable.putRegionTx ENTRY, autoCommit: " + autoCommit);
 
       validatePut(put);
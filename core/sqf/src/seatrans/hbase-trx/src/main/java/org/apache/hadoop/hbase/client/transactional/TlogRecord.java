@@ -0,0 +1,288 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.client.transactional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * A TLOG transaction state record.
+ *
+ * Records are written either in the original string form
+ *
+ *    asn,transid,state,filler,hasPlaceHolder,startId,commitId[,table...]
+ *
+ * or in the binary form, which starts with the format version byte (never
+ * an ASCII digit, so the two are told apart by the first byte):
+ *
+ *    byte    BINARY_V1
+ *    varint  asn
+ *    varint  transid
+ *    byte    state (TransState.getValue(), the TM state code)
+ *    byte    flags (bit 0 hasPlaceHolder)
+ *    zigzag  startId
+ *    zigzag  commitId
+ *    varint  number of tables, followed by a varint table id each
+ *
+ * Table ids are interned per TLOG table. The id to name mapping is kept in
+ * the TLOG itself on row TABLE_DICT_ROW, one column per id, and readers
+ * that scan the TLOG must skip that row.
+ */
+public class TlogRecord {
+
+    public static final byte BINARY_V1 = 1;
+
+    // Transaction ids are never negative, so this row key cannot collide
+    // with a transaction record.
+    public static final byte[] TABLE_DICT_ROW = Bytes.toBytes(-1L);
+
+    private long asn;
+    private long transid;
+    private String state;
+    private boolean hasPlaceHolder;
+    private long startId = -1;
+    private long commitId = -1;
+    private int[] tableIds = null;           // binary records
+    private List<String> tableNames = null;  // string records
+
+    private TlogRecord() {
+    }
+
+    public long getAsn() {
+        return asn;
+    }
+
+    public long getTransactionId() {
+        return transid;
+    }
+
+    /**
+     * The state as written by TransState.toString(), whatever the format.
+     */
+    public String getState() {
+        return state;
+    }
+
+    public boolean hasPlaceHolder() {
+        return hasPlaceHolder;
+    }
+
+    public long getStartId() {
+        return startId;
+    }
+
+    public long getCommitId() {
+        return commitId;
+    }
+
+    public boolean isBinary() {
+        return tableIds != null;
+    }
+
+    /**
+     * Interned table ids of a binary record, or null for a string record.
+     */
+    public int[] getTableIds() {
+        return tableIds;
+    }
+
+    /**
+     * Table names of a string record, or null for a binary record.
+     */
+    public List<String> getTableNames() {
+        return tableNames;
+    }
+
+    public static boolean isTableDictRow(byte[] row) {
+        return Bytes.equals(row, TABLE_DICT_ROW);
+    }
+
+    public static boolean isTableDictRow(Cell cell) {
+        return Bytes.equals(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength(),
+                            TABLE_DICT_ROW, 0, TABLE_DICT_ROW.length);
+    }
+
+    public static byte[] encode(long asn, long transid, TransState state, boolean hasPlaceHolder,
+                                long startId, long commitId, int[] tableIds) {
+        byte[] buf = new byte[2 + 3 * 10 + 2 * 10 + 5 * (tableIds.length + 1)];
+        int pos = 0;
+        buf[pos++] = BINARY_V1;
+        pos = putVarLong(buf, pos, asn);
+        pos = putVarLong(buf, pos, transid);
+        buf[pos++] = (byte)stateCode(state);
+        buf[pos++] = (byte)(hasPlaceHolder ? 1 : 0);
+        pos = putVarLong(buf, pos, (startId << 1) ^ (startId >> 63));
+        pos = putVarLong(buf, pos, (commitId << 1) ^ (commitId >> 63));
+        pos = putVarLong(buf, pos, tableIds.length);
+        for (int id : tableIds)
+            pos = putVarLong(buf, pos, id);
+        return Arrays.copyOf(buf, pos);
+    }
+
+    /**
+     * Decode a record in either format.
+     * @param row the TLOG row the record was read from, for error messages
+     * @return the record, or null if value is empty.
+     * @throws IOException if the record is malformed.
+     */
+    public static TlogRecord decode(byte[] row, byte[] value) throws IOException {
+        if (value == null || value.length == 0)
+            return null;
+        try {
+            if (value[0] == BINARY_V1)
+                return decodeBinary(value);
+            return decodeString(Bytes.toString(value));
+        } catch (IllegalArgumentException e) {
+            // includes NumberFormatException from the string form
+            throw new IOException("Malformed TLOG record in row " + rowToString(row) + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String rowToString(byte[] row) {
+        if (row == null)
+            return "null";
+        if (row.length == Bytes.SIZEOF_LONG)
+            return String.valueOf(Bytes.toLong(row));
+        return Bytes.toStringBinary(row);
+    }
+
+    /**
+     * The code a binary record stores for state. Codes are the TM state
+     * numbers, not enum positions, so they stay fixed if TransState changes.
+     */
+    static int stateCode(TransState state) {
+        if (state == TransState.STATE_LAST || state == TransState.STATE_BAD)
+            throw new IllegalArgumentException("State " + state + " cannot be logged");
+        return state.getValue();
+    }
+
+    static TransState stateForCode(int code) {
+        switch (code) {
+            case 0:  return TransState.STATE_NOTX;
+            case 1:  return TransState.STATE_ACTIVE;
+            case 2:  return TransState.STATE_FORGOTTEN;
+            case 3:  return TransState.STATE_COMMITTED;
+            case 4:  return TransState.STATE_ABORTING;
+            case 5:  return TransState.STATE_ABORTED;
+            case 6:  return TransState.STATE_COMMITTING;
+            case 7:  return TransState.STATE_PREPARING;
+            case 8:  return TransState.STATE_FORGETTING;
+            case 9:  return TransState.STATE_PREPARED;
+            case 10: return TransState.STATE_FORGETTING_HEUR;
+            case 11: return TransState.STATE_BEGINNING;
+            case 12: return TransState.STATE_HUNGCOMMITTED;
+            case 13: return TransState.STATE_HUNGABORTED;
+            case 14: return TransState.STATE_IDLE;
+            case 15: return TransState.STATE_FORGOTTEN_HEUR;
+            case 16: return TransState.STATE_ABORTING_PART2;
+            case 17: return TransState.STATE_TERMINATING;
+            case 18: return TransState.STATE_FORGOTTEN_COMMITTED;
+            case 19: return TransState.STATE_FORGOTTEN_ABORT;
+            case 20: return TransState.STATE_RECOVERY_COMMITTED;
+            case 21: return TransState.STATE_RECOVERY_ABORT;
+            default:
+                throw new IllegalArgumentException("Invalid state " + code + " in binary TLOG record");
+        }
+    }
+
+    private static TlogRecord decodeBinary(byte[] value) {
+        TlogRecord rec = new TlogRecord();
+        int[] pos = new int[] { 1 };
+        try {
+            rec.asn = getVarLong(value, pos);
+            rec.transid = getVarLong(value, pos);
+            rec.state = stateForCode(value[pos[0]++]).toString();
+            rec.hasPlaceHolder = (value[pos[0]++] & 1) != 0;
+            long v = getVarLong(value, pos);
+            rec.startId = (v >>> 1) ^ -(v & 1);
+            v = getVarLong(value, pos);
+            rec.commitId = (v >>> 1) ^ -(v & 1);
+            int numTables = (int)getVarLong(value, pos);
+            if (numTables < 0 || numTables > value.length)
+                throw new IllegalArgumentException("Invalid table count " + numTables + " in binary TLOG record");
+            rec.tableIds = new int[numTables];
+            for (int i = 0; i < numTables; i++)
+                rec.tableIds[i] = (int)getVarLong(value, pos);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated binary TLOG record", e);
+        }
+        return rec;
+    }
+
+    private static TlogRecord decodeString(String value) {
+        StringTokenizer st = new StringTokenizer(value, ",");
+        if (! st.hasMoreElements())
+            return null;
+        TlogRecord rec = new TlogRecord();
+        try {
+            rec.asn = Long.parseLong(st.nextToken());
+            rec.transid = Long.parseLong(st.nextToken());
+            rec.state = st.nextToken();
+            rec.tableNames = new ArrayList<String>();
+            if (! st.hasMoreElements())
+                return rec;
+            st.nextToken();   // filler
+            if (st.hasMoreElements())
+                rec.hasPlaceHolder = st.nextToken().equals("1");
+            if (st.hasMoreElements())
+                rec.startId = Long.parseLong(st.nextToken());
+            if (st.hasMoreElements())
+                rec.commitId = Long.parseLong(st.nextToken());
+            while (st.hasMoreElements())
+                rec.tableNames.add(st.nextToken());
+        } catch (java.util.NoSuchElementException e) {
+            throw new IllegalArgumentException("Truncated TLOG record: " + value, e);
+        }
+        return rec;
+    }
+
+    private static int putVarLong(byte[] buf, int pos, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte)((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte)v;
+        return pos;
+    }
+
+    private static long getVarLong(byte[] buf, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf[pos[0]++];
+            result |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return result;
+            shift += 7;
+            if (shift > 63)
+                throw new IllegalArgumentException("Malformed varint in TLOG record");
+        }
+    }
+}
@@ -41,6 +41,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.HashMap;
 
 import org.apache.commons.codec.binary.Hex;
@@ -73,6 +74,8 @@ import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProt
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.AbortTransactionMultipleResponse;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.AbortTransactionRequest;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.AbortTransactionResponse;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.CommitIfPossibleRequest;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.CommitIfPossibleResponse;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.CommitMultipleRequest;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.CommitMultipleResponse;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.CommitRequestMultipleRequest;
@@ -149,6 +152,7 @@ public class TransactionManager {
   private Connection connection;
   private TmDDL tmDDL;
   private boolean batchRSMetricsFlag = false;
+  private boolean onePhaseCommit = true;
 
   public static final int HBASE_NAME = 0;
   public static final int HBASE_MAX_VERSIONS = 1;
@@ -193,6 +197,15 @@ public class TransactionManager {
   private long regionServers = 0;
   private int metricsCount = 0;
 
+  // Commit path counters
+  private static final long COMMIT_STATS_INTERVAL = 10000;
+  private final AtomicLong twoPhaseCommits = new AtomicLong(0);
+  private final AtomicLong onePhaseCommits = new AtomicLong(0);
+  private final AtomicLong onePhaseReadOnly = new AtomicLong(0);
+  private final AtomicLong onePhaseFailed = new AtomicLong(0);
+  private final AtomicLong onePhaseInDoubt = new AtomicLong(0);
+  private final AtomicLong onePhaseFallbacks = new AtomicLong(0);
+
   static ExecutorService    cp_tpe;
 
   public enum AlgorithmType{
@@ -1670,6 +1683,7 @@ public class TransactionManager {
         String useSSCC = System.getenv("TM_USE_SSCC");
         String batchRSMetricStr = System.getenv("TM_BATCH_RS_METRICS");
         String batchRS = System.getenv("TM_BATCH_REGIONSERVER");
+        String onePhase = System.getenv("TM_ONE_PHASE_COMMIT");
 
         if (batchRSMetricStr != null)
                 batchRSMetricsFlag = (Integer.parseInt(batchRSMetricStr) == 1) ? true : false;
@@ -1677,6 +1691,9 @@ public class TransactionManager {
         if (batchRS != null)
             batchRegionServer = (Integer.parseInt(batchRS) == 1)? true : false;
 
+        if (onePhase != null)
+            onePhaseCommit = (Integer.parseInt(onePhase) == 1)? true : false;
+
         if (retryAttempts != null)
             RETRY_ATTEMPTS = Integer.parseInt(retryAttempts);
         else
@@ -1780,6 +1797,8 @@ public class TransactionManager {
        if (LOG.isTraceEnabled()) LOG.trace("Enter prepareCommit, txid: " + transactionState.getTransactionId()
                           + " with " + transactionState.getParticipatingRegions().size() + " participants");
 
+       countCommit(twoPhaseCommits);
+
        if (batchRegionServer && (TRANSACTION_ALGORITHM == AlgorithmType.MVCC)) {
          boolean allReadOnly = true;
          int loopCount = 0;
@@ -2053,6 +2072,213 @@ public class TransactionManager {
       }
     }
 
+    /**
+     * A transaction can skip 2PC when a single region participates and
+     * there is nothing else (DDL, SSCC commit ids, retried regions) to
+     * coordinate.
+     */
+    public boolean canCommitOnePhase(final TransactionState transactionState) {
+       return onePhaseCommit
+           && TRANSACTION_ALGORITHM == AlgorithmType.MVCC
+           && transactionState.getParticipatingRegions().size() == 1
+           && transactionState.getRegionsRetryCount() == 0
+           && ! transactionState.hasDDLTx();
+    }
+
+    /**
+     * Prepare and commit a single participant transaction with one
+     * commitIfPossible call. A successful return means the region has already
+     * committed, so the transaction is marked one-phase and doCommit sends
+     * nothing.
+     *
+     * No TLOG record is involved: the region never holds a prepared branch
+     * that waits on the TM. Once the request has been sent, a failed call
+     * leaves the outcome in doubt and the request is resent. Only COMMIT_OK
+     * or COMMIT_CONFLICT from a resend is definite, the region answers a
+     * transaction it no longer knows as read-only whether it committed or
+     * was lost. Any other outcome is reported as COMMIT_UNSUCCESSFUL so the
+     * transaction is aborted, never as committed.
+     *
+     * @return commitStatusCode, or COMMIT_RESEND if the caller must use 2PC
+     */
+    public int commitOnePhase(final TransactionState transactionState) throws IOException {
+       final TransactionRegionLocation location = transactionState.getParticipatingRegions().iterator().next();
+       if (LOG.isTraceEnabled()) LOG.trace("prepareCommit one phase commit, txid: " + transactionState.getTransactionId()
+                          + " region " + location.getRegionInfo().getRegionNameAsString());
+
+       int status = 0;
+       boolean sent = false;
+       HTable table = new HTable(location.getRegionInfo().getTable(), connection, cp_tpe);
+       try {
+          int retrySleep = TM_SLEEP;
+          for (int retryCount = 0; ; retryCount++) {
+             try {
+                // Run in the caller's thread, there is nothing to overlap with
+                status = doCommitIfPossibleX(table, transactionState, location, 1);
+             } catch (CommitUnsuccessfulException e) {
+                status = 0;
+             }
+             if (! sent) {
+                // The first answer is definite, a failed call is not
+                if (status != 0)
+                   break;
+                sent = true;
+             }
+             else if (status != 0 || retryCount == RETRY_ATTEMPTS) {
+                if (status == TransactionalReturn.COMMIT_OK
+                      || status == TransactionalReturn.COMMIT_CONFLICT)
+                   break;
+                LOG.warn("prepareCommit one phase commit in doubt after " + retryCount + " resends, txid: "
+                          + transactionState.getTransactionId() + " status " + status + ", aborting");
+                transactionState.recordException("One phase commit outcome in doubt, last status " + status);
+                countCommit(onePhaseInDoubt);
+                return TransactionalReturn.COMMIT_UNSUCCESSFUL;
+             }
+             if (LOG.isWarnEnabled()) LOG.warn("prepareCommit one phase commit resending, txid: "
+                          + transactionState.getTransactionId() + " retry count " + retryCount);
+             retrySleep = retry(retrySleep);
+             table.getRegionLocation(location.getRegionInfo().getStartKey(), true);
+          }
+       } finally {
+          table.close();
+       }
+
+       switch (status) {
+          case TransactionalReturn.COMMIT_OK:
+             transactionState.setOnePhaseCommit(true);
+             countCommit(onePhaseCommits);
+             return TransactionalReturn.COMMIT_OK;
+          case TransactionalReturn.COMMIT_OK_READ_ONLY:
+             transactionState.setOnePhaseCommit(true);
+             countCommit(onePhaseReadOnly);
+             return TransactionalReturn.COMMIT_OK_READ_ONLY;
+          case TransactionalReturn.COMMIT_RESEND:
+             if (LOG.isDebugEnabled()) LOG.debug("prepareCommit one phase commit not possible, using 2PC, txid: "
+                          + transactionState.getTransactionId());
+             onePhaseFallbacks.incrementAndGet();
+             return TransactionalReturn.COMMIT_RESEND;
+          case TransactionalReturn.COMMIT_CONFLICT:
+             countCommit(onePhaseFailed);
+             return TransactionalReturn.COMMIT_CONFLICT;
+          default:
+             countCommit(onePhaseFailed);
+             return TransactionalReturn.COMMIT_UNSUCCESSFUL;
+       }
+    }
+
+    /**
+     * Method  : doCommitIfPossibleX
+     * Params  : table - table of the participating region
+     *           transactionState - transaction with a single participant
+     *           location - location of the participating region
+     *           participantNum - participant number
+     * Return  : Commit status (ok, read only, conflict, unsuccessful or resend)
+     * Purpose : Prepare and commit a single participant transaction in one call
+     */
+    private int doCommitIfPossibleX(final HTable table, final TransactionState transactionState,
+                                    final TransactionRegionLocation location, final int participantNum)
+          throws CommitUnsuccessfulException {
+       final long transactionId = transactionState.getTransactionId();
+       final long startEpoch = transactionState.getStartEpoch();
+       final byte[] regionName = location.getRegionInfo().getRegionName();
+       byte[] startKey = location.getRegionInfo().getStartKey();
+       byte[] endKey = location.getRegionInfo().getEndKey();
+       if (endKey == null || endKey == HConstants.EMPTY_END_ROW)
+          endKey = null;
+       else
+          endKey = TransactionManager.binaryIncrementPos(Bytes.copy(endKey), -1);
+
+       if (LOG.isTraceEnabled()) LOG.trace("doCommitIfPossibleX -- ENTRY txid: " + transactionId + " startEpoch " + startEpoch
+                                           + " participantNum " + participantNum + " RegionName " + Bytes.toString(regionName)
+                                           + " TableName " + table.toString() + " location " + location );
+
+       Batch.Call<TrxRegionService, CommitIfPossibleResponse> callable =
+          new Batch.Call<TrxRegionService, CommitIfPossibleResponse>() {
+             ServerRpcController controller = new ServerRpcController();
+             BlockingRpcCallback<CommitIfPossibleResponse> rpcCallback =
+                new BlockingRpcCallback<CommitIfPossibleResponse>();
+
+             @Override
+             public CommitIfPossibleResponse call(TrxRegionService instance) throws IOException {
+                org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.CommitIfPossibleRequest.Builder builder = CommitIfPossibleRequest.newBuilder();
+                builder.setTransactionId(transactionId);
+                builder.setStartEpoch(startEpoch);
+                builder.setCommitId(-1);
+                builder.setRegionName(ByteString.copyFromUtf8(Bytes.toString(regionName)));
+                builder.setParticipantNum(participantNum);
+
+                instance.commitIfPossible(controller, builder.build(), rpcCallback);
+                return rpcCallback.get();
+             }
+          };
+
+       Map<byte[], CommitIfPossibleResponse> result = null;
+
+       // No retries here. Once the request has been sent the region may have
+       // committed, so a failure leaves the outcome in doubt.
+       try {
+          result = table.coprocessorService(TrxRegionService.class, startKey, endKey, callable);
+       } catch (Throwable e) {
+          String errMsg = new String("ERROR occurred while calling coprocessor service in doCommitIfPossibleX for transaction "
+               + transactionId + " participantNum " + participantNum + " Location " + location.getRegionInfo().getRegionNameAsString());
+          LOG.error(errMsg, e);
+          throw new CommitUnsuccessfulException(errMsg, e);
+       }
+
+       if (result.size() == 0) {
+          // Nothing was sent, the caller falls back to 2PC, which refreshes the location
+          if (LOG.isDebugEnabled()) LOG.debug("doCommitIfPossibleX, received result size: 0 for transaction "
+               + transactionId + " Location " + location.getRegionInfo().getRegionNameAsString());
+          return TransactionalReturn.COMMIT_RESEND;
+       }
+
+       int commitStatus = 0;
+       for (CommitIfPossibleResponse cresponse : result.values()) {
+          int value = cresponse.getResult();
+          if (cresponse.getHasException()) {
+             if (LOG.isTraceEnabled()) LOG.trace("doCommitIfPossibleX coprocessor exception: " + cresponse.getException());
+             transactionState.recordException(cresponse.getException());
+          }
+          // Failures take precedence over a resend, a resend over success
+          if (commitStatus == 0 ||
+              value == TransactionalReturn.COMMIT_CONFLICT ||
+              (value == TransactionalReturn.COMMIT_UNSUCCESSFUL_FROM_COPROCESSOR &&
+                 commitStatus != TransactionalReturn.COMMIT_CONFLICT) ||
+              (value == TransactionalReturn.COMMIT_RESEND &&
+                 (commitStatus == TransactionalReturn.COMMIT_OK ||
+                  commitStatus == TransactionalReturn.COMMIT_OK_READ_ONLY)))
+             commitStatus = value;
+       }
+
+       if (LOG.isTraceEnabled()) LOG.trace("doCommitIfPossibleX -- EXIT txid: " + transactionId + " status " + commitStatus);
+       return commitStatus;
+    }
+
+    private void countCommit(AtomicLong counter) {
+       counter.incrementAndGet();
+       long total = twoPhaseCommits.get() + onePhaseCommits.get() + onePhaseReadOnly.get() + onePhaseFailed.get()
+                  + onePhaseInDoubt.get();
+       if (total % COMMIT_STATS_INTERVAL == 0)
+          if (LOG.isInfoEnabled()) LOG.info("Commit path: " + getCommitPathStats());
+    }
+
+    public long getTwoPhaseCommitCount() {
+       return twoPhaseCommits.get();
+    }
+
+    public long getOnePhaseCommitCount() {
+       return onePhaseCommits.get();
+    }
+
+    public String getCommitPathStats() {
+       return "twoPhase: " + twoPhaseCommits.get()
+           + " onePhaseCommitted: " + onePhaseCommits.get()
+           + " onePhaseReadOnly: " + onePhaseReadOnly.get()
+           + " onePhaseFailed: " + onePhaseFailed.get()
+           + " onePhaseInDoubt: " + onePhaseInDoubt.get()
+           + " onePhaseFallbacks: " + onePhaseFallbacks.get();
+    }
+
     /**
      * Try and commit a transaction. This does both phases of the 2-phase protocol: prepare and commit.
      *
@@ -2206,6 +2432,12 @@ public class TransactionManager {
     public void doCommit(final TransactionState transactionState, final boolean ignoreUnknownTransaction)
                     throws CommitUnsuccessfulException, UnsuccessfulDDLException, IOException {
         int loopCount = 0;
+        if (transactionState.isOnePhaseCommit()) {
+           // The only participant committed during prepareCommit
+           if (LOG.isTraceEnabled()) LOG.trace("doCommit [" + transactionState.getTransactionId() + "] already committed in one phase");
+           transactionState.completeSendInvoke(0);
+           return;
+        }
         if (batchRegionServer && (TRANSACTION_ALGORITHM == AlgorithmType.MVCC)) {
              if (LOG.isTraceEnabled()) LOG.trace("Committing [" + transactionState.getTransactionId() +
                       "] with commitId: " + transactionState.getCommitId() + ", ignoreUnknownTransaction: " + ignoreUnknownTransaction);
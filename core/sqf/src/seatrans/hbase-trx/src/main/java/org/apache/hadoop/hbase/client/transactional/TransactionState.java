@@ -77,6 +77,7 @@ public class TransactionState {
     private boolean ddlTrans;
     private static boolean useConcurrentHM = false;
     private boolean hasRetried = false;
+    private boolean onePhaseCommit = false;
     private boolean exceptionLogged = false;
     private long nodeId;
     private long clusterId;
@@ -290,6 +291,22 @@ public class TransactionState {
       recordException = null;
     }
 
+    /**
+     * Adds the region to the participating regions and registers it with the
+     * TM if it was not there yet, or if force is set. Concurrent DML of this
+     * transaction is serialized here, so each region is registered once.
+     * @return true if registerLocation was called
+     */
+    public synchronized boolean addAndRegisterLocation(final HRegionLocation location, final boolean force)
+                                                                            throws IOException {
+        TransactionRegionLocation trLocation = new TransactionRegionLocation(location.getRegionInfo(),
+                                                                             location.getServerName());
+        boolean register = addRegion(trLocation) || force;
+        if (register)
+            registerLocation(location);
+        return register;
+    }
+
     // Used at the client end - the one performing the mutation - e.g. the SQL process
     public void registerLocation(final HRegionLocation location) throws IOException {
         byte [] lv_hostname = location.getHostname().getBytes();
@@ -609,6 +626,18 @@ public class TransactionState {
       return this.hasRetried;
     }
 
+    /**
+     * True if the only participant already committed the transaction in the
+     * prepare round, so there is no TLOG commit record and no commit round.
+     */
+    public boolean isOnePhaseCommit() {
+      return this.onePhaseCommit;
+    }
+
+    public void setOnePhaseCommit(boolean val) {
+      this.onePhaseCommit = val;
+    }
+
     public boolean hasPlaceHolder() {
        return false;
     }
@@ -364,6 +364,152 @@ public class TransactionalAggregationClient {
     return rowNum.getRowNumCount();
   }
 
+  /**
+   * Computes several COUNT, SUM, MIN and MAX aggregates in a single scan of
+   * each region and merges the partial results of the regions. Rows are
+   * grouped by the first groupByRowPrefix bytes of their key if that is
+   * positive, otherwise by the value of groupByFamily:groupByQualifier if
+   * groupByFamily is not null, otherwise all rows are in one group with the
+   * empty key.
+   * @return the values of each group in the order of aggregates, sorted by
+   *         group key. A value is null where SUM, MIN or MAX saw no value.
+   * @throws UnsupportedAggregateFormatException if a column aggregate has
+   *         no supported value_length, or a region finds a value of another
+   *         length. The caller should then use the per aggregate calls.
+   * @throws Throwable
+   */
+  public NavigableMap<byte[], Long[]> multiAggregate(final long transactionId, final long startId,
+      final TransactionalTable table, final Scan scan, final List<TransactionalAggregateSpec> aggregates,
+      final int groupByRowPrefix, final byte[] groupByFamily, final byte[] groupByQualifier)
+      throws Throwable {
+    if (aggregates.isEmpty())
+      throw new IOException("No aggregates requested");
+    for (TransactionalAggregateSpec spec : aggregates) {
+      if (spec.hasFamily())
+        checkAggregateFormat(spec);
+    }
+    // The scan has to return every column that is aggregated or grouped on
+    if (scan.hasFamilies()) {
+      for (TransactionalAggregateSpec spec : aggregates) {
+        if (spec.hasFamily())
+          addScanColumn(scan, spec.getFamily().toByteArray(),
+                        spec.hasQualifier() ? spec.getQualifier().toByteArray() : null);
+      }
+      if (groupByRowPrefix <= 0 && groupByFamily != null)
+        addScanColumn(scan, groupByFamily, groupByQualifier);
+    }
+    byte [] currentBeginKey = scan.getStartRow();
+    HRegionInfo currentRegion = table.getRegionLocation(currentBeginKey).getRegionInfo();
+    TransactionalMultiAggregateRequest.Builder requestBuilder = TransactionalMultiAggregateRequest.newBuilder();
+    requestBuilder.setRegionName(ByteString.copyFromUtf8(currentRegion.getRegionNameAsString()));
+    requestBuilder.setTransactionId(transactionId);
+    requestBuilder.setStartId(startId);
+    requestBuilder.setScan(ProtobufUtil.toScan(scan));
+    requestBuilder.addAllAggregate(aggregates);
+    if (groupByRowPrefix > 0)
+      requestBuilder.setGroupByRowPrefix(groupByRowPrefix);
+    else if (groupByFamily != null) {
+      requestBuilder.setGroupByFamily(ByteString.copyFrom(groupByFamily));
+      if (groupByQualifier != null)
+        requestBuilder.setGroupByQualifier(ByteString.copyFrom(groupByQualifier));
+    }
+    final TransactionalMultiAggregateRequest requestArg = requestBuilder.build();
+
+    final NavigableMap<byte[], Long[]> groups = new TreeMap<byte[], Long[]>(Bytes.BYTES_COMPARATOR);
+    table.coprocessorService(TrxRegionService.class, scan.getStartRow(), scan.getStopRow(),
+        new Batch.Call<TrxRegionService, TransactionalMultiAggregateResponse>() {
+          @Override
+          public TransactionalMultiAggregateResponse call(TrxRegionService instance) throws IOException {
+            ServerRpcController controller = new ServerRpcController();
+            BlockingRpcCallback<TransactionalMultiAggregateResponse> rpcCallback = 
+                new BlockingRpcCallback<TransactionalMultiAggregateResponse>();
+            instance.getMultiAggregate(controller, requestArg, rpcCallback);
+            TransactionalMultiAggregateResponse response = rpcCallback.get();
+            if (controller.failedOnException()) {
+              throw controller.getFailedOn();
+            }
+            return response;
+          }
+        },
+        new Batch.Callback<TransactionalMultiAggregateResponse>() {
+          @Override
+          public void update(byte[] region, byte[] row, TransactionalMultiAggregateResponse result) {
+            synchronized (groups) {
+              for (TransactionalAggregateGroup group : result.getGroupList())
+                mergeAggregateGroup(groups, aggregates, group);
+            }
+          }
+        });
+    return groups;
+  }
+
+  /**
+   * Rejects a column aggregate whose values multiAggregate can not decode:
+   * SUM, MIN and MAX only take numbers of a declared value_length of 1, 2,
+   * 4 or 8 bytes after a null indicator. COUNT of a column only looks at
+   * the null indicator and needs no value_length. Aligned format rows, for
+   * one, hold all columns in one cell and must use the per aggregate calls.
+   */
+  public static void checkAggregateFormat(final TransactionalAggregateSpec spec)
+      throws UnsupportedAggregateFormatException {
+    if (spec.getNullIndicatorLength() < 0)
+      throw new UnsupportedAggregateFormatException("multiAggregate - unsupported null indicator length "
+                    + spec.getNullIndicatorLength());
+    if (spec.getType() == TransactionalAggregateSpec.AggregateType.COUNT)
+      return;
+    int length = spec.getValueLength();
+    if (length != 1 && length != 2 && length != 4 && length != 8)
+      throw new UnsupportedAggregateFormatException("multiAggregate - unsupported value length " + length
+                    + " for " + spec.getType() + " of column "
+                    + Bytes.toStringBinary(spec.getQualifier().toByteArray()));
+  }
+
+  private static void addScanColumn(final Scan scan, final byte[] family, final byte[] qualifier) {
+    Map<byte[], NavigableSet<byte[]>> familyMap = scan.getFamilyMap();
+    if (familyMap.containsKey(family)) {
+      NavigableSet<byte[]> columns = familyMap.get(family);
+      if (columns == null || columns.isEmpty())
+        return;   // the whole family is scanned already
+    }
+    scan.addColumn(family, qualifier == null ? HConstants.EMPTY_BYTE_ARRAY : qualifier);
+  }
+
+  private static void mergeAggregateGroup(final NavigableMap<byte[], Long[]> groups,
+      final List<TransactionalAggregateSpec> aggregates, final TransactionalAggregateGroup group) {
+    byte[] key = group.getKey().toByteArray();
+    Long[] values = groups.get(key);
+    if (values == null) {
+      values = new Long[aggregates.size()];
+      groups.put(key, values);
+    }
+    for (int i = 0; i < values.length; i++) {
+      TransactionalAggregateSpec.AggregateType type = aggregates.get(i).getType();
+      if (type != TransactionalAggregateSpec.AggregateType.COUNT && ! group.getHasValue(i))
+        continue;
+      long value = group.getValue(i);
+      if (values[i] == null) {
+        values[i] = value;
+        continue;
+      }
+      long current = values[i];
+      switch (type) {
+        case COUNT:
+        case SUM:
+          long sum = current + value;
+          if (((current ^ sum) & (value ^ sum)) < 0)
+            throw new ArithmeticException("SUM overflow merging region aggregates");
+          values[i] = sum;
+          break;
+        case MIN:
+          values[i] = Math.min(current, value);
+          break;
+        case MAX:
+          values[i] = Math.max(current, value);
+          break;
+      }
+    }
+  }
+
   /**
    * It sums up the value returned from various regions. In case qualifier is
    * null, summation of all the column qualifiers in the given family is done.
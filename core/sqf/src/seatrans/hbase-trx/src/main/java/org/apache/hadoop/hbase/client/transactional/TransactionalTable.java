@@ -33,11 +33,15 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.logging.Log;
@@ -76,6 +80,8 @@ import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProt
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.DeleteRegionTxResponse;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.DeleteTransactionalRequest;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.DeleteTransactionalResponse;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.GetMultipleTransactionalRequest;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.GetMultipleTransactionalResponse;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.GetTransactionalRequest;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.GetTransactionalResponse;
 import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.OpenScannerRequest;
@@ -229,6 +235,189 @@ public class TransactionalTable extends HTable implements TransactionalTableClie
       return ProtobufUtil.toResult(result.getResult());      
     }
     
+    /**
+     * Get a set of rows. The Gets are grouped by region and each region is
+     * asked for its rows in a single getMultiple call; when the rows span
+     * more than one region the per-region calls are issued in parallel.
+     * Rows a region rejects as outside its range, because a cached location
+     * was stale, are regrouped on refreshed locations and asked for again.
+     *
+     * @param transactionState
+     * @param gets
+     * @return the results, in the same order as the gets
+     * @throws IOException
+     */
+    public Result[] get(final TransactionState transactionState,
+                        final List<Get> gets) throws IOException {
+      final long transactionId = transactionState.getTransactionId();
+      if (LOG.isTraceEnabled()) LOG.trace("Enter TransactionalTable.get[] <List> size: " + gets.size() + ", transid: " + transactionId);
+      final Result[] results = new Result[gets.size()];
+
+      List<Integer> pending = new ArrayList<Integer>(gets.size());
+      for (int i = 0; i < gets.size(); i++)
+        pending.add(i);
+      boolean reload = false;
+      int retryCount = 0;
+      int regions = 0;
+      while (true) {
+        final Map<TransactionRegionLocation, List<Integer>> rows = groupByRegion(gets, pending, reload);
+        final List<Integer> misrouted = Collections.synchronizedList(new ArrayList<Integer>());
+        regions = rows.size();
+
+        if (rows.size() == 1) {
+          Map.Entry<TransactionRegionLocation, List<Integer>> entry = rows.entrySet().iterator().next();
+          getMultiple(transactionState, entry.getKey(), gets, entry.getValue(), results, misrouted);
+        }
+        else {
+          List<Future<Void>> futures = new ArrayList<Future<Void>>(rows.size());
+          for (final Map.Entry<TransactionRegionLocation, List<Integer>> entry : rows.entrySet()) {
+            futures.add(threadPool.submit(new Callable<Void>() {
+              public Void call() throws IOException {
+                getMultiple(transactionState, entry.getKey(), gets, entry.getValue(), results, misrouted);
+                return null;
+              }
+            }));
+          }
+          IOException ioe = null;
+          for (Future<Void> future : futures) {
+            try {
+              future.get();
+            } catch (ExecutionException e) {
+              if (ioe == null)
+                ioe = (e.getCause() instanceof IOException) ? (IOException)e.getCause()
+                                                             : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+              if (ioe == null)
+                ioe = new InterruptedIOException("get <List> interrupted, transaction [" + transactionId + "]");
+            }
+          }
+          if (ioe != null)
+            throw ioe;
+        }
+
+        if (misrouted.isEmpty())
+          break;
+        if (++retryCount >= TransactionalTable.retries)
+          throw new IOException("get <List> rows still outside the regions they were sent to after "
+                                + retryCount + " attempts, transaction [" + transactionId + "]");
+        if (LOG.isDebugEnabled()) LOG.debug("get <List> " + misrouted.size() + " rows sent to the wrong region, refreshing locations, transaction ["
+                                            + transactionId + "] attempt " + retryCount);
+        try {
+          Thread.sleep(TransactionalTable.delay);
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("get <List> interrupted, transaction [" + transactionId + "]");
+        }
+        pending = new ArrayList<Integer>(misrouted);
+        reload = true;
+      }
+      if (LOG.isTraceEnabled()) LOG.trace("Exit TransactionalTable.get[] <List> regions: " + regions + ", transid: " + transactionId);
+      return results;
+    }
+
+    // collect all rows from same region, remembering where each one goes in the results
+    private Map<TransactionRegionLocation, List<Integer>> groupByRegion(final List<Get> gets,
+                                                                       final List<Integer> indexes,
+                                                                       final boolean reload) throws IOException {
+      Map<TransactionRegionLocation, List<Integer>> rows = new HashMap<TransactionRegionLocation, List<Integer>>();
+      for (Integer i : indexes) {
+        HRegionLocation hlocation = this.getRegionLocation(gets.get(i).getRow(), reload);
+        TransactionRegionLocation location = new TransactionRegionLocation(hlocation.getRegionInfo(), hlocation.getServerName());
+        List<Integer> list = rows.get(location);
+        if (list == null) {
+          list = new ArrayList<Integer>();
+          rows.put(location, list);
+        }
+        list.add(i);
+      }
+      return rows;
+    }
+
+    private void getMultiple(final TransactionState transactionState,
+                             final TransactionRegionLocation location,
+                             final List<Get> gets,
+                             final List<Integer> indexes,
+                             final Result[] results,
+                             final List<Integer> misrouted) throws IOException {
+      final long transactionId = transactionState.getTransactionId();
+      final String regionName = location.getRegionInfo().getRegionNameAsString();
+      final byte[] row = gets.get(indexes.get(0)).getRow();
+      Batch.Call<TrxRegionService, GetMultipleTransactionalResponse> callable =
+      new Batch.Call<TrxRegionService, GetMultipleTransactionalResponse>() {
+        ServerRpcController controller = new ServerRpcController();
+        BlockingRpcCallback<GetMultipleTransactionalResponse> rpcCallback =
+        new BlockingRpcCallback<GetMultipleTransactionalResponse>();
+
+        @Override
+        public GetMultipleTransactionalResponse call(TrxRegionService instance) throws IOException {
+          org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.GetMultipleTransactionalRequest.Builder builder = GetMultipleTransactionalRequest.newBuilder();
+          builder.setTransactionId(transactionId);
+          builder.setStartId(transactionState.getStartId());
+          builder.setRegionName(ByteString.copyFromUtf8(regionName));
+
+          for (Integer index : indexes)
+            builder.addGet(ProtobufUtil.toGet(gets.get(index)));
+
+          instance.getMultiple(controller, builder.build(), rpcCallback);
+          return rpcCallback.get();
+        }
+      };
+
+      GetMultipleTransactionalResponse result = null;
+      try {
+        int retryCount = 0;
+        boolean retry = false;
+        do {
+          Iterator<Map.Entry<byte[], GetMultipleTransactionalResponse>> it = super.coprocessorService(TrxRegionService.class,
+                                                                                                        row,
+                                                                                                        row,
+                                                                                                        callable)
+                                                                                                        .entrySet().iterator();
+          if(it.hasNext()) {
+            result = it.next().getValue();
+            retry = false;
+          }
+
+          if(result == null || result.getException().contains("closing region")
+                            || result.getException().contains("NewTransactionStartedBefore")) {
+            if (result != null && result.getException().contains("NewTransactionStartedBefore")) {
+               if (LOG.isTraceEnabled()) LOG.trace("get <List> retrying because region is recovering trRegion ["
+                      + location.getRegionInfo().getEncodedName() + "], endKey: "
+                      + Hex.encodeHexString(location.getRegionInfo().getEndKey())
+                      + " and transaction [" + transactionId + "]");
+
+               Thread.sleep(TransactionalTable.regionNotReadyDelay);
+            }
+            else{
+               Thread.sleep(TransactionalTable.delay);
+            }
+            retry = true;
+            transactionState.setRetried(true);
+            retryCount++;
+          }
+        } while (retryCount < TransactionalTable.retries && retry == true);
+      } catch (Throwable e) {
+        if (LOG.isErrorEnabled()) LOG.error("ERROR while calling getMultipleTransactional ", e);
+        throw new IOException("ERROR while calling getMultipleTransactional ", e);
+      }
+      if(result == null)
+        throw new IOException(retryErrMsg);
+      else if(result.hasException()) {
+        if (result.getException().contains("WrongRegionException")) {
+          if (LOG.isTraceEnabled()) LOG.trace("get <List> region " + regionName + " rejected "
+                 + indexes.size() + " rows, transaction [" + transactionId + "]: " + result.getException());
+          misrouted.addAll(indexes);
+          return;
+        }
+        throw new IOException(result.getException());
+      }
+      else if(result.getResultCount() != indexes.size())
+        throw new IOException("getMultipleTransactional returned " + result.getResultCount()
+                              + " results for " + indexes.size() + " gets, region " + regionName);
+
+      for (int i = 0; i < indexes.size(); i++)
+        results[indexes.get(i)] = ProtobufUtil.toResult(result.getResult(i));
+    }
+
     /**
      * @param delete
      * @throws IOException
@@ -376,13 +565,13 @@ public class TransactionalTable extends HTable implements TransactionalTableClie
      * @throws IOException
      * @since 0.20.0
      */
-    public synchronized void put(final TransactionState transactionState, final Put put) throws IOException {
+    public void put(final TransactionState transactionState, final Put put) throws IOException {
 
 	put(transactionState, put, true);
 
     }
 
-    public synchronized void put(final TransactionState transactionState, final Put put, final boolean bool_addLocation) throws IOException {
+    public void put(final TransactionState transactionState, final Put put, final boolean bool_addLocation) throws IOException {
     	if (LOG.isTraceEnabled()) LOG.trace("TransactionalTable.put ENTRY");
     
       if (bool_addLocation) addLocation(transactionState, super.getRegionLocation(put.getRow()));
@@ -453,7 +642,7 @@ public class TransactionalTable extends HTable implements TransactionalTableClie
     if (LOG.isTraceEnabled()) LOG.trace("TransactionalTable.put EXIT");
   }
 
-   public synchronized void putRegionTx(final long tid, final Put put, final boolean autoCommit) throws IOException{
+   public void putRegionTx(final long tid, final Put put, final boolean autoCommit) throws IOException{
         if (LOG.isTraceEnabled()) LOG.trace("TransactionalTable.putRegionTx ENTRY, autoCommit: "
                + autoCommit);
 
@@ -514,7 +703,7 @@ public class TransactionalTable extends HTable implements TransactionalTableClie
 
   }
 
-  public synchronized ResultScanner getScanner(final TransactionState transactionState, final Scan scan) throws IOException {
+  public ResultScanner getScanner(final TransactionState transactionState, final Scan scan) throws IOException {
     if (LOG.isTraceEnabled()) LOG.trace("Enter TransactionalTable.getScanner for transaction " + transactionState.getTransactionId() + " scan ");
     if (scan.getCaching() <= 0) {
         scan.setCaching(getScannerCaching());
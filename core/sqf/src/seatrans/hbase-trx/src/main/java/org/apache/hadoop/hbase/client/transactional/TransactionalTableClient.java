@@ -63,6 +63,16 @@ public interface  TransactionalTableClient  {
     Result get(final TransactionState transactionState, final Get get) throws IOException;
 
     Result get(final TransactionState transactionState, final Get get, final boolean bool_addLocation) throws IOException;
+
+    /**
+     * Get a set of rows, batching the rows that live in the same region
+     *
+     * @param transactionState
+     * @param gets
+     * @return the results, in the same order as the gets
+     * @throws IOException
+     */
+    Result[] get(final TransactionState transactionState, final List<Get> gets) throws IOException;
     
     /**
      * @param delete
@@ -0,0 +1,157 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.coprocessor.transactional;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.hadoop.hbase.wal.WAL;
+
+/**
+ * Group sync stage shared by all regions of a region server that write to
+ * the same WAL.
+ *
+ * A caller that needs its edits durable up to some WAL txid either finds
+ * them already synced, waits for the sync in progress, or becomes the
+ * leader and syncs up to the highest txid requested so far. One sync thus
+ * covers every committer that appended before it started.
+ */
+public class TrxWALSyncer {
+
+  private static final Map<WAL, TrxWALSyncer> syncers =
+      Collections.synchronizedMap(new WeakHashMap<WAL, TrxWALSyncer>());
+
+  // Batch size buckets: 1, 2, 3-4, 5-8, ... , 65-128, >128 callers per sync
+  private static final int BATCH_BUCKETS = 9;
+  // Latency buckets: <=128us, <=256us, ... , <=65536us, >65536us
+  private static final int LATENCY_BUCKETS = 11;
+  private static final long LATENCY_BASE_US = 128;
+
+  private final WAL wal;
+  private long syncedTxid = 0;
+  private long requestedTxid = 0;
+  private int pendingCallers = 0;
+  private boolean syncInProgress = false;
+
+  private final AtomicLongArray batchHistogram = new AtomicLongArray(BATCH_BUCKETS);
+  private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS);
+
+  private TrxWALSyncer(WAL wal) {
+    this.wal = wal;
+  }
+
+  public static TrxWALSyncer getInstance(WAL wal) {
+    synchronized (syncers) {
+      TrxWALSyncer syncer = syncers.get(wal);
+      if (syncer == null) {
+        syncer = new TrxWALSyncer(wal);
+        syncers.put(wal, syncer);
+      }
+      return syncer;
+    }
+  }
+
+  /**
+   * Return once the WAL is synced at least up to txid.
+   */
+  public void sync(long txid) throws IOException {
+    long target;
+    int batch;
+    synchronized (this) {
+      if (syncedTxid >= txid)
+        return;
+      if (txid > requestedTxid)
+        requestedTxid = txid;
+      pendingCallers++;
+      while (syncInProgress) {
+        try {
+          wait();
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted waiting for WAL sync of txid " + txid, ie);
+        }
+        if (syncedTxid >= txid)
+          return;
+      }
+      syncInProgress = true;
+      target = requestedTxid;
+      batch = pendingCallers;
+      pendingCallers = 0;
+    }
+
+    long startTime = System.nanoTime();
+    boolean synced = false;
+    try {
+      wal.sync(target);
+      synced = true;
+    } finally {
+      synchronized (this) {
+        syncInProgress = false;
+        if (synced && target > syncedTxid)
+          syncedTxid = target;
+        else if (! synced)
+          // Let the followers try for themselves
+          pendingCallers += batch - 1;
+        notifyAll();
+      }
+    }
+    batchHistogram.incrementAndGet(bucket(batch, 1, BATCH_BUCKETS));
+    latencyHistogram.incrementAndGet(bucket((System.nanoTime() - startTime) / 1000,
+                                            LATENCY_BASE_US, LATENCY_BUCKETS));
+  }
+
+  // Power of two bucket of value relative to base, the last bucket is open ended
+  private static int bucket(long value, long base, int buckets) {
+    int i = 0;
+    long limit = base;
+    while (value > limit && i < buckets - 1) {
+      limit <<= 1;
+      i++;
+    }
+    return i;
+  }
+
+  public String getBatchSizeHistogram() {
+    StringBuilder sb = new StringBuilder();
+    long limit = 1;
+    for (int i = 0; i < BATCH_BUCKETS; i++, limit <<= 1) {
+      sb.append(i == BATCH_BUCKETS - 1 ? ">" + (limit >> 1) : "<=" + limit);
+      sb.append(": ").append(batchHistogram.get(i)).append(' ');
+    }
+    return sb.toString();
+  }
+
+  public String getLatencyHistogram() {
+    StringBuilder sb = new StringBuilder();
+    long limit = LATENCY_BASE_US;
+    for (int i = 0; i < LATENCY_BUCKETS; i++, limit <<= 1) {
+      sb.append(i == LATENCY_BUCKETS - 1 ? ">" + (limit >> 1) : "<=" + limit);
+      sb.append("us: ").append(latencyHistogram.get(i)).append(' ');
+    }
+    return sb.toString();
+  }
+}
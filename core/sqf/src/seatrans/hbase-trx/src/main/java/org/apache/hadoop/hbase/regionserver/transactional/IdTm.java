@@ -35,6 +35,7 @@ import org.apache.hadoop.hbase.util.Bytes;
  */
 public class IdTm implements IdTmCb {
     private static final int TO = 1000;
+    public static final int MAX_ID_BLOCK = 4096; // as in idtmsrv.h
     private static final Log LOG = LogFactory.getLog(IdTm.class);
 
     /**
@@ -135,6 +136,34 @@ public class IdTm implements IdTmCb {
         }
     }
 
+    /**
+     * id server, take a block of ids
+     *
+     * @param timeout timeout in ms
+     * @param count number of ids, at most MAX_ID_BLOCK
+     * @param id first id of the block, the block is id.val .. id.val + count - 1
+     * @exception IdTmException exception
+     */
+    public void idBlock(int timeout, int count, IdTmId id) throws IdTmException {
+        if (LOG.isDebugEnabled()) LOG.debug("idBlock begin with timeout " + timeout + ", count " + count);
+        try {
+           int err = native_id_block(timeout, count, id);
+           if (LOG.isDebugEnabled()) LOG.debug("idBlock returned: " + id.val + ", error: " + err);
+           if (err != 0) {
+              LOG.error("native_id_block returned: " + err + " Throwing IdTmException");
+              throw new IdTmException("ferr=" + err);
+           }
+           if (id.val == 0) {
+              LOG.error("native_id_block returned id: " + id.val + " err: " + err + ", Throwing IdTmException");
+              throw new IdTmException("ferr=" + err);
+           }
+
+        } catch (Throwable t) {
+           LOG.error("idBlock threw:", t);
+           throw new IdTmException("idBlock threw:" + t);
+        }
+    }
+
     /**
      * idToStr server id_to_string
      *
@@ -221,6 +250,16 @@ public class IdTm implements IdTmCb {
      */
     private native int native_id(int timeout, IdTmId id);
 
+    /**
+     * id server id block
+     *
+     * @param timeout timeout in ms
+     * @param count number of ids
+     * @param id first id
+     * @return file error
+     */
+    private native int native_id_block(int timeout, int count, IdTmId id);
+
     /**
      * id server id to string
      *
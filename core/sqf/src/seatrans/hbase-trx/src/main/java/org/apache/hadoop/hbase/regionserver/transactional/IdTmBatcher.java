@@ -0,0 +1,158 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * IdTmBatcher
+ *
+ * Shares id server round trips between callers that want an id at the
+ * same time. While one id_block request is in flight, later callers join
+ * the next batch, which is sent as one request for as many ids as it has
+ * callers once the current one returns.
+ *
+ * A batch is only sent after each of its callers asked, and the server
+ * counter only moves forward, so every id is above any id the server
+ * issued before its caller asked, in any process. Ids order exactly like
+ * ids taken with one request each and no id is taken that is not used.
+ * A single caller pays one round trip, as before.
+ */
+public class IdTmBatcher {
+    private static final Log LOG = LogFactory.getLog(IdTmBatcher.class);
+
+    /** Callers served by one id_block request. */
+    private static final class Batch {
+        int           size;
+        boolean       done;
+        long          first;
+        IdTmException error;
+    }
+
+    /** Where ids come from, the id server outside of tests. */
+    interface BlockSource {
+        /** @return the first of count ids */
+        long idBlock(int timeout, int count) throws IdTmException;
+    }
+
+    private final BlockSource idServer;
+    private final int         timeout;
+    private final int         maxBatch;
+
+    // guarded by this
+    private Batch   pending = new Batch();
+    private boolean inFlight = false;
+    private long    requests = 0;
+    private long    batches = 0;
+
+    public IdTmBatcher(final IdTm idServer, int timeout, int maxBatch) {
+        this(new BlockSource() {
+                public long idBlock(int timeout, int count) throws IdTmException {
+                    IdTmId first = new IdTmId();
+                    idServer.idBlock(timeout, count, first);
+                    return first.val;
+                }
+            }, timeout, maxBatch);
+    }
+
+    IdTmBatcher(BlockSource idServer, int timeout, int maxBatch) {
+        this.idServer = idServer;
+        this.timeout = timeout;
+        this.maxBatch = Math.max(1, Math.min(maxBatch, IdTm.MAX_ID_BLOCK));
+        if (LOG.isInfoEnabled()) LOG.info("IdTmBatcher maxBatch: " + this.maxBatch);
+    }
+
+    /**
+     * Next id, taken from the server after this call started.
+     *
+     * @exception IdTmException if the request for the batch failed
+     */
+    public long id() throws IdTmException {
+        Batch b;
+        int slot;
+        boolean send = false;
+        boolean interrupted = false;
+        synchronized (this) {
+            while (pending.size == maxBatch)
+                interrupted |= waitUninterruptibly();
+            b = pending;
+            slot = b.size++;
+            requests++;
+            while (! b.done) {
+                if (! inFlight && b == pending) {
+                    // Nobody is sending, this caller sends the batch
+                    inFlight = true;
+                    pending = new Batch();
+                    notifyAll();
+                    send = true;
+                    break;
+                }
+                interrupted |= waitUninterruptibly();
+            }
+        }
+        if (send)
+            send(b);
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (b.error != null)
+            throw new IdTmException("id: batch of " + b.size + " failed", b.error);
+        return b.first + slot;
+    }
+
+    private void send(Batch b) {
+        long first = 0;
+        IdTmException error = null;
+        try {
+            // b is no longer pending, its size is final
+            first = idServer.idBlock(timeout, b.size);
+            if (LOG.isTraceEnabled()) LOG.trace("IdTmBatcher took " + b.size + " ids from " + first);
+        } catch (IdTmException exc) {
+            error = exc;
+        }
+        synchronized (this) {
+            b.first = first;
+            b.error = error;
+            b.done = true;
+            batches++;
+            inFlight = false;
+            notifyAll();
+        }
+    }
+
+    private boolean waitUninterruptibly() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException e) {
+            // The slot is taken, the id must still be collected
+            return true;
+        }
+    }
+
+    public synchronized String getStats() {
+        return "IdTmBatcher maxBatch: " + maxBatch + " requests: " + requests + " batches: " + batches;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of row keys or column qualifiers written by an SSCC transaction branch.
+ *
+ * A plain hashed set with no Bloom filter in front. A miss in the set
+ * already costs one hash of the key and rarely a comparison, which is all
+ * a filter check could save, while the filter adds its own hash to every
+ * add and lookup. This holds for the per-branch row sets as much as for
+ * the per-row qualifier sets, however the filter is sized.
+ *
+ * Not synchronized; callers hold the owning state's lock.
+ */
+class SsccKeySet {
+
+  private final Set<ByteBuffer> keys = new HashSet<ByteBuffer>();
+
+  /**
+   * @return true if key was not already in the set
+   */
+  boolean add(byte[] key) {
+    return keys.add(ByteBuffer.wrap(key));
+  }
+
+  boolean contains(byte[] key) {
+    return keys.contains(ByteBuffer.wrap(key));
+  }
+
+  /**
+   * @return true if key was in the set
+   */
+  boolean remove(byte[] key) {
+    return keys.remove(ByteBuffer.wrap(key));
+  }
+
+  int size() {
+    return keys.size();
+  }
+
+  void clear() {
+    keys.clear();
+  }
+}
@@ -24,6 +24,7 @@
 package org.apache.hadoop.hbase.regionserver.transactional;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -76,7 +77,19 @@ public class SsccTransactionState extends TransactionState{
     private List<byte[]>  putRows =  Collections.synchronizedList(new LinkedList<byte[]>());
     private List<Delete>  delRows =  Collections.synchronizedList(new LinkedList<Delete>());
     private List<Scan> scans = Collections.synchronizedList(new LinkedList<Scan>());
-    private Map<String, byte[]> colUpdatedByTransaction = new HashMap<String, byte[]>();  
+    // Rows in putRows and delRows, for membership checks without a list walk
+    private final SsccKeySet putRowSet = new SsccKeySet();
+    private final SsccKeySet delRowSet = new SsccKeySet();
+    private final Map<ByteBuffer, ColumnList> colUpdatedByTransaction = new HashMap<ByteBuffer, ColumnList>();
+
+    /**
+     * Columns of one row written by this transaction, both as the
+     * "|q1||q2|" list stored in COLUMNS_COL and as a set for lookups.
+     */
+    private static class ColumnList {
+        byte[] list;
+        final SsccKeySet qualifiers = new SsccKeySet();
+    }
 
     private long commitSequenceId;
     private long startId_;
@@ -98,35 +111,40 @@ public class SsccTransactionState extends TransactionState{
         if(LOG.isTraceEnabled()) LOG.trace("SsccTransactionState : new state object for transid: " + transactionId + " with sequence: " + SsccSequenceId + " complete");
     }
 
-    public void addToColList(byte[] rowkey, byte[] collist)
+    /**
+     * Record qualifier as written to rowkey by this transaction.
+     *
+     * @param prepend add a new qualifier to the front rather than the end of the list
+     * @return the row's column list in the form stored in COLUMNS_COL
+     */
+    public byte[] addToColList(byte[] rowkey, byte[] qualifier, boolean prepend)
     {
         synchronized(colUpdatedByTransaction){
-            String keystr= new String(rowkey);
-            if(colUpdatedByTransaction.containsKey(keystr) ==true)
-            {
-                colUpdatedByTransaction.remove(keystr);
-                colUpdatedByTransaction.put(keystr, collist);
+            ByteBuffer key = ByteBuffer.wrap(rowkey);
+            ColumnList cols = colUpdatedByTransaction.get(key);
+            if (cols == null) {
+                cols = new ColumnList();
+                colUpdatedByTransaction.put(key, cols);
             }
-            else
-            {
-                colUpdatedByTransaction.put(keystr, collist);
+            if (cols.qualifiers.add(qualifier)) {
+                byte[] entry = new byte[qualifier.length + 2];
+                entry[0] = '|';
+                System.arraycopy(qualifier, 0, entry, 1, qualifier.length);
+                entry[entry.length - 1] = '|';
+                cols.list = prepend ? byteMerger(entry, cols.list) : byteMerger(cols.list, entry);
             }
+            return cols.list;
         }
     }
 
     public byte[] getColList(byte[] rowkey)
     {
-        String keystr= new String(rowkey);
         synchronized(colUpdatedByTransaction){
-            if(colUpdatedByTransaction == null) return null;
-            if(colUpdatedByTransaction.containsKey(keystr) ==true)
-            {
-                return colUpdatedByTransaction.get(keystr);
-            }
-            else
-                return null;
+            ColumnList cols = colUpdatedByTransaction.get(ByteBuffer.wrap(rowkey));
+            return cols == null ? null : cols.list;
         }
     }
+
     /**
      * Get the puts rowkeys in transaction order.
      * 
@@ -146,25 +164,40 @@ public class SsccTransactionState extends TransactionState{
     }
 
     /**
-     * add a rowkey into putRows
+     * add a rowkey into putRows, unless it is already there
      */
     public void addToPutList(byte[] rowkey) {
-       putRows.add(rowkey);
+       synchronized(putRows) {
+          if (putRowSet.add(rowkey))
+             putRows.add(rowkey);
+       }
     }
 
     /**
      * add a rowkey into delRows
      */
     public void addToDelList(Delete del) {
-       delRows.add(del);
+       synchronized(delRows) {
+          delRowSet.add(del.getRow());
+          delRows.add(del);
+       }
     }
 
     public void clearStateResource()
     {
         //TODO, clear all resources here
         //should be invoked by retireTransaction
-        delRows.clear();
-        putRows.clear();
+        synchronized(delRows) {
+           delRows.clear();
+           delRowSet.clear();
+        }
+        synchronized(putRows) {
+           putRows.clear();
+           putRowSet.clear();
+        }
+        synchronized(colUpdatedByTransaction) {
+           colUpdatedByTransaction.clear();
+        }
     }
 
     /**
@@ -500,7 +533,8 @@ public class SsccTransactionState extends TransactionState{
                           " is < timestamp: " + cellTimestamp + ".  Returning true" );
                 return true;
             }
-            if(LOG.isTraceEnabled()) LOG.trace("checkVersionListForConflict : TxId: " + TxId + ", 3");
+            // versions come back newest first, none of the remaining ones can be newer
+            break;
         }
         if(LOG.isTraceEnabled()) LOG.trace("checkVersionListForConflict : TxId: " + TxId + ", 4");
         return false;
@@ -528,8 +562,9 @@ public class SsccTransactionState extends TransactionState{
                 if(LOG.isTraceEnabled()) LOG.trace("the status cell is deleted");
                 return false;
             }
-            if(LOG.isTraceEnabled()) LOG.trace("checkStatusListForConflict : check gTransId " + gTransId + " with status's transactionId " + SsccConst.getTransactionId( CellUtil.cloneValue(c) ) );
-            return !(gTransId==SsccConst.getTransactionId( CellUtil.cloneValue(c) ));
+            long statusTransId = Bytes.toLong(c.getValueArray(), c.getValueOffset() + 1);
+            if(LOG.isTraceEnabled()) LOG.trace("checkStatusListForConflict : check gTransId " + gTransId + " with status's transactionId " + statusTransId );
+            return !(gTransId==statusTransId);
         }
 
         if(count > 1){
@@ -538,7 +573,7 @@ public class SsccTransactionState extends TransactionState{
              return true; //there are more than 1 update, and this is a stateful update
            }
            for (Cell c : statusList) {
-              if (SsccConst.getStatusValue(CellUtil.cloneValue(c)) == SsccConst.S_STATEFUL_BYTE) {
+              if (c.getValueArray()[c.getValueOffset()] == SsccConst.S_STATEFUL_BYTE) {
                  if(LOG.isTraceEnabled()) LOG.trace("checkStatusListForConflict: stateful update already pending");
                  return true; //there is already a stateful update
               }
@@ -581,14 +616,18 @@ public class SsccTransactionState extends TransactionState{
         byte[] putRow = put.getRow();
         long putTimeStamp = startId_;
 
-        for(int i=delRows.size()-1;i>=0;i--){
-            byte[] delRow = delRows.get(i).getRow();
-            if (LOG.isTraceEnabled()){
-                long delTimeStamp = delRows.get(i).getTimeStamp();
-                LOG.trace("putRow : "+Bytes.toString(putRow)+" , timeStamp : "+putTimeStamp+".  delRow : "+Bytes.toString(delRow)+" , timeStamp : "+delTimeStamp);
-            }
-            if (Arrays.equals(putRow, delRow) ) {
-                delRows.remove(i);
+        synchronized(delRows) {
+            if (! delRowSet.remove(putRow))
+                return;
+            for(int i=delRows.size()-1;i>=0;i--){
+                byte[] delRow = delRows.get(i).getRow();
+                if (LOG.isTraceEnabled()){
+                    long delTimeStamp = delRows.get(i).getTimeStamp();
+                    LOG.trace("putRow : "+Bytes.toString(putRow)+" , timeStamp : "+putTimeStamp+".  delRow : "+Bytes.toString(delRow)+" , timeStamp : "+delTimeStamp);
+                }
+                if (Arrays.equals(putRow, delRow) ) {
+                    delRows.remove(i);
+                }
             }
         }
     }
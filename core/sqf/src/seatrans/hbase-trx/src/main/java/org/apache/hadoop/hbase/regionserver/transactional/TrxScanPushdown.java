@@ -0,0 +1,509 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.DoNotRetryIOException;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.ScanPredicate;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.ScanPushdown;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.TransactionalAggregateSpec;
+import org.apache.hadoop.hbase.protobuf.generated.ClientProtos.Column;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.EnvironmentEdgeManager;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Predicate and projection a transactional scan evaluates in the region,
+ * before rows are returned from performScan.
+ *
+ * The client attaches a ScanPushdown message to the Scan with
+ * setPushdown(); openScanner compiles it once per scanner.
+ */
+public class TrxScanPushdown {
+
+  public static final String ATTRIBUTE = "trx.pushdown";
+
+  private final Node predicate;
+  // family -> qualifiers returned, an empty set returns the whole family
+  private final TreeMap<byte[], NavigableSet<byte[]>> projection;
+
+  public TrxScanPushdown(final byte[] serialized) throws IOException {
+    ScanPushdown msg = ScanPushdown.parseFrom(serialized);
+    predicate = msg.hasPredicate() ? compile(msg.getPredicate()) : null;
+    if (msg.getProjectionCount() > 0) {
+      projection = new TreeMap<byte[], NavigableSet<byte[]>>(Bytes.BYTES_COMPARATOR);
+      for (Column column : msg.getProjectionList()) {
+        NavigableSet<byte[]> qualifiers = projection.get(column.getFamily().toByteArray());
+        if (qualifiers == null) {
+          qualifiers = new TreeSet<byte[]>(Bytes.BYTES_COMPARATOR);
+          projection.put(column.getFamily().toByteArray(), qualifiers);
+        }
+        for (ByteString qualifier : column.getQualifierList())
+          qualifiers.add(qualifier.toByteArray());
+      }
+    }
+    else
+      projection = null;
+  }
+
+  /**
+   * The pushdown attached to scan, or null if there is none.
+   */
+  public static TrxScanPushdown fromScan(final Scan scan) throws IOException {
+    byte[] serialized = scan.getAttribute(ATTRIBUTE);
+    if (serialized == null)
+      return null;
+    return new TrxScanPushdown(serialized);
+  }
+
+  /**
+   * Attach predicate and projection to scan. Columns the predicate tests
+   * are added to a scan that is restricted to some columns. Without a
+   * projection the region then returns just the columns the scan asked
+   * for, so the added ones never reach the client.
+   */
+  public static void setPushdown(final Scan scan, final ScanPredicate predicate, List<Column> projection) {
+    ScanPushdown.Builder builder = ScanPushdown.newBuilder();
+    if (predicate != null) {
+      builder.setPredicate(predicate);
+      if (scan.hasFamilies()) {
+        List<Column> requested = scanColumns(scan);
+        if (addPredicateColumns(scan, predicate) && projection == null)
+          projection = requested;
+      }
+    }
+    if (projection != null)
+      builder.addAllProjection(projection);
+    scan.setAttribute(ATTRIBUTE, builder.build().toByteArray());
+  }
+
+  // The columns of a restricted scan, a family without qualifiers is whole
+  private static List<Column> scanColumns(final Scan scan) {
+    List<Column> columns = new ArrayList<Column>();
+    for (Map.Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap().entrySet()) {
+      Column.Builder column = Column.newBuilder().setFamily(ByteString.copyFrom(entry.getKey()));
+      if (entry.getValue() != null) {
+        for (byte[] qualifier : entry.getValue())
+          column.addQualifier(ByteString.copyFrom(qualifier));
+      }
+      columns.add(column.build());
+    }
+    return columns;
+  }
+
+  // True if a column had to be added to the scan
+  private static boolean addPredicateColumns(final Scan scan, final ScanPredicate predicate) {
+    boolean added = false;
+    for (ScanPredicate operand : predicate.getOperandList())
+      added |= addPredicateColumns(scan, operand);
+    if (! predicate.hasFamily())
+      return added;
+    byte[] family = predicate.getFamily().toByteArray();
+    byte[] qualifier = predicate.hasQualifier() ? predicate.getQualifier().toByteArray()
+                                                : HConstants.EMPTY_BYTE_ARRAY;
+    Map<byte[], NavigableSet<byte[]>> familyMap = scan.getFamilyMap();
+    if (familyMap.containsKey(family)) {
+      NavigableSet<byte[]> columns = familyMap.get(family);
+      if (columns == null || columns.isEmpty() || columns.contains(qualifier))
+        return added;   // scanned already
+    }
+    scan.addColumn(family, qualifier);
+    return true;
+  }
+
+  /**
+   * The ScanPredicate of a Trafodion V2 pushdown predicate, ops being its
+   * operators in reverse polish order without the V2 marker. Column i of
+   * families and qualifiers goes with the i-th column operator and value
+   * j with the j-th comparison, as HTableClient passes them. The result
+   * selects the rows the HBase filters HTableClient builds for it select.
+   * Returns null if ops has an operator without a ScanPredicate form or
+   * does not parse.
+   */
+  public static ScanPredicate fromV2Predicate(final byte[][] families, final byte[][] qualifiers,
+                                              final String[] ops, final byte[][] values) {
+    LinkedList<ScanPredicate> stack = new LinkedList<ScanPredicate>();
+    int k = 0;    // column index
+    int kk = 0;   // value index
+    for (String op : ops) {
+      if (op.equals("AND") || op.equals("OR")) {
+        if (stack.size() < 2)
+          return null;
+        ScanPredicate right = stack.removeLast();
+        ScanPredicate left = stack.removeLast();
+        ScanPredicate.Kind kind = op.equals("AND") ? ScanPredicate.Kind.AND : ScanPredicate.Kind.OR;
+        ScanPredicate.Builder junction = ScanPredicate.newBuilder().setKind(kind);
+        addJunctionOperand(junction, left);
+        addJunctionOperand(junction, right);
+        stack.addLast(junction.build());
+        continue;
+      }
+      if (k >= families.length || families[k] == null || qualifiers[k] == null)
+        return null;
+      ScanPredicate.Builder test = ScanPredicate.newBuilder()
+        .setFamily(ByteString.copyFrom(families[k]))
+        .setQualifier(ByteString.copyFrom(qualifiers[k]));
+      k++;
+      if (op.equals("IS_NULL"))
+        stack.addLast(test.setKind(ScanPredicate.Kind.IS_NULL).build());
+      else if (op.equals("IS_NULL_NULL"))
+        stack.addLast(test.setKind(ScanPredicate.Kind.IS_NULL).setNullIndicatorLength(1).build());
+      else if (op.equals("IS_NOT_NULL"))   // never NULL, an empty AND is true
+        stack.addLast(ScanPredicate.newBuilder().setKind(ScanPredicate.Kind.AND).build());
+      else if (op.equals("IS_NOT_NULL_NULL"))
+        stack.addLast(test.setKind(ScanPredicate.Kind.IS_NOT_NULL).setNullIndicatorLength(1).build());
+      else {
+        boolean nullable = op.endsWith("_NULL");
+        ScanPredicate.CompareOp compareOp = v2CompareOp(nullable ? op.substring(0, op.length() - 5) : op);
+        if (compareOp == null || kk >= values.length || values[kk] == null)
+          return null;
+        // The constant carries the null indicator, compare whole values
+        ScanPredicate compare = test.setKind(ScanPredicate.Kind.COMPARE)
+          .setOp(compareOp)
+          .addValue(ByteString.copyFrom(values[kk]))
+          .setMissingMatches(true)
+          .build();
+        kk++;
+        if (nullable)
+          compare = ScanPredicate.newBuilder().setKind(ScanPredicate.Kind.AND)
+            .addOperand(ScanPredicate.newBuilder(compare).clearOp().clearValue().clearMissingMatches()
+                        .setKind(ScanPredicate.Kind.IS_NOT_NULL).setNullIndicatorLength(1))
+            .addOperand(compare)
+            .build();
+        stack.addLast(compare);
+      }
+    }
+    return (stack.size() == 1) ? stack.getLast() : null;
+  }
+
+  private static ScanPredicate.CompareOp v2CompareOp(final String op) {
+    for (ScanPredicate.CompareOp compareOp : ScanPredicate.CompareOp.values()) {
+      if (compareOp.name().equals(op))
+        return compareOp;
+    }
+    return null;   // NO_OP and anything unknown
+  }
+
+  // Flatten nested junctions of the same kind
+  private static void addJunctionOperand(final ScanPredicate.Builder junction, final ScanPredicate operand) {
+    if (operand.getKind() == junction.getKind() && ! operand.hasFamily())
+      junction.addAllOperand(operand.getOperandList());
+    else
+      junction.addOperand(operand);
+  }
+
+  public boolean hasPredicate() {
+    return predicate != null;
+  }
+
+  public boolean matches(final Result result) throws IOException {
+    return predicate == null || predicate.eval(result);
+  }
+
+  /**
+   * The cells of result that are part of the projection.
+   */
+  public Result project(final Result result) {
+    if (projection == null)
+      return result;
+    Cell[] cells = result.rawCells();
+    List<Cell> projected = new ArrayList<Cell>(cells.length);
+    for (Cell cell : cells) {
+      NavigableSet<byte[]> qualifiers = projection.get(CellUtil.cloneFamily(cell));
+      if (qualifiers == null)
+        continue;
+      if (qualifiers.isEmpty() || qualifiers.contains(CellUtil.cloneQualifier(cell)))
+        projected.add(cell);
+    }
+    if (projected.size() == cells.length)
+      return result;
+    return Result.create(projected);
+  }
+
+  /**
+   * Rows one call to nextBatch passed and left out, and whether the
+   * scanner has more.
+   */
+  public static class Batch {
+    public boolean hasMore = true;
+    public long count = 0L;
+    public long rowsFiltered = 0L;
+  }
+
+  /**
+   * Read rows from scanner into results until numberOfRows of them pass
+   * pushdown, which may be null, or the scanner has no more. A batch also
+   * ends once maxRowsExamined rows were read or maxTimeMs has passed, so a
+   * selective predicate returns a partial batch with hasMore set instead
+   * of reading the rest of the region in one call. Limits of 0 or less
+   * are not applied.
+   */
+  public static Batch nextBatch(final InternalScanner scanner, final TrxScanPushdown pushdown,
+                                final int numberOfRows, final long maxRowsExamined, final long maxTimeMs,
+                                final List<Result> results) throws IOException {
+    Batch batch = new Batch();
+    List<Cell> cells = new ArrayList<Cell>();
+    long deadline = (maxTimeMs > 0) ? EnvironmentEdgeManager.currentTime() + maxTimeMs : Long.MAX_VALUE;
+    long examined = 0L;
+    while (true) {
+      batch.hasMore = scanner.next(cells);
+      examined++;
+      if (! cells.isEmpty()) {
+        Result result = Result.create(cells);
+        cells = new ArrayList<Cell>();
+        if (pushdown == null) {
+          results.add(result);
+          batch.count++;
+        }
+        else if (pushdown.matches(result)) {
+          results.add(pushdown.project(result));
+          batch.count++;
+        }
+        else
+          batch.rowsFiltered++;
+      }
+      if (batch.count == numberOfRows || ! batch.hasMore)
+        return batch;
+      if ((maxRowsExamined > 0 && examined >= maxRowsExamined)
+          || (deadline != Long.MAX_VALUE && EnvironmentEdgeManager.currentTime() >= deadline))
+        return batch;
+    }
+  }
+
+  /**
+   * A value no longer than its null indicator, or whose indicator has a
+   * non zero byte, is NULL. Scan predicates and multiAggregate share this.
+   */
+  public static boolean isNullValue(final byte[] value, final int offset, final int length,
+                                    final int nullLength) {
+    if (length <= nullLength)
+      return true;
+    for (int i = 0; i < nullLength; i++) {
+      if (value[offset + i] != 0)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Decode the signed 1, 2, 4 or 8 byte number at offset.
+   */
+  public static long decodeLong(final byte[] value, final int offset, final int length,
+                                final boolean littleEndian) throws IOException {
+    if (length != 1 && length != 2 && length != 4 && length != 8)
+      throw new DoNotRetryIOException("Unsupported numeric value length " + length);
+    long result = 0;
+    if (littleEndian) {
+      for (int i = length - 1; i >= 0; i--)
+        result = (result << 8) | (value[offset + i] & 0xFF);
+    }
+    else {
+      for (int i = 0; i < length; i++)
+        result = (result << 8) | (value[offset + i] & 0xFF);
+    }
+    // Sign extend the narrower types
+    int shift = 64 - 8 * length;
+    return (result << shift) >> shift;
+  }
+
+  private static Node compile(final ScanPredicate p) throws IOException {
+    switch (p.getKind()) {
+      case AND:
+      case OR:
+        Node[] operands = new Node[p.getOperandCount()];
+        for (int i = 0; i < operands.length; i++)
+          operands[i] = compile(p.getOperand(i));
+        return new Junction(p.getKind() == ScanPredicate.Kind.AND, operands);
+      default:
+        if (! p.hasFamily())
+          throw new DoNotRetryIOException("Scan predicate " + p.getKind() + " needs a column");
+        return new ColumnTest(p);
+    }
+  }
+
+  private static abstract class Node {
+    abstract boolean eval(Result result) throws IOException;
+  }
+
+  private static class Junction extends Node {
+    private final boolean and;
+    private final Node[] operands;
+
+    Junction(boolean and, Node[] operands) {
+      this.and = and;
+      this.operands = operands;
+    }
+
+    @Override
+    boolean eval(Result result) throws IOException {
+      for (Node operand : operands) {
+        if (operand.eval(result) != and)
+          return ! and;
+      }
+      return and;
+    }
+  }
+
+  private static class ColumnTest extends Node {
+    private final ScanPredicate.Kind kind;
+    private final ScanPredicate.CompareOp op;
+    private final ScanPredicate.ValueType type;
+    private final byte[] family;
+    private final byte[] qualifier;
+    private final boolean littleEndian;
+    private final int nullLength;
+    private final boolean missingMatches;
+    private final boolean lowInclusive;
+    private final boolean highInclusive;
+    // Constants decoded per type, IN lists are sorted for binary search
+    private final byte[][] bytes;
+    private final long[] longs;
+    private final double[] doubles;
+
+    ColumnTest(ScanPredicate p) throws IOException {
+      kind = p.getKind();
+      op = p.getOp();
+      type = p.getType();
+      family = p.getFamily().toByteArray();
+      qualifier = p.hasQualifier() ? p.getQualifier().toByteArray() : HConstants.EMPTY_BYTE_ARRAY;
+      littleEndian = (p.getEncoding() == TransactionalAggregateSpec.Encoding.LITTLE_ENDIAN);
+      nullLength = p.getNullIndicatorLength();
+      missingMatches = p.getMissingMatches();
+      lowInclusive = p.getLowInclusive();
+      highInclusive = p.getHighInclusive();
+      int expected = (kind == ScanPredicate.Kind.COMPARE) ? 1 : (kind == ScanPredicate.Kind.RANGE) ? 2 : -1;
+      if (expected >= 0 && p.getValueCount() != expected)
+        throw new DoNotRetryIOException("Scan predicate " + kind + " takes " + expected + " values, got "
+                                        + p.getValueCount());
+      if (kind == ScanPredicate.Kind.COMPARE && ! p.hasOp())
+        throw new DoNotRetryIOException("Scan predicate COMPARE needs an operator");
+
+      int n = p.getValueCount();
+      bytes = new byte[n][];
+      longs = (type == ScanPredicate.ValueType.SIGNED) ? new long[n] : null;
+      doubles = (type == ScanPredicate.ValueType.FLOAT) ? new double[n] : null;
+      for (int i = 0; i < n; i++) {
+        bytes[i] = p.getValue(i).toByteArray();
+        if (longs != null)
+          longs[i] = decodeLong(bytes[i], 0, bytes[i].length, littleEndian);
+        else if (doubles != null)
+          doubles[i] = decodeDouble(bytes[i], 0, bytes[i].length, littleEndian);
+      }
+      if (kind == ScanPredicate.Kind.IN_LIST) {
+        if (longs != null)
+          Arrays.sort(longs);
+        else if (doubles != null)
+          Arrays.sort(doubles);
+        else
+          Arrays.sort(bytes, Bytes.BYTES_COMPARATOR);
+      }
+    }
+
+    @Override
+    boolean eval(Result result) throws IOException {
+      Cell cell = result.getColumnLatestCell(family, qualifier);
+      if (cell == null && missingMatches)
+        return kind != ScanPredicate.Kind.IS_NOT_NULL;
+      boolean isNull = (cell == null)
+        || isNullValue(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength(), nullLength);
+      if (kind == ScanPredicate.Kind.IS_NULL)
+        return isNull;
+      if (kind == ScanPredicate.Kind.IS_NOT_NULL || isNull)
+        return ! isNull;
+
+      byte[] value = cell.getValueArray();
+      int offset = cell.getValueOffset() + nullLength;
+      int length = cell.getValueLength() - nullLength;
+      switch (kind) {
+        case COMPARE:
+          return test(op, compare(value, offset, length, 0));
+        case RANGE:
+          int low = compare(value, offset, length, 0);
+          if (low < 0 || (low == 0 && ! lowInclusive))
+            return false;
+          int high = compare(value, offset, length, 1);
+          return high < 0 || (high == 0 && highInclusive);
+        case IN_LIST:
+          if (longs != null)
+            return Arrays.binarySearch(longs, decodeLong(value, offset, length, littleEndian)) >= 0;
+          if (doubles != null)
+            return Arrays.binarySearch(doubles, decodeDouble(value, offset, length, littleEndian)) >= 0;
+          return Arrays.binarySearch(bytes, Arrays.copyOfRange(value, offset, offset + length),
+                                     Bytes.BYTES_COMPARATOR) >= 0;
+        default:
+          throw new DoNotRetryIOException("Unknown scan predicate kind " + kind);
+      }
+    }
+
+
+    // Compare the column value with constant i
+    private int compare(byte[] value, int offset, int length, int i) throws IOException {
+      if (longs != null) {
+        long v = decodeLong(value, offset, length, littleEndian);
+        return (v < longs[i]) ? -1 : ((v == longs[i]) ? 0 : 1);
+      }
+      if (doubles != null)
+        return Double.compare(decodeDouble(value, offset, length, littleEndian), doubles[i]);
+      return Bytes.compareTo(value, offset, length, bytes[i], 0, bytes[i].length);
+    }
+
+    private static boolean test(ScanPredicate.CompareOp op, int cmp) throws IOException {
+      switch (op) {
+        case EQUAL:            return cmp == 0;
+        case NOT_EQUAL:        return cmp != 0;
+        case LESS:             return cmp < 0;
+        case LESS_OR_EQUAL:    return cmp <= 0;
+        case GREATER:          return cmp > 0;
+        case GREATER_OR_EQUAL: return cmp >= 0;
+        default:
+          throw new DoNotRetryIOException("Unknown scan predicate operator " + op);
+      }
+    }
+
+    private static double decodeDouble(byte[] value, int offset, int length, boolean littleEndian)
+        throws IOException {
+      if (length == 4)
+        return Float.intBitsToFloat((int)decodeLong(value, offset, 4, littleEndian));
+      if (length == 8)
+        return Double.longBitsToDouble(decodeLong(value, offset, 8, littleEndian));
+      throw new DoNotRetryIOException("Unsupported floating point value length " + length);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.protobuf.ProtobufUtil;
+import org.apache.hadoop.hbase.protobuf.generated.ClientProtos.MutationProto;
+import org.apache.hadoop.hbase.protobuf.generated.ClientProtos.MutationProto.MutationType;
+
+/**
+ * Local, append-only file holding the puts a large transaction branch has
+ * moved off the heap.
+ *
+ * Each record is
+ *
+ *    int     length of the serialized put
+ *    long    CRC32 of the serialized put
+ *    byte[]  the put as a MutationProto
+ *
+ * and is addressed by its offset. The file only lives as long as the
+ * transaction state that wrote it; it is not used for recovery, the WAL is.
+ *
+ * Only the Put objects are moved here. The WAL edit of the branch still
+ * holds its own copy of every cell in memory.
+ */
+public class TrxSpillFile {
+
+  static final Log LOG = LogFactory.getLog(TrxSpillFile.class);
+
+  private static final String SUFFIX = ".spill";
+  private static final int HEADER_SIZE = 4 + 8;
+
+  private final File file;
+  private final RandomAccessFile raf;
+  private final CRC32 crc = new CRC32();
+  private long length = 0;
+
+  public TrxSpillFile(File dir, String name) throws IOException {
+    if (! dir.isDirectory() && ! dir.mkdirs() && ! dir.isDirectory())
+      throw new IOException("Unable to create spill directory " + dir);
+    this.file = new File(dir, name + SUFFIX);
+    this.raf = new RandomAccessFile(file, "rw");
+    raf.setLength(0);
+  }
+
+  /**
+   * Append put to the file.
+   * @return the offset to read it back from
+   */
+  public synchronized long append(Put put) throws IOException {
+    byte[] data = ProtobufUtil.toMutation(MutationType.PUT, put).toByteArray();
+    crc.reset();
+    crc.update(data, 0, data.length);
+    ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + data.length);
+    buf.putInt(data.length).putLong(crc.getValue()).put(data);
+
+    long offset = length;
+    raf.seek(offset);
+    raf.write(buf.array());
+    length += buf.capacity();
+    return offset;
+  }
+
+  public synchronized Put read(long offset) throws IOException {
+    if (offset < 0 || offset + HEADER_SIZE > length)
+      throw new IOException("Spill offset " + offset + " out of range for " + file + " of length " + length);
+    raf.seek(offset);
+    int size = raf.readInt();
+    long checksum = raf.readLong();
+    if (size < 0 || offset + HEADER_SIZE + size > length)
+      throw new IOException("Corrupt spill record length " + size + " at offset " + offset + " in " + file);
+    byte[] data = new byte[size];
+    raf.readFully(data);
+    crc.reset();
+    crc.update(data, 0, data.length);
+    if (crc.getValue() != checksum)
+      throw new IOException("Spill record checksum mismatch at offset " + offset + " in " + file);
+    return ProtobufUtil.toPut(MutationProto.parseFrom(data));
+  }
+
+  public synchronized long getLength() {
+    return length;
+  }
+
+  /**
+   * Close and remove the file.
+   */
+  public synchronized void delete() {
+    try {
+      raf.close();
+    } catch (IOException ioe) {
+      LOG.warn("TrxSpillFile close of " + file + " failed ", ioe);
+    }
+    if (! file.delete() && file.exists())
+      LOG.warn("TrxSpillFile unable to delete " + file);
+  }
+
+  /**
+   * Remove the spill files left in dir by a previous instance of the
+   * regions whose names start with prefix.
+   */
+  public static void deleteStale(File dir, String prefix) {
+    File[] stale = dir.listFiles();
+    if (stale == null)
+      return;
+    for (File f : stale) {
+      String name = f.getName();
+      if (name.startsWith(prefix) && name.endsWith(SUFFIX)) {
+        if (LOG.isInfoEnabled()) LOG.info("TrxSpillFile removing stale spill file " + f);
+        f.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.client.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+public class TestTlogRecord {
+
+  private static final byte[] ROW = Bytes.toBytes(1234L);
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    byte[] value = TlogRecord.encode(7L, 1234L, TransState.STATE_COMMITTED, true,
+                                     -1L, 99L, new int[] { 0, 5 });
+    TlogRecord rec = TlogRecord.decode(ROW, value);
+    assertTrue(rec.isBinary());
+    assertEquals(7L, rec.getAsn());
+    assertEquals(1234L, rec.getTransactionId());
+    assertEquals(TransState.STATE_COMMITTED.toString(), rec.getState());
+    assertTrue(rec.hasPlaceHolder());
+    assertEquals(-1L, rec.getStartId());
+    assertEquals(99L, rec.getCommitId());
+    assertEquals(2, rec.getTableIds().length);
+    assertEquals(5, rec.getTableIds()[1]);
+  }
+
+  @Test
+  public void testStateCodesAreFixed() throws IOException {
+    // The state byte follows the version, a one byte asn and a two byte
+    // transid. Records already in the TLOG depend on these codes.
+    assertEquals(3, TlogRecord.encode(7L, 1234L, TransState.STATE_COMMITTED, false, 1L, 2L, new int[0])[4]);
+    assertEquals(5, TlogRecord.encode(7L, 1234L, TransState.STATE_ABORTED, false, 1L, 2L, new int[0])[4]);
+    for (TransState state : TransState.values()) {
+      if (state == TransState.STATE_LAST || state == TransState.STATE_BAD)
+        continue;
+      byte[] value = TlogRecord.encode(7L, 1234L, state, false, 1L, 2L, new int[0]);
+      assertEquals(state.getValue(), value[4]);
+      assertEquals(state.toString(), TlogRecord.decode(ROW, value).getState());
+    }
+  }
+
+  @Test
+  public void testStringRecord() throws IOException {
+    TlogRecord rec = TlogRecord.decode(ROW, Bytes.toBytes("7,1234,ABORTED,0,1,10,11,TRAFODION.S.T1"));
+    assertEquals(1234L, rec.getTransactionId());
+    assertEquals("ABORTED", rec.getState());
+    assertEquals(11L, rec.getCommitId());
+    assertEquals("TRAFODION.S.T1", rec.getTableNames().get(0));
+    assertNull(TlogRecord.decode(ROW, new byte[0]));
+  }
+
+  @Test
+  public void testMalformedRecordsThrowIOException() {
+    byte[] good = TlogRecord.encode(7L, 1234L, TransState.STATE_ACTIVE, false, 1L, 2L, new int[0]);
+    byte[] badState = good.clone();
+    badState[4] = (byte)100;   // after the version, a one byte asn and a two byte transid
+    byte[][] bad = {
+      Bytes.toBytes("7,notanumber,ACTIVE"),
+      Bytes.toBytes("7"),
+      badState,
+      new byte[] { TlogRecord.BINARY_V1, (byte)0x80 },
+    };
+    for (byte[] value : bad) {
+      try {
+        TlogRecord.decode(ROW, value);
+        fail("expected IOException for " + Bytes.toStringBinary(value));
+      } catch (IOException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("1234"));
+      }
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.client.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Region registration without the table monitors RMInterface and
+ * TransactionalTable used to hold: concurrent DML of one transaction must
+ * add and register each region exactly once.
+ */
+public class TestTransactionStateRegistration {
+
+  private static final TableName TABLE = TableName.valueOf("TRAFODION.SCH.T1");
+  private static final ServerName SERVER = ServerName.valueOf("node1", 60020, 1L);
+  private static final int THREADS = 16;
+  private static final int ROUNDS = 200;
+
+  private ExecutorService pool;
+
+  /** Counts registrations instead of calling the TM, and flags overlapping ones. */
+  private static class CountingTransactionState extends TransactionState {
+    final AtomicInteger registrations = new AtomicInteger();
+    final AtomicInteger inFlight = new AtomicInteger();
+    volatile boolean overlapped = false;
+
+    CountingTransactionState(long transactionId) {
+      super(transactionId);
+    }
+
+    @Override
+    public void registerLocation(final HRegionLocation location) throws IOException {
+      if (inFlight.incrementAndGet() > 1)
+        overlapped = true;
+      registrations.incrementAndGet();
+      Thread.yield();
+      inFlight.decrementAndGet();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    pool = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  private static HRegionLocation region(int i) {
+    byte[] start = i == 0 ? new byte[0] : Bytes.toBytes(String.format("r%04d", i));
+    byte[] end = Bytes.toBytes(String.format("r%04d", i + 1));
+    return new HRegionLocation(new HRegionInfo(TABLE, start, end, false, 1L), SERVER);
+  }
+
+  /** Runs task on THREADS threads released together, returns how many returned true. */
+  private int race(final Callable<Boolean> task) throws Exception {
+    final CountDownLatch go = new CountDownLatch(1);
+    List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+    for (int i = 0; i < THREADS; i++) {
+      futures.add(pool.submit(new Callable<Boolean>() {
+        public Boolean call() throws Exception {
+          go.await();
+          return task.call();
+        }
+      }));
+    }
+    go.countDown();
+    int trues = 0;
+    for (Future<Boolean> f : futures) {
+      if (f.get())
+        trues++;
+    }
+    return trues;
+  }
+
+  @Test
+  public void testConcurrentRegistrationOfOneRegion() throws Exception {
+    for (int round = 0; round < ROUNDS; round++) {
+      final CountingTransactionState ts = new CountingTransactionState(round);
+      final HRegionLocation location = region(0);
+      int registered = race(new Callable<Boolean>() {
+        public Boolean call() throws IOException {
+          return ts.addAndRegisterLocation(location, false);
+        }
+      });
+      assertEquals(1, registered);
+      assertEquals(1, ts.registrations.get());
+      assertEquals(1, ts.getParticipantCount());
+      assertFalse(ts.overlapped);
+    }
+  }
+
+  @Test
+  public void testConcurrentRegistrationOfManyRegions() throws Exception {
+    final CountingTransactionState ts = new CountingTransactionState(1L);
+    final AtomicInteger next = new AtomicInteger();
+    final int regions = 64;
+    for (int round = 0; round < 4; round++) {
+      next.set(0);
+      race(new Callable<Boolean>() {
+        public Boolean call() throws IOException {
+          for (int i = next.getAndIncrement(); i < regions; i = next.getAndIncrement())
+            ts.addAndRegisterLocation(region(i), false);
+          return true;
+        }
+      });
+    }
+    assertEquals(regions, ts.registrations.get());
+    assertEquals(regions, ts.getParticipantCount());
+    assertFalse(ts.overlapped);
+  }
+
+  @Test
+  public void testForcedRegistration() throws Exception {
+    CountingTransactionState ts = new CountingTransactionState(1L);
+    assertTrue(ts.addAndRegisterLocation(region(0), false));
+    assertFalse(ts.addAndRegisterLocation(region(0), false));
+    // A TransactionState new to the map registers even a known region
+    assertTrue(ts.addAndRegisterLocation(region(0), true));
+    assertEquals(2, ts.registrations.get());
+    assertEquals(1, ts.getParticipantCount());
+  }
+
+  @Test
+  public void testConcurrentAddRegion() throws Exception {
+    // TransactionalTable.put/get add the location without a table monitor
+    for (int round = 0; round < ROUNDS; round++) {
+      final TransactionState ts = new TransactionState(round);
+      final HRegionLocation location = region(round % 8);
+      int added = race(new Callable<Boolean>() {
+        public Boolean call() {
+          return ts.addRegion(location);
+        }
+      });
+      assertEquals(1, added);
+      assertEquals(1, ts.getParticipantCount());
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.coprocessor.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * The committed transaction lookups of TrxRegionEndpoint: the conflict check
+ * collects the transactions committed between a start sequence number and
+ * nextSequenceId with committedBetween, while committers add entries and the
+ * cleanup chore drops the old ones with removeCommittedBelow.
+ */
+public class TestCommittedTransactionsTiming {
+
+  static final Log LOG = LogFactory.getLog(TestCommittedTransactionsTiming.class);
+
+  // Only some sequence numbers belong to committed writers, the rest went
+  // read-only or aborted
+  private static final int SEQUENCE_STRIDE = 8;
+  private static final int WINDOW = 20000;
+  private static final int CHECKS = 2000;
+
+  private static ConcurrentNavigableMap<Long, Long> committed(long end) {
+    ConcurrentNavigableMap<Long, Long> map = new ConcurrentSkipListMap<Long, Long>();
+    for (long seq = 0; seq < end; seq += SEQUENCE_STRIDE)
+      map.put(seq, Long.valueOf(seq + 1000000L));
+    return map;
+  }
+
+  // Every sequence number probed in turn
+  private static List<Long> probe(TreeMap<Long, Long> map, long start, long end) {
+    List<Long> found = new ArrayList<Long>();
+    for (long i = start; i < end; i++) {
+      Long other = map.get(i);
+      if (other != null)
+        found.add(other);
+    }
+    return found;
+  }
+
+  @Test
+  public void testCommittedBetweenFindsTheProbedTransactions() {
+    ConcurrentNavigableMap<Long, Long> map = committed(WINDOW);
+    TreeMap<Long, Long> reference = new TreeMap<Long, Long>(map);
+
+    Random random = new Random(16);
+    for (int i = 0; i < 200; i++) {
+      long start = random.nextInt(WINDOW);
+      long end = start + random.nextInt(WINDOW);
+      assertEquals(probe(reference, start, end),
+                   new ArrayList<Long>(TrxRegionEndpoint.committedBetween(map, start, end)));
+    }
+    assertTrue(TrxRegionEndpoint.committedBetween(map, 10, 10).isEmpty());
+    assertTrue(TrxRegionEndpoint.committedBetween(map, 10, 5).isEmpty());
+  }
+
+  @Test
+  public void testRemoveCommittedBelow() {
+    ConcurrentNavigableMap<Long, Long> map = committed(WINDOW);
+    TreeMap<Long, Long> reference = new TreeMap<Long, Long>(map);
+
+    List<Long> removed = TrxRegionEndpoint.removeCommittedBelow(map, WINDOW / 2);
+    assertEquals(new ArrayList<Long>(reference.headMap((long)(WINDOW / 2)).values()), removed);
+    assertEquals(reference.tailMap((long)(WINDOW / 2)), map);
+    assertTrue(TrxRegionEndpoint.removeCommittedBelow(map, 0).isEmpty());
+  }
+
+  /**
+   * CHECKS conflict checks over a window of WINDOW sequence numbers while one
+   * thread keeps committing and another runs the cleanup chore.
+   */
+  @Ignore("benchmark, run by hand")
+  @Test
+  public void testConflictCheckTiming() throws Exception {
+    final ConcurrentNavigableMap<Long, Long> map = committed(WINDOW);
+    final AtomicLong nextSequenceId = new AtomicLong(WINDOW);
+    final AtomicBoolean done = new AtomicBoolean(false);
+
+    Thread committer = new Thread() {
+      public void run() {
+        while (! done.get()) {
+          long seq = nextSequenceId.getAndAdd(SEQUENCE_STRIDE);
+          map.put(seq, Long.valueOf(seq + 1000000L));
+        }
+      }
+    };
+    Thread chore = new Thread() {
+      public void run() {
+        while (! done.get()) {
+          TrxRegionEndpoint.removeCommittedBelow(map, nextSequenceId.get() - WINDOW);
+          Thread.yield();
+        }
+      }
+    };
+    committer.start();
+    chore.start();
+
+    long found = 0;
+    long startTime = System.nanoTime();
+    try {
+      for (int i = 0; i < CHECKS; i++) {
+        long end = nextSequenceId.get();
+        for (Long other : TrxRegionEndpoint.committedBetween(map, end - WINDOW, end))
+          found++;
+      }
+    } finally {
+      done.set(true);
+      committer.join();
+      chore.join();
+    }
+    long elapsed = System.nanoTime() - startTime;
+    assertTrue("conflict checks found no committed transactions", found > 0);
+    LOG.info(CHECKS + " conflict checks with a concurrent committer and cleanup chore: "
+             + (elapsed / 1000000) + " ms");
+  }
+}
@@ -0,0 +1,161 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.coprocessor.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.transactional.TransactionalAggregationClient;
+import org.apache.hadoop.hbase.client.transactional.UnsupportedAggregateFormatException;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.TransactionalAggregateSpec;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * The value formats getMultiAggregate decodes, and the ones it rejects so
+ * the caller falls back to the per aggregate calls.
+ */
+public class TestMultiAggregateFormat {
+
+  private static final byte[] ROW = Bytes.toBytes("row1");
+  private static final byte[] FAMILY = Bytes.toBytes("#1");
+  private static final byte[] QUALIFIER = Bytes.toBytes("2");
+
+  private static TransactionalAggregateSpec.Builder spec(TransactionalAggregateSpec.AggregateType type) {
+    return TransactionalAggregateSpec.newBuilder()
+        .setType(type)
+        .setFamily(ByteString.copyFrom(FAMILY))
+        .setQualifier(ByteString.copyFrom(QUALIFIER));
+  }
+
+  private static Cell cell(byte[] value) {
+    return new KeyValue(ROW, FAMILY, QUALIFIER, 1L, value);
+  }
+
+  /** A Trafodion nullable INT: a two byte null indicator, then the value. */
+  private static byte[] nullableInt(boolean isNull, int value) {
+    return ByteBuffer.allocate(6).order(ByteOrder.LITTLE_ENDIAN)
+        .putShort((short)(isNull ? -1 : 0)).putInt(value).array();
+  }
+
+  private static void assertRejected(TransactionalAggregateSpec spec) {
+    try {
+      TransactionalAggregationClient.checkAggregateFormat(spec);
+      fail("value length " + spec.getValueLength() + " accepted");
+    } catch (UnsupportedAggregateFormatException expected) {
+    }
+  }
+
+  @Test
+  public void testOnlyFixedWidthValueLengthsAreAccepted() throws IOException {
+    for (int length : new int[] { 1, 2, 4, 8 })
+      TransactionalAggregationClient.checkAggregateFormat(
+          spec(TransactionalAggregateSpec.AggregateType.SUM).setValueLength(length).build());
+    // No value_length at all, as a caller unaware of the format sends
+    assertRejected(spec(TransactionalAggregateSpec.AggregateType.SUM).build());
+    assertRejected(spec(TransactionalAggregateSpec.AggregateType.MAX).setValueLength(3).build());
+    assertRejected(spec(TransactionalAggregateSpec.AggregateType.MIN).setValueLength(16).build());
+    assertRejected(spec(TransactionalAggregateSpec.AggregateType.MIN).setValueLength(4)
+                   .setNullIndicatorLength(-1).build());
+  }
+
+  @Test
+  public void testCountNeedsNoValueLength() throws IOException {
+    TransactionalAggregateSpec count = spec(TransactionalAggregateSpec.AggregateType.COUNT)
+        .setNullIndicatorLength(2).build();
+    TransactionalAggregationClient.checkAggregateFormat(count);
+    assertRejected(spec(TransactionalAggregateSpec.AggregateType.COUNT).setNullIndicatorLength(-1).build());
+
+    // A VARCHAR, say, of any length after the null indicator
+    byte[] varchar = ByteBuffer.allocate(2 + 11).putShort((short)0).put(Bytes.toBytes("eleven char")).array();
+    assertFalse(TrxRegionEndpoint.isAggregateNull(cell(varchar), count));
+    assertTrue(TrxRegionEndpoint.isAggregateNull(cell(new byte[] { -1, -1, 'x' }), count));
+    assertTrue(TrxRegionEndpoint.isAggregateNull(cell(new byte[] { 0, 0 }), count));
+    try {
+      TrxRegionEndpoint.isAggregateNull(cell(new byte[] { 0 }), count);
+      fail("value shorter than the null indicator accepted");
+    } catch (UnsupportedAggregateFormatException expected) {
+    }
+  }
+
+  @Test
+  public void testFixedWidthValuesDecode() throws IOException {
+    TransactionalAggregateSpec little = spec(TransactionalAggregateSpec.AggregateType.SUM)
+        .setEncoding(TransactionalAggregateSpec.Encoding.LITTLE_ENDIAN)
+        .setNullIndicatorLength(2).setValueLength(4).build();
+    Cell negative = cell(nullableInt(false, -123456));
+    assertFalse(TrxRegionEndpoint.isAggregateNull(negative, little));
+    assertEquals(-123456L, TrxRegionEndpoint.decodeAggregateValue(negative, little));
+
+    TransactionalAggregateSpec big = spec(TransactionalAggregateSpec.AggregateType.MAX)
+        .setValueLength(8).build();
+    Cell value = cell(Bytes.toBytes(Long.MIN_VALUE + 7));
+    assertFalse(TrxRegionEndpoint.isAggregateNull(value, big));
+    assertEquals(Long.MIN_VALUE + 7, TrxRegionEndpoint.decodeAggregateValue(value, big));
+
+    TransactionalAggregateSpec small = spec(TransactionalAggregateSpec.AggregateType.MIN)
+        .setValueLength(2).build();
+    assertEquals(-2L, TrxRegionEndpoint.decodeAggregateValue(cell(Bytes.toBytes((short)-2)), small));
+  }
+
+  @Test
+  public void testNullValues() throws IOException {
+    TransactionalAggregateSpec spec = spec(TransactionalAggregateSpec.AggregateType.SUM)
+        .setEncoding(TransactionalAggregateSpec.Encoding.LITTLE_ENDIAN)
+        .setNullIndicatorLength(2).setValueLength(4).build();
+    assertTrue(TrxRegionEndpoint.isAggregateNull(cell(nullableInt(true, 99)), spec));
+    // Just the null indicator
+    assertTrue(TrxRegionEndpoint.isAggregateNull(cell(new byte[] { -1, -1 }), spec));
+  }
+
+  @Test
+  public void testOtherValueLengthsAreRejected() throws IOException {
+    TransactionalAggregateSpec spec = spec(TransactionalAggregateSpec.AggregateType.SUM)
+        .setEncoding(TransactionalAggregateSpec.Encoding.LITTLE_ENDIAN)
+        .setNullIndicatorLength(2).setValueLength(4).build();
+    // An aligned format row: a header and every column of the row in one cell
+    byte[] aligned = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN)
+        .putInt(20).putInt(0).putShort((short)0).putInt(42).putShort((short)0).putInt(7).array();
+    // A value eight bytes wide where four are declared
+    byte[] wider = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN)
+        .putShort((short)0).putLong(42L).array();
+    for (byte[] value : new byte[][] { aligned, wider, new byte[] { 0 } }) {
+      try {
+        TrxRegionEndpoint.isAggregateNull(cell(value), spec);
+        fail("value of length " + value.length + " accepted");
+      } catch (UnsupportedAggregateFormatException expected) {
+      }
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * IdTmBatcher shares requests between concurrent callers without handing
+ * out an id taken before its caller asked.
+ */
+public class TestIdTmBatcher {
+
+  private static final int TIMEOUT = 1000;
+
+  /** An id server that only moves forward, like idtmsrv. */
+  private static class CountingIdTm implements IdTmBatcher.BlockSource {
+    final AtomicLong counter = new AtomicLong(1000);
+    final AtomicLong blocks = new AtomicLong();
+    volatile CountDownLatch reply = new CountDownLatch(0);
+    volatile CountDownLatch taken = new CountDownLatch(0);
+    volatile boolean fail = false;
+
+    long id() {
+      return counter.incrementAndGet();
+    }
+
+    public long idBlock(int timeout, int count) throws IdTmException {
+      if (fail)
+        throw new IdTmException("server down");
+      blocks.incrementAndGet();
+      long first = counter.getAndAdd(count) + 1;
+      // The ids are taken, the reply is still on its way
+      taken.countDown();
+      try {
+        reply.await();
+      } catch (InterruptedException e) {
+        throw new IdTmException(e);
+      }
+      return first;
+    }
+  }
+
+  private static Thread idThread(final IdTmBatcher batcher, final List<Long> ids) {
+    Thread t = new Thread() {
+      public void run() {
+        try {
+          long id = batcher.id();
+          synchronized (ids) {
+            ids.add(id);
+          }
+        } catch (IdTmException e) {
+        }
+      }
+    };
+    t.start();
+    return t;
+  }
+
+  @Test
+  public void testSingleCallerOneRequestEach() throws Exception {
+    CountingIdTm server = new CountingIdTm();
+    IdTmBatcher batcher = new IdTmBatcher(server, TIMEOUT, 64);
+
+    long last = 0;
+    for (int i = 0; i < 100; i++) {
+      long id = batcher.id();
+      assertTrue(id > last);
+      last = id;
+    }
+    assertEquals(100, server.blocks.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testCallersWaitingOnARequestShareTheNext() throws Exception {
+    CountingIdTm server = new CountingIdTm();
+    IdTmBatcher batcher = new IdTmBatcher(server, TIMEOUT, 64);
+    List<Long> ids = new ArrayList<Long>();
+
+    server.reply = new CountDownLatch(1);
+    server.taken = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    threads.add(idThread(batcher, ids));
+    server.taken.await();
+    for (int i = 0; i < 20; i++)
+      threads.add(idThread(batcher, ids));
+    while (! batcher.getStats().contains("requests: 21"))
+      Thread.sleep(1);
+    server.reply.countDown();
+    for (Thread t : threads)
+      t.join();
+
+    assertEquals(2, server.blocks.get());
+    assertEquals(21, ids.size());
+    Collections.sort(ids);
+    for (int i = 0; i < 21; i++)
+      assertEquals(1001 + i, (long)ids.get(i));
+  }
+
+  @Test(timeout = 10000)
+  public void testIdIsAboveIdsTakenBeforeTheCall() throws Exception {
+    CountingIdTm server = new CountingIdTm();
+    IdTmBatcher batcher = new IdTmBatcher(server, TIMEOUT, 64);
+    List<Long> ids = new ArrayList<Long>();
+
+    // A request is in flight when another process commits, then a
+    // transaction of this process starts
+    server.reply = new CountDownLatch(1);
+    server.taken = new CountDownLatch(1);
+    Thread first = idThread(batcher, ids);
+    server.taken.await();
+    long commitId = server.id();
+    Thread next = idThread(batcher, ids);
+    while (! batcher.getStats().contains("requests: 2"))
+      Thread.sleep(1);
+    server.reply.countDown();
+    first.join();
+    next.join();
+
+    Collections.sort(ids);
+    assertTrue(ids.get(0) < commitId);
+    assertTrue("start id " + ids.get(1) + " cannot see commit " + commitId, ids.get(1) > commitId);
+  }
+
+  @Test
+  public void testFailedRequestFailsItsCallers() throws Exception {
+    CountingIdTm server = new CountingIdTm();
+    IdTmBatcher batcher = new IdTmBatcher(server, TIMEOUT, 64);
+
+    server.fail = true;
+    try {
+      batcher.id();
+      fail("expected the server failure");
+    } catch (IdTmException e) {
+    }
+    server.fail = false;
+    assertEquals(1001, batcher.id());
+  }
+}
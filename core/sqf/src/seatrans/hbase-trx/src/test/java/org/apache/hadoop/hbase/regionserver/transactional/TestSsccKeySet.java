@@ -0,0 +1,60 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+/**
+ * SsccKeySet membership by key content.
+ */
+public class TestSsccKeySet {
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("%08d-row-%06d", i * 7919, i));
+  }
+
+  @Test
+  public void testSetOperations() {
+    SsccKeySet set = new SsccKeySet();
+    assertFalse(set.contains(row(1)));
+    assertFalse(set.remove(row(1)));
+    assertTrue(set.add(row(1)));
+    assertFalse(set.add(row(1)));
+    // Keys compare by content, not by array identity
+    assertTrue(set.contains(row(1)));
+    assertTrue(set.add(row(2)));
+    assertEquals(2, set.size());
+    assertTrue(set.remove(row(1)));
+    assertFalse(set.contains(row(1)));
+    assertEquals(1, set.size());
+    set.clear();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(row(2)));
+  }
+}
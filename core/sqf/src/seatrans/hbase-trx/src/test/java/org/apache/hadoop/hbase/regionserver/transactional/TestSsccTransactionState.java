@@ -0,0 +1,242 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.DtmConst;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.SsccConst;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * SsccTransactionState write tracking and conflict checks, and a benchmark
+ * of SSCC branches writing and committing a few contended rows.
+ */
+public class TestSsccTransactionState {
+
+  static final Log LOG = LogFactory.getLog(TestSsccTransactionState.class);
+
+  private static final HRegionInfo REGION = new HRegionInfo(TableName.valueOf("TestSsccTransactionState"));
+  private static final byte[] FAMILY = DtmConst.TRANSACTION_META_FAMILY;
+
+  private static SsccTransactionState state(long transactionId, long startId) {
+    return new SsccTransactionState(transactionId, 0, new AtomicLong(), REGION, null, null, false, startId);
+  }
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row%06d", i));
+  }
+
+  private static Cell status(byte[] row, long startId, byte type, long transactionId) {
+    return new KeyValue(row, FAMILY, SsccConst.STATUS_COL, startId,
+                        SsccConst.generateStatusValue(type, transactionId));
+  }
+
+  private static Cell version(byte[] row, long commitId, long startId) {
+    return new KeyValue(row, FAMILY, SsccConst.VERSION_COL, commitId,
+                        SsccConst.generateVersionValue(startId, false));
+  }
+
+  @Test
+  public void testStatusListConflicts() {
+    SsccTransactionState state = state(1, 10);
+    List<Cell> statusList = new ArrayList<Cell>();
+    assertFalse(state.hasConflict(statusList, null, true, 10, 1));
+    statusList.add(status(row(1), 10, SsccConst.S_STATEFUL_BYTE, 1));
+    assertFalse(state.hasConflict(statusList, null, false, 10, 1));
+
+    // Another transaction's pending update of the row
+    statusList.set(0, status(row(1), 8, SsccConst.S_STATEFUL_BYTE, 2));
+    assertTrue(state.hasConflict(statusList, null, false, 10, 1));
+
+    // Stateless updates only conflict with a pending stateful one
+    statusList.set(0, status(row(1), 8, SsccConst.S_STATELESS_BYTE, 2));
+    statusList.add(status(row(1), 9, SsccConst.S_STATELESS_BYTE, 3));
+    assertFalse(state.hasConflict(statusList, null, true, 10, 1));
+    assertTrue(state.hasConflict(statusList, null, false, 10, 1));
+    statusList.add(status(row(1), 9, SsccConst.S_STATEFUL_BYTE, 4));
+    assertTrue(state.hasConflict(statusList, null, true, 10, 1));
+  }
+
+  @Test
+  public void testVersionListConflicts() {
+    SsccTransactionState state = state(1, 10);
+    List<Cell> versionList = new ArrayList<Cell>();
+    assertFalse(state.hasConflict(null, versionList, false, 10, 1));
+    // Newest first: only a commit after the start conflicts
+    versionList.add(version(row(1), 9, 7));
+    versionList.add(version(row(1), 5, 3));
+    assertFalse(state.hasConflict(null, versionList, false, 10, 1));
+    versionList.add(0, version(row(1), 12, 11));
+    assertTrue(state.hasConflict(null, versionList, false, 10, 1));
+  }
+
+  @Test
+  public void testWriteListsTrackEachRowOnce() {
+    SsccTransactionState state = state(1, 10);
+    assertFalse(state.hasWrite());
+    state.addToPutList(row(1));
+    state.addToPutList(row(1));
+    state.addToPutList(row(2));
+    assertEquals(2, state.getPutRows().size());
+
+    state.addToDelList(new Delete(row(3)));
+    state.addToDelList(new Delete(row(4)));
+    state.removeDelBeforePut(new Put(row(3)), false);
+    assertEquals(1, state.getDelRows().size());
+    assertTrue(Arrays.equals(row(4), state.getDelRows().get(0).getRow()));
+
+    state.addToColList(row(1), Bytes.toBytes("a"), false);
+    state.addToColList(row(1), Bytes.toBytes("b"), false);
+    state.addToColList(row(1), Bytes.toBytes("a"), false);
+    assertEquals("|a||b|", Bytes.toString(state.getColList(row(1))));
+    assertEquals("|c||a||b|", Bytes.toString(state.addToColList(row(1), Bytes.toBytes("c"), true)));
+    assertEquals(null, state.getColList(row(2)));
+
+    state.clearStateResource();
+    assertFalse(state.hasWrite());
+  }
+
+  /** The SSCC metadata columns of a row. */
+  private static class Row {
+    final List<Cell> statusList = new ArrayList<Cell>();
+    final LinkedList<Cell> versionList = new LinkedList<Cell>();
+  }
+
+  /**
+   * Branches take turns writing rows picked from a few hot ones, running
+   * the conflict check and write tracking of SsccRegionEndpoint.put against
+   * in-memory status and version lists, then commit or abort.
+   */
+  @Ignore("benchmark, run by hand")
+  @Test
+  public void testContendedCommitTiming() {
+    final int hotRows = 16;
+    final int openBranches = 8;
+    final int writesPerBranch = 4;
+    final int branches = 200000;
+    final byte[] qualifier = Bytes.toBytes("1");
+
+    Map<ByteBuffer, Row> rows = new HashMap<ByteBuffer, Row>();
+    byte[][] hot = new byte[hotRows][];
+    for (int i = 0; i < hotRows; i++) {
+      hot[i] = row(i);
+      rows.put(ByteBuffer.wrap(hot[i]), new Row());
+    }
+    SsccTransactionState[] open = new SsccTransactionState[openBranches];
+    int[] written = new int[openBranches];
+    Random random = new Random(25);
+    long clock = 0;
+    long nextTransactionId = 0;
+    int started = 0;
+    int commits = 0;
+    int conflicts = 0;
+
+    long startTime = System.nanoTime();
+    while (commits + conflicts < branches) {
+      for (int b = 0; b < openBranches; b++) {
+        SsccTransactionState state = open[b];
+        if (state == null) {
+          if (started == branches)
+            continue;
+          started++;
+          state = open[b] = state(++nextTransactionId, ++clock);
+          written[b] = 0;
+        }
+        long transactionId = state.getTransactionId();
+        long startId = state.getStartId();
+        byte[] rowkey = hot[random.nextInt(hotRows)];
+        Row r = rows.get(ByteBuffer.wrap(rowkey));
+
+        state.removeDelBeforePut(new Put(rowkey), false);
+        state.addToColList(rowkey, qualifier, true);
+        boolean conflict = state.hasConflict(r.statusList, r.versionList, false, startId, transactionId);
+        if (! conflict) {
+          state.addToPutList(rowkey);
+          // The status put of a row rewritten by the branch replaces its cell
+          removeStatus(r, startId);
+          r.statusList.add(status(rowkey, startId, SsccConst.S_STATEFUL_BYTE, transactionId));
+          if (++written[b] < writesPerBranch)
+            continue;
+        }
+
+        long commitId = ++clock;
+        if (! conflict)
+          state.setCommitId(commitId);
+        for (byte[] putRow : state.getPutRows()) {
+          Row p = rows.get(ByteBuffer.wrap(putRow));
+          removeStatus(p, startId);
+          if (! conflict) {
+            p.versionList.addFirst(version(putRow, commitId, startId));
+            if (p.versionList.size() > 10)
+              p.versionList.removeLast();
+          }
+        }
+        state.clearStateResource();
+        open[b] = null;
+        if (conflict)
+          conflicts++;
+        else
+          commits++;
+      }
+    }
+    long elapsed = System.nanoTime() - startTime;
+
+    assertTrue("no branch committed", commits > 0);
+    assertTrue("no branch conflicted", conflicts > 0);
+    LOG.info(branches + " branches of " + writesPerBranch + " writes over " + hotRows + " rows, "
+             + openBranches + " open at a time: " + commits + " commits, " + conflicts + " conflicts, "
+             + (elapsed / branches) + " ns per branch");
+  }
+
+  private static void removeStatus(Row r, long startId) {
+    for (Iterator<Cell> it = r.statusList.iterator(); it.hasNext(); ) {
+      if (it.next().getTimestamp() == startId)
+        it.remove();
+    }
+  }
+}
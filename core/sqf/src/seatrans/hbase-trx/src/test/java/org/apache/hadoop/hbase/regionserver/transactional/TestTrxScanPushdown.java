@@ -0,0 +1,241 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.ScanPredicate;
+import org.apache.hadoop.hbase.regionserver.InternalScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+/**
+ * Predicates translated from HTableClient V2 predicates, the columns a
+ * pushdown returns, and the limits on one performScan batch.
+ */
+public class TestTrxScanPushdown {
+
+  private static final byte[] ROW = Bytes.toBytes("row1");
+  private static final byte[] FAMILY = Bytes.toBytes("#1");
+  private static final byte[] A = Bytes.toBytes("1");
+  private static final byte[] B = Bytes.toBytes("2");
+
+  private static Result row(byte[]... qualifiersAndValues) {
+    List<Cell> cells = new ArrayList<Cell>();
+    for (int i = 0; i < qualifiersAndValues.length; i += 2)
+      cells.add(new KeyValue(ROW, FAMILY, qualifiersAndValues[i], qualifiersAndValues[i + 1]));
+    return Result.create(cells);
+  }
+
+  // A pushdown of the V2 predicate ops on the columns and values given
+  private static TrxScanPushdown v2(byte[][] qualifiers, String[] ops, byte[]... values) throws IOException {
+    byte[][] families = new byte[qualifiers.length][];
+    for (int i = 0; i < families.length; i++)
+      families[i] = FAMILY;
+    ScanPredicate predicate = TrxScanPushdown.fromV2Predicate(families, qualifiers, ops, values);
+    Scan scan = new Scan();
+    TrxScanPushdown.setPushdown(scan, predicate, null);
+    return TrxScanPushdown.fromScan(scan);
+  }
+
+  private static byte[][] columns(byte[]... qualifiers) {
+    return qualifiers;
+  }
+
+  @Test
+  public void testV2CompareLetsMissingColumnPass() throws IOException {
+    // Like a SingleColumnValueFilter without filterIfMissing
+    TrxScanPushdown p = v2(columns(A), new String[] { "EQUAL" }, Bytes.toBytes("x"));
+    assertTrue(p.matches(row(A, Bytes.toBytes("x"))));
+    assertFalse(p.matches(row(A, Bytes.toBytes("y"))));
+    assertTrue(p.matches(row(B, Bytes.toBytes("y"))));
+  }
+
+  @Test
+  public void testV2NullableCompare() throws IOException {
+    // The constant carries the 0x00 null indicator of a non NULL value
+    byte[] five = new byte[] { 0, 5 };
+    TrxScanPushdown p = v2(columns(A), new String[] { "GREATER_NULL" }, new byte[] { 0, 3 });
+    assertTrue(p.matches(row(A, five)));
+    assertFalse(p.matches(row(A, new byte[] { 0, 2 })));
+    assertFalse(p.matches(row(A, new byte[] { -1, 9 })));   // NULL
+    assertFalse(p.matches(row(B, five)));                   // missing is NULL
+  }
+
+  @Test
+  public void testV2NullTests() throws IOException {
+    TrxScanPushdown isNull = v2(columns(A), new String[] { "IS_NULL_NULL" });
+    assertTrue(isNull.matches(row(B, Bytes.toBytes("x"))));
+    assertTrue(isNull.matches(row(A, new byte[] { -1, 0 })));
+    assertFalse(isNull.matches(row(A, new byte[] { 0, 0 })));
+
+    TrxScanPushdown notNull = v2(columns(A), new String[] { "IS_NOT_NULL_NULL" });
+    assertFalse(notNull.matches(row(B, Bytes.toBytes("x"))));
+    assertFalse(notNull.matches(row(A, new byte[] { -1, 0 })));
+    assertTrue(notNull.matches(row(A, new byte[] { 0, 0 })));
+
+    // A non nullable column is NULL only when missing
+    TrxScanPushdown nonNullable = v2(columns(A), new String[] { "IS_NULL" });
+    assertFalse(nonNullable.matches(row(A, Bytes.toBytes("x"))));
+    assertTrue(nonNullable.matches(row(B, Bytes.toBytes("x"))));
+  }
+
+  @Test
+  public void testV2ReversePolishJunctions() throws IOException {
+    // a = 'x' OR (IS_NOT_NULL b AND b < 'm'), b not nullable
+    TrxScanPushdown p = v2(columns(A, B, B),
+                           new String[] { "EQUAL", "IS_NOT_NULL", "LESS", "AND", "OR" },
+                           Bytes.toBytes("x"), Bytes.toBytes("m"));
+    assertTrue(p.matches(row(A, Bytes.toBytes("x"), B, Bytes.toBytes("z"))));
+    assertTrue(p.matches(row(A, Bytes.toBytes("y"), B, Bytes.toBytes("c"))));
+    assertFalse(p.matches(row(A, Bytes.toBytes("y"), B, Bytes.toBytes("z"))));
+  }
+
+  @Test
+  public void testV2Untranslatable() {
+    byte[][] families = new byte[][] { FAMILY, FAMILY };
+    byte[][] qualifiers = columns(A, B);
+    byte[] x = Bytes.toBytes("x");
+    assertNull(TrxScanPushdown.fromV2Predicate(families, qualifiers, new String[] { "NO_OP" }, new byte[][] { x }));
+    assertNull(TrxScanPushdown.fromV2Predicate(families, qualifiers, new String[] { "EQUAL", "AND" },
+                                               new byte[][] { x }));
+    assertNull(TrxScanPushdown.fromV2Predicate(families, qualifiers, new String[] { "EQUAL", "EQUAL" },
+                                               new byte[][] { x, x }));
+    assertNull(TrxScanPushdown.fromV2Predicate(families, qualifiers, new String[] { "EQUAL", "EQUAL", "AND" },
+                                               new byte[][] { x }));
+  }
+
+  @Test
+  public void testPredicateColumnsAreNotReturned() throws IOException {
+    Scan scan = new Scan();
+    scan.addColumn(FAMILY, A);
+    ScanPredicate predicate = TrxScanPushdown.fromV2Predicate(new byte[][] { FAMILY }, columns(B),
+                                                              new String[] { "EQUAL" },
+                                                              new byte[][] { Bytes.toBytes("y") });
+    TrxScanPushdown.setPushdown(scan, predicate, null);
+    assertTrue(scan.getFamilyMap().get(FAMILY).contains(B));
+
+    TrxScanPushdown p = TrxScanPushdown.fromScan(scan);
+    Result result = row(A, Bytes.toBytes("x"), B, Bytes.toBytes("y"));
+    assertTrue(p.matches(result));
+    Result projected = p.project(result);
+    assertEquals(1, projected.size());
+    assertTrue(projected.containsColumn(FAMILY, A));
+
+    // A scan reading the whole family returns it unchanged
+    Scan family = new Scan();
+    family.addFamily(FAMILY);
+    TrxScanPushdown.setPushdown(family, predicate, null);
+    assertEquals(2, TrxScanPushdown.fromScan(family).project(result).size());
+  }
+
+  @Test
+  public void testNullValue() throws IOException {
+    // Scan predicates and multiAggregate agree: a bare indicator is NULL
+    assertTrue(TrxScanPushdown.isNullValue(new byte[] { 0 }, 0, 1, 1));
+    assertTrue(TrxScanPushdown.isNullValue(new byte[0], 0, 0, 1));
+    assertTrue(TrxScanPushdown.isNullValue(new byte[] { 1, 7 }, 0, 2, 1));
+    assertFalse(TrxScanPushdown.isNullValue(new byte[] { 0, 7 }, 0, 2, 1));
+    assertFalse(TrxScanPushdown.isNullValue(new byte[] { 9, 0, 7 }, 1, 2, 1));
+
+    TrxScanPushdown isNull = v2(columns(A), new String[] { "IS_NULL_NULL" });
+    assertTrue(isNull.matches(row(A, new byte[] { 0 })));
+  }
+
+  // Rows 0 .. rows - 1, each with column A set to its number
+  private static InternalScanner scanner(final int rows, final long sleepMs) {
+    return (InternalScanner)Proxy.newProxyInstance(
+        InternalScanner.class.getClassLoader(), new Class<?>[] { InternalScanner.class },
+        new InvocationHandler() {
+          private int next = 0;
+
+          @SuppressWarnings("unchecked")
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close"))
+              return null;
+            if (! method.getName().equals("next") || args.length != 1)
+              throw new UnsupportedOperationException(method.getName());
+            if (sleepMs > 0)
+              Thread.sleep(sleepMs);
+            ((List<Cell>)args[0]).add(new KeyValue(Bytes.toBytes(next), FAMILY, A, Bytes.toBytes(next)));
+            next++;
+            return next < rows;
+          }
+        });
+  }
+
+  @Test
+  public void testBatchEndsAtNumberOfRows() throws IOException {
+    List<Result> results = new ArrayList<Result>();
+    TrxScanPushdown.Batch batch = TrxScanPushdown.nextBatch(scanner(50, 0), null, 20, 0, 0, results);
+    assertEquals(20, batch.count);
+    assertEquals(20, results.size());
+    assertTrue(batch.hasMore);
+  }
+
+  @Test
+  public void testBatchEndsAfterMaxRowsExamined() throws IOException {
+    // No row matches: each call returns an empty batch with hasMore set
+    // instead of reading the whole region
+    TrxScanPushdown none = v2(columns(A), new String[] { "EQUAL" }, Bytes.toBytes(-1));
+    InternalScanner scanner = scanner(1000, 0);
+    List<Result> results = new ArrayList<Result>();
+    long filtered = 0;
+    int calls = 0;
+    TrxScanPushdown.Batch batch;
+    do {
+      batch = TrxScanPushdown.nextBatch(scanner, none, 100, 300, 0, results);
+      assertTrue(batch.rowsFiltered <= 300);
+      filtered += batch.rowsFiltered;
+      calls++;
+    } while (batch.hasMore);
+    assertEquals(0, results.size());
+    assertEquals(1000, filtered);
+    assertEquals(4, calls);
+  }
+
+  @Test
+  public void testBatchEndsAfterMaxTime() throws IOException {
+    TrxScanPushdown none = v2(columns(A), new String[] { "EQUAL" }, Bytes.toBytes(-1));
+    List<Result> results = new ArrayList<Result>();
+    TrxScanPushdown.Batch batch = TrxScanPushdown.nextBatch(scanner(1000, 2), none, 100, 0, 50, results);
+    assertTrue(batch.hasMore);
+    assertTrue(batch.rowsFiltered > 0);
+    assertTrue(batch.rowsFiltered < 1000);
+  }
+}
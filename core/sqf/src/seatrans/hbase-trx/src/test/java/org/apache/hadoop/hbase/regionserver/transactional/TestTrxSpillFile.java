@@ -0,0 +1,199 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Round trip, corruption checks and cleanup of the files large transaction
+ * branches spill their puts to.
+ */
+public class TestTrxSpillFile {
+
+  private static final byte[] FAMILY = Bytes.toBytes("#1");
+  private static final byte[] QUALIFIER = Bytes.toBytes("1");
+  private static final String NAME = "region1.0000000000000042";
+  // int length and long CRC32 ahead of each serialized put
+  private static final int HEADER_SIZE = 4 + 8;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File dir;
+  private TrxSpillFile spill;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = new File(folder.getRoot(), "spill");
+    spill = new TrxSpillFile(dir, NAME);
+  }
+
+  @After
+  public void tearDown() {
+    spill.delete();
+  }
+
+  private static Put put(int i) {
+    Put put = new Put(Bytes.toBytes("row" + i), 1000L + i);
+    put.add(FAMILY, QUALIFIER, Bytes.toBytes("value" + i));
+    return put;
+  }
+
+  private static void assertSamePut(Put expected, Put actual) {
+    assertArrayEquals(expected.getRow(), actual.getRow());
+    List<Cell> cells = actual.get(FAMILY, QUALIFIER);
+    assertEquals(1, cells.size());
+    Cell cell = cells.get(0);
+    Cell expectedCell = expected.get(FAMILY, QUALIFIER).get(0);
+    assertArrayEquals(CellUtil.cloneValue(expectedCell), CellUtil.cloneValue(cell));
+    assertEquals(expectedCell.getTimestamp(), cell.getTimestamp());
+  }
+
+  private void corruptByte(long position) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(new File(dir, NAME + ".spill"), "rw");
+    try {
+      raf.seek(position);
+      int b = raf.read();
+      raf.seek(position);
+      raf.write(b ^ 0xff);
+    } finally {
+      raf.close();
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<Long> offsets = new ArrayList<Long>();
+    for (int i = 0; i < 100; i++)
+      offsets.add(spill.append(put(i)));
+
+    assertEquals(0L, offsets.get(0).longValue());
+    assertEquals(new File(dir, NAME + ".spill").length(), spill.getLength());
+    // Reads in any order
+    for (int i = 99; i >= 0; i--)
+      assertSamePut(put(i), spill.read(offsets.get(i)));
+    assertSamePut(put(50), spill.read(offsets.get(50)));
+  }
+
+  @Test
+  public void testCorruptChecksumIsRejected() throws IOException {
+    long first = spill.append(put(1));
+    long second = spill.append(put(2));
+
+    // Flip a byte of the first put's serialized data
+    corruptByte(first + HEADER_SIZE + 3);
+
+    try {
+      spill.read(first);
+      fail("corrupt spill record read back");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("checksum mismatch"));
+    }
+    assertSamePut(put(2), spill.read(second));
+  }
+
+  @Test
+  public void testCorruptLengthIsRejected() throws IOException {
+    long offset = spill.append(put(1));
+
+    // The high byte of the length makes the record run past the end of the file
+    corruptByte(offset);
+
+    try {
+      spill.read(offset);
+      fail("corrupt spill record length accepted");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Corrupt spill record length"));
+    }
+  }
+
+  @Test
+  public void testOffsetOutOfRangeIsRejected() throws IOException {
+    spill.append(put(1));
+    for (long offset : new long[] { -1L, spill.getLength(), spill.getLength() - HEADER_SIZE + 1 }) {
+      try {
+        spill.read(offset);
+        fail("read at offset " + offset + " accepted");
+      } catch (IOException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("out of range"));
+      }
+    }
+  }
+
+  @Test
+  public void testReopenTruncates() throws IOException {
+    spill.append(put(1));
+    spill.delete();
+    spill = new TrxSpillFile(dir, NAME);
+    assertEquals(0L, spill.getLength());
+    assertEquals(0L, new File(dir, NAME + ".spill").length());
+  }
+
+  @Test
+  public void testDeleteRemovesTheFile() throws IOException {
+    spill.append(put(1));
+    spill.delete();
+    assertFalse(new File(dir, NAME + ".spill").exists());
+  }
+
+  @Test
+  public void testDeleteStaleOnlyRemovesMatchingSpillFiles() throws IOException {
+    TrxSpillFile other = new TrxSpillFile(dir, "region2.0000000000000007");
+    other.append(put(1));
+    File unrelated = new File(dir, "region1.notes");
+    assertTrue(unrelated.createNewFile());
+
+    TrxSpillFile.deleteStale(dir, "region1.");
+
+    assertFalse(new File(dir, NAME + ".spill").exists());
+    assertTrue(new File(dir, "region2.0000000000000007.spill").exists());
+    assertTrue(unrelated.exists());
+    other.delete();
+  }
+
+  @Test
+  public void testDeleteStaleWithoutDirectory() {
+    TrxSpillFile.deleteStale(new File(folder.getRoot(), "missing"), "region1.");
+  }
+}
@@ -0,0 +1,201 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.apache.hadoop.hbase.regionserver.transactional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compares the row range lookup TrxTransactionState does over its row
+ * sorted writes with the walk over every write in writeOrdering it
+ * replaced.
+ */
+public class TestTrxTransactionStateWriteRange {
+
+  static final Log LOG = LogFactory.getLog(TestTrxTransactionStateWriteRange.class);
+
+  private static final int ROWS = 2000;
+
+  /** A pending write: its row and its position in the transaction. */
+  private static class Write {
+    final byte[] row;
+    final int seq;
+
+    Write(byte[] row, int seq) {
+      this.row = row;
+      this.seq = seq;
+    }
+
+    public String toString() {
+      return Bytes.toStringBinary(row) + "#" + seq;
+    }
+  }
+
+  private static final Comparator<Write> BY_ROW = new Comparator<Write>() {
+    public int compare(Write a, Write b) {
+      return Bytes.compareTo(a.row, b.row);
+    }
+  };
+
+  private final List<Write> writeOrdering = new LinkedList<Write>();
+  private final NavigableMap<byte[], List<Write>> writeRows =
+      new ConcurrentSkipListMap<byte[], List<Write>>(Bytes.BYTES_COMPARATOR);
+
+  private static byte[] row(int i) {
+    return Bytes.toBytes(String.format("row%06d", i));
+  }
+
+  private void write(int rowNum, int seq) {
+    Write w = new Write(row(rowNum), seq);
+    writeOrdering.add(w);
+    List<Write> writes = writeRows.get(w.row);
+    if (writes == null) {
+      writes = new CopyOnWriteArrayList<Write>();
+      writeRows.put(w.row, writes);
+    }
+    writes.add(w);
+  }
+
+  private void fill(int count, int rows, long seed) {
+    Random random = new Random(seed);
+    for (int seq = 0; seq < count; seq++)
+      write(random.nextInt(rows), seq);
+  }
+
+  /** The loop getAllCells used before, sorted by row as the scanner then did. */
+  private List<Write> before(byte[] startRow, byte[] stopRow) {
+    List<Write> found = new ArrayList<Write>();
+    for (Write w : writeOrdering) {
+      if (startRow != null && !Bytes.equals(startRow, HConstants.EMPTY_START_ROW)
+          && Bytes.compareTo(w.row, startRow) < 0) {
+        continue;
+      }
+      if (stopRow != null && !Bytes.equals(stopRow, HConstants.EMPTY_END_ROW)
+          && Bytes.compareTo(w.row, stopRow) > 0) {
+        continue;
+      }
+      found.add(w);
+    }
+    // A stable sort keeps transaction order within a row
+    Collections.sort(found, BY_ROW);
+    return found;
+  }
+
+  private List<Write> after(byte[] startRow, byte[] stopRow) {
+    List<Write> found = new ArrayList<Write>();
+    for (List<Write> writes : TrxTransactionState.rowsInRange(writeRows, startRow, stopRow).values())
+      found.addAll(writes);
+    return found;
+  }
+
+  private void assertSameWrites(byte[] startRow, byte[] stopRow) {
+    assertEquals(before(startRow, stopRow).toString(), after(startRow, stopRow).toString());
+  }
+
+  @Test
+  public void testRandomRangesMatchTheFullWalk() {
+    fill(20000, ROWS, 21);
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      int start = random.nextInt(ROWS + 10);
+      int stop = start + random.nextInt(200);
+      assertSameWrites(row(start), row(stop));
+    }
+  }
+
+  @Test
+  public void testOpenEndsMatchTheFullWalk() {
+    fill(5000, ROWS, 7);
+    assertSameWrites(HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW);
+    assertSameWrites(null, null);
+    assertSameWrites(row(ROWS / 2), HConstants.EMPTY_END_ROW);
+    assertSameWrites(HConstants.EMPTY_START_ROW, row(ROWS / 2));
+    assertEquals(5000, after(HConstants.EMPTY_START_ROW, HConstants.EMPTY_END_ROW).size());
+  }
+
+  @Test
+  public void testStopRowIsInclusive() {
+    write(5, 0);
+    write(6, 1);
+    write(5, 2);
+    assertEquals("[row000005#0, row000005#2]", after(row(5), row(5)).toString());
+    assertSameWrites(row(5), row(5));
+    assertSameWrites(row(5), row(6));
+  }
+
+  @Test
+  public void testStartPastStopSelectsNothing() {
+    fill(1000, 100, 3);
+    // Reversed scans and empty ranges have a start row past the stop row
+    assertTrue(after(row(80), row(20)).isEmpty());
+    assertSameWrites(row(80), row(20));
+    assertTrue(after(row(6), row(5)).isEmpty());
+  }
+
+  /**
+   * Ten row scans over 200000 pending writes, timed on the row range lookup
+   * only. The walk over writeOrdering checks the results untimed.
+   */
+  @Ignore("benchmark, run by hand")
+  @Test
+  public void testScanTiming() {
+    fill(200000, 100000, 11);
+    Random random = new Random(5);
+    int scans = 200;
+    int[] starts = new int[scans];
+    for (int i = 0; i < scans; i++)
+      starts[i] = random.nextInt(100000);
+
+    long expected = 0;
+    for (int i = 0; i < scans; i++)
+      expected += before(row(starts[i]), row(starts[i] + 10)).size();
+
+    long found = 0;
+    long startTime = System.nanoTime();
+    for (int i = 0; i < scans; i++)
+      found += after(row(starts[i]), row(starts[i] + 10)).size();
+    long elapsed = System.nanoTime() - startTime;
+
+    assertEquals(expected, found);
+    LOG.info(scans + " ten row scans over " + writeOrdering.size() + " pending writes: "
+             + (elapsed / 1000000) + " ms");
+  }
+}
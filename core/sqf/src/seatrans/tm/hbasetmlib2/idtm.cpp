@@ -193,6 +193,40 @@ jint Java_org_apache_hadoop_hbase_regionserver_transactional_IdTm_native_1id(JNI
     return lv_ferr;
 }
 
+//
+// org.apache.hadoop.hbase.regionserver.transactional.idTm.native_id_block(j_timeout, j_count, j_id)
+//
+// initialize.
+// call do_cli_id_block() and set j_id.val to the first id of the block
+//
+// return file error
+//
+jint Java_org_apache_hadoop_hbase_regionserver_transactional_IdTm_native_1id_1block(JNIEnv *pp_j_env, jobject, jint j_timeout, jint j_count, jobject j_id) {
+    int      lv_ferr;
+    long     lv_id;
+    jclass   lv_id_class;
+    jfieldID lv_id_val;
+
+    if (gv_verbose)
+        printf("cli: id_block() timeout=%d, count=%d\n", (int)j_timeout, (int)j_count);
+    lv_ferr = do_init(pp_j_env);
+    lv_id = 0;
+    if (lv_ferr == XZFIL_ERR_OK) {
+        lv_ferr = do_cli_id_block(&gv_phandle, j_timeout, j_count, &lv_id);
+        if (lv_ferr == XZFIL_ERR_OK) {
+            lv_id_class = pp_j_env->GetObjectClass(j_id);
+            assert(lv_id_class != 0);
+            lv_id_val = pp_j_env->GetFieldID(lv_id_class, "val", "J");
+            assert(lv_id_val != 0);
+            pp_j_env->SetLongField(j_id, lv_id_val, lv_id);
+        }
+    }
+    if (gv_verbose)
+        printf("cli: id_block() err=%d, id=0x%lx\n", lv_ferr, lv_id);
+
+    return lv_ferr;
+}
+
 //
 // org.apache.hadoop.hbase.regionserver.transactional.idTm.native_id_to_string(j_timeout, j_id, j_id_string)
 //
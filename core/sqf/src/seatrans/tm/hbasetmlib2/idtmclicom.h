@@ -249,6 +249,41 @@ static int do_cli_id(SB_Phandle_Type *pp_phandle, int pv_timeout, long *pp_id) {
     return lv_ferr;
 }
 
+//
+// id block operation
+//
+static int do_cli_id_block(SB_Phandle_Type *pp_phandle, int pv_timeout, int pv_count, long *pp_id) {
+    int     lv_ferr;
+    GID_Rep lv_rep;
+    GID_Req lv_req;
+
+    if (gv_verbose)
+        printf("cli: get id block of %d with timeout %d\n", pv_count, pv_timeout);
+
+    init_req(&lv_req, GID_REQ_ID_BLOCK, sizeof(lv_req.u.iv_id_block));
+    init_rep(&lv_rep);
+    lv_req.u.iv_id_block.iv_count = pv_count;
+    lv_ferr = do_link(pp_phandle,
+                      &lv_req,
+                      &lv_rep,
+                      pv_timeout,
+                      "id_block",
+                      GID_REP_ID_BLOCK,
+                      lv_req.iv_req_tag,
+                      sizeof(lv_rep.u.iv_id_block));
+    if (lv_ferr == XZFIL_ERR_OK) {
+        if (gv_verbose)
+            printf("cli: id-block-reply, rep-tag=0x%lx, rep-len=%d, id=0x%lx, count=%d\n",
+                   lv_rep.iv_rep_tag, lv_rep.iv_rep_len, lv_rep.u.iv_id_block.iv_id,
+                   lv_rep.u.iv_id_block.iv_count);
+        if (lv_rep.u.iv_id_block.iv_count != pv_count)
+            lv_ferr = XZFIL_ERR_FSERR;
+        else
+            *pp_id = lv_rep.u.iv_id_block.iv_id;
+    }
+    return lv_ferr;
+}
+
 //
 // id_to_string operation
 //
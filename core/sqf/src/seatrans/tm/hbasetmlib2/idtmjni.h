@@ -34,6 +34,13 @@ extern "C" {
  */
 JNIEXPORT jint JNICALL Java_org_apache_hadoop_hbase_regionserver_transactional_IdTm_native_1id (JNIEnv *, jobject, jint, jobject);
 
+/*
+ * Class:     org_apache_hadoop_hbase_regionserver_transactional_IdTm
+ * Method:    native_id_block
+ * Signature: (IILorg/apache/hadoop/hbase/regionserver/transactional/IdTmId;)I
+ */
+JNIEXPORT jint JNICALL Java_org_apache_hadoop_hbase_regionserver_transactional_IdTm_native_1id_1block (JNIEnv *, jobject, jint, jint, jobject);
+
 /*
  * Class:     org_apache_hadoop_hbase_regionserver_transactional_IdTm
  * Method:    native_id_to_string
@@ -30,6 +30,7 @@ import java.util.Iterator;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
@@ -66,6 +67,7 @@ import org.apache.hadoop.hbase.NotServingRegionException;
 import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.NotServingRegionException;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Threads;
 import org.trafodion.dtm.HBaseTmZK;
 import org.trafodion.dtm.TmAuditTlog;
 import org.trafodion.dtm.TransactionManagerException;
@@ -80,7 +82,13 @@ import org.trafodion.sql.TrafConfiguration;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class HBaseTxClient {
 
@@ -501,7 +509,14 @@ public class HBaseTxClient {
      }
 
      try {
-        short result = (short) trxManager.prepareCommit(ts);
+        short result;
+        if (trxManager.canCommitOnePhase(ts)) {
+           result = (short) trxManager.commitOnePhase(ts);
+           if (result == TransactionalReturn.COMMIT_RESEND)
+              result = (short) trxManager.prepareCommit(ts);
+        }
+        else
+           result = (short) trxManager.prepareCommit(ts);
         if (LOG.isDebugEnabled()) LOG.debug("prepareCommit, [ " + ts + " ], result " + result + ((result == TransactionalReturn.COMMIT_OK_READ_ONLY)?", Read-Only":""));
         switch (result) {
           case TransactionalReturn.COMMIT_OK:
@@ -598,7 +613,12 @@ public class HBaseTxClient {
 
        //try {
           ts.setStatus(TransState.STATE_COMMITTING);
-          if (useTlog) {
+          if (ts.isOnePhaseCommit()) {
+             // The only participant already committed in prepareCommit and
+             // holds nothing for recovery to resolve, so no record is written.
+             ts.setStatus(TransState.STATE_COMMITTED);
+          }
+          else if (useTlog) {
              try {
                 tLog.putSingleRecord(transactionId, ts.getStartId(), commitIdVal, TransState.STATE_COMMITTED.toString(), ts.getParticipatingRegions(), ts.hasPlaceHolder(), true);
                 ts.setStatus(TransState.STATE_COMMITTED);
@@ -657,7 +677,8 @@ public class HBaseTxClient {
           }
           return TransReturnCode.RET_EXCEPTION.getShort();
        }
-       if (useTlog && useForgotten) {
+       // A one-phase commit wrote no COMMITTED record to forget
+       if (useTlog && useForgotten && ! ts.isOnePhaseCommit()) {
           tLog.putSingleRecord(transactionId, ts.getStartId(), commitIdVal, TransState.STATE_FORGOTTEN_COMMITTED.toString(), ts.getParticipatingRegions(), ts.hasPlaceHolder(), forceForgotten); // forced flush?
        }
        if (LOG.isTraceEnabled()) LOG.trace("Exit doCommit, retval(ok): " + TransReturnCode.RET_OK.toString() +
@@ -942,6 +963,33 @@ public class HBaseTxClient {
       return result;
    }
 
+   /**
+    * Run tasks on pool and wait for all of them to finish. The first
+    * failure is rethrown once every task is done; later ones are logged.
+    */
+   static void runAll(ExecutorService pool, List<Callable<Integer>> tasks) throws IOException
+   {
+      CompletionService<Integer> outcomes = new ExecutorCompletionService<Integer>(pool);
+      for (Callable<Integer> task : tasks)
+         outcomes.submit(task);
+      IOException failure = null;
+      for (int i = 0; i < tasks.size(); i++) {
+         try {
+            outcomes.take().get();
+         } catch (InterruptedException ie) {
+            throw new InterruptedIOException("TRAF RCOV THREAD: interrupted waiting for recovery outcomes");
+         } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (failure == null)
+               failure = (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+            else
+               LOG.error("TRAF RCOV THREAD: additional recovery failure ", cause);
+         }
+      }
+      if (failure != null)
+         throw failure;
+   }
+
      /**
       * Thread to gather recovery information for regions that need to be recovered 
       */
@@ -1056,7 +1104,15 @@ public class HBaseTxClient {
              private boolean takeover;
              HBaseTxClient hbtx;
              private static int envSleepTimeInt;
-             private boolean ddlOnlyRecoveryCheck = true;
+             private static int envRecoveryThreads;
+             private static int envTlogBatchSize;
+             private volatile boolean ddlOnlyRecoveryCheck = true;
+             private ExecutorService recoveryPool;
+             // Last recovery pass, for the per phase report
+             private long gatherTime;
+             private long tlogTime;
+             private long resolveTime;
+             private int recoveredCount;
 
          static {
             String sleepTime = System.getenv("TMRECOV_SLEEP");
@@ -1065,6 +1121,18 @@ public class HBaseTxClient {
             else
                envSleepTimeInt = SLEEP_DELAY;
             LOG.info("Recovery thread sleep set to: " + envSleepTimeInt + " ms");
+            String recoveryThreads = System.getenv("TMRECOV_THREADS");
+            if (recoveryThreads != null)
+               envRecoveryThreads = Integer.parseInt(recoveryThreads);
+            else
+               envRecoveryThreads = 8;
+            String tlogBatchSize = System.getenv("TMRECOV_TLOG_BATCH");
+            if (tlogBatchSize != null)
+               envTlogBatchSize = Integer.parseInt(tlogBatchSize);
+            else
+               envTlogBatchSize = 100;
+            LOG.info("Recovery thread parallelism set to: " + envRecoveryThreads
+                     + " TLOG batch size: " + envTlogBatchSize);
          }
 
          public RecoveryThread(TmAuditTlog audit,
@@ -1103,6 +1171,8 @@ public class HBaseTxClient {
                           this.inDoubtList = new HashSet<Long> ();
                           this.tmID = zookeeper.getTMID();
                           this.sleepTimeInt = envSleepTimeInt;
+                          this.recoveryPool = Executors.newFixedThreadPool(envRecoveryThreads,
+                                                  Threads.newDaemonThreadFactory("tm-recovery-" + tmID));
             }
 
             public void stopThread() {
@@ -1180,8 +1250,14 @@ public class HBaseTxClient {
 
                             transactionStates = getTransactionsFromRegions(regions);
                             
-                            if(transactionStates != null)
+                            if(transactionStates != null) {
                                 recoverTransactions(transactionStates);
+                                if (LOG.isInfoEnabled())
+                                    LOG.info("TRAF RCOV THREAD: TM" + tmID + " recovered " + recoveredCount
+                                             + " transactions from " + regions.size() + " regions, gather: "
+                                             + gatherTime + " ms, tlog lookup: " + tlogTime
+                                             + " ms, resolve: " + resolveTime + " ms");
+                            }
 
                         } // region not null
                         else {
@@ -1244,6 +1320,7 @@ public class HBaseTxClient {
                         }
                     }
                 }
+                recoveryPool.shutdown();
                 if(LOG.isDebugEnabled()) LOG.debug("Exiting recovery thread for tm ID: " + tmID);
             }
             
@@ -1253,47 +1330,62 @@ public class HBaseTxClient {
                            DeserializationException
     {
         if (LOG.isDebugEnabled()) LOG.debug("TRAF RCOV THREAD: in-doubt region size " + regions.size());
-        for (Map.Entry<String, byte[]> regionEntry : regions.entrySet()) {
-            Map<Long, TransactionState> transactionStates =
-                            new HashMap<Long, TransactionState>();
-            List<Long> TxRecoverList = new ArrayList<Long>();
-            String hostnamePort = regionEntry.getKey();
-            byte[] regionBytes = regionEntry.getValue();
-            if (LOG.isDebugEnabled())
-                LOG.debug("TRAF RCOV THREAD:Recovery Thread Processing region: " + new String(regionBytes));
-            if (recoveryIterations == 0) {
-               if(LOG.isWarnEnabled()) {
-                  //  Let's get the host name
-                  final byte [] delimiter = ",".getBytes();
-                  String[] hostname = hostnamePort.split(new String(delimiter), 3);
-                  if (hostname.length < 2) {
-                     throw new IllegalArgumentException("hostnamePort format is incorrect");
-                  }
-  
-                  LOG.warn ("TRAF RCOV THREAD:Starting recovery with " + regions.size() +
-                       " regions to recover.  First region hostname: " + hostnamePort +
-                       " Recovery iterations: " + recoveryIterations);
+        long startTime = System.currentTimeMillis();
+        if (! regions.isEmpty() && (recoveryIterations == 0 || recoveryIterations % 10 == 0)) {
+            if(LOG.isWarnEnabled()) {
+               //  Let's get the host name
+               String hostnamePort = regions.keySet().iterator().next();
+               final byte [] delimiter = ",".getBytes();
+               String[] hostname = hostnamePort.split(new String(delimiter), 3);
+               if (hostname.length < 2) {
+                  throw new IllegalArgumentException("hostnamePort format is incorrect");
                }
+               LOG.warn("TRAF RCOV THREAD:Recovery thread encountered " + regions.size() +
+                    " regions to recover.  First region hostname: " + hostnamePort +
+                    " Recovery iterations: " + recoveryIterations);
             }
-            else {
-               if(recoveryIterations % 10 == 0) {
-                  if(LOG.isWarnEnabled()) {
-                     //  Let's get the host name
-                     final byte [] delimiter = ",".getBytes();
-                     String[] hostname = hostnamePort.split(new String(delimiter), 3);
-                     if (hostname.length < 2) {
-                        throw new IllegalArgumentException("hostnamePort format is incorrect");
-                     }
-                     LOG.warn("TRAF RCOV THREAD:Recovery thread encountered " + regions.size() +
-                       " regions to recover.  First region hostname: " + hostnamePort +
-                       " Recovery iterations: " + recoveryIterations);
-                  }
-               }
+        }
+
+        // Ask every region for its in-doubt transactions at once and take the
+        // replies as they arrive.
+        CompletionService<List<Long>> replies = new ExecutorCompletionService<List<Long>>(recoveryPool);
+        Map<Future<List<Long>>, Map.Entry<String, byte[]>> requests =
+                        new HashMap<Future<List<Long>>, Map.Entry<String, byte[]>>();
+        for (final Map.Entry<String, byte[]> regionEntry : regions.entrySet()) {
+            Future<List<Long>> reply = replies.submit(new Callable<List<Long>>() {
+                public List<Long> call() throws IOException, DeserializationException {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("TRAF RCOV THREAD:Recovery Thread Processing region: " + new String(regionEntry.getValue()));
+                    return txnManager.recoveryRequest(regionEntry.getKey(), regionEntry.getValue(), tmID);
+                }
+            });
+            requests.put(reply, regionEntry);
+        }
+
+        Map<Long, TransactionState> transactionStates =
+                        new HashMap<Long, TransactionState>();
+        for (int i = 0; i < requests.size(); i++) {
+            Future<List<Long>> reply;
+            try {
+                reply = replies.take();
+            } catch (InterruptedException ie) {
+                throw new InterruptedIOException("TRAF RCOV THREAD: interrupted waiting for recovery replies");
             }
+            Map.Entry<String, byte[]> regionEntry = requests.get(reply);
+            List<Long> TxRecoverList = null;
+            String hostnamePort = regionEntry.getKey();
+            byte[] regionBytes = regionEntry.getValue();
             try {
-                TxRecoverList = txnManager.recoveryRequest(hostnamePort, regionBytes, tmID);
+                TxRecoverList = reply.get();
+            }
+            catch (InterruptedException ie) {
+                throw new InterruptedIOException("TRAF RCOV THREAD: interrupted waiting for recovery replies");
             }
-            catch (IOException e) {
+            catch (ExecutionException ee) {
+               Throwable cause = ee.getCause();
+               if (cause instanceof DeserializationException)
+                  throw (DeserializationException) cause;
+               IOException e = (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
                // For all cases of Exception, we rely on the region to redrive the request.
                // Likely there is nothing to recover, due to a stale region entry, but it is always safe to redrive.
                // We log a warning event and delete the ZKNode entry.
@@ -1337,10 +1429,9 @@ public class HBaseTxClient {
                }
             }
             else if (LOG.isDebugEnabled()) LOG.debug("TRAF RCOV THREAD:size od TxRecoverList is NULL ");
-            
-            return transactionStates;
         }
-        return null;
+        gatherTime = System.currentTimeMillis() - startTime;
+        return transactionStates;
     }
               
     private  Map<Long, TransactionState> getTransactionsFromTmDDL()
@@ -1390,13 +1481,13 @@ public class HBaseTxClient {
     private void recoverTransactions(Map<Long, TransactionState> transactionStates) throws IOException
     {
         if (LOG.isDebugEnabled()) LOG.debug("TRAF RCOV THREAD: in-doubt transaction size " + transactionStates.size());
+        long startTime = System.currentTimeMillis();
+        List<TransactionState> inDoubt = new ArrayList<TransactionState>(transactionStates.size());
         
         for (Map.Entry<Long, TransactionState> tsEntry : transactionStates.entrySet()) {
             int isTransactionStillAlive = 0;
-           TransactionState ts1 = null;
             TransactionState ts = tsEntry.getValue();
             Long txID = ts.getTransactionId();
-            // TransactionState ts = new TransactionState(txID);
             
             //It is possible for long prepare situations that involve multiple DDL
             //operations, multiple prompts from RS is received. Hence check to see if there
@@ -1414,9 +1505,36 @@ public class HBaseTxClient {
               if(isTransactionStillAlive == 1)
                 continue; //for loop
             }
-           
+            inDoubt.add(ts);
+        }
+
+        // One batched TLOG lookup for all of them
+        audit.getTransactionStates(inDoubt, true, envTlogBatchSize);
+        long lookupDone = System.currentTimeMillis();
+        tlogTime = lookupDone - startTime;
+
+        // Then redrive the outcomes concurrently, at most envRecoveryThreads at a time
+        List<Callable<Integer>> outcomes = new ArrayList<Callable<Integer>>(inDoubt.size());
+        for (final TransactionState ts : inDoubt) {
+            outcomes.add(new Callable<Integer>() {
+                public Integer call() throws IOException {
+                    resolveTransaction(ts);
+                    return 0;
+                }
+            });
+        }
+        try {
+            runAll(recoveryPool, outcomes);
+        } finally {
+            resolveTime = System.currentTimeMillis() - lookupDone;
+            recoveredCount = inDoubt.size();
+        }
+    }
+
+    private void resolveTransaction(TransactionState ts) throws IOException
+    {
+            Long txID = ts.getTransactionId();
             try {
-                audit.getTransactionState(ts);
                 if (ts.getStatus().equals(TransState.STATE_COMMITTED.toString())) {
                     if (LOG.isDebugEnabled())
                         LOG.debug("TRAF RCOV THREAD:Redriving commit for " + txID + " number of regions " + ts.getParticipatingRegions().size() +
@@ -1461,8 +1579,7 @@ public class HBaseTxClient {
                 ddlOnlyRecoveryCheck = true;
 
             }
-        }
-      }//recoverTransactions()
+      }//resolveTransaction()
           
    } //class RecoveryThread
 
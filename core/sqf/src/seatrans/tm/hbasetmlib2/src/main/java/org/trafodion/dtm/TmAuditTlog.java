@@ -52,6 +52,7 @@ import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.client.transactional.CommitUnsuccessfulException;
 import org.apache.hadoop.hbase.client.transactional.HBaseBackedTransactionLogger;
 import org.apache.hadoop.hbase.client.transactional.TransactionManager;
+import org.apache.hadoop.hbase.client.transactional.TlogRecord;
 import org.apache.hadoop.hbase.client.transactional.TransactionRegionLocation;
 import org.apache.hadoop.hbase.client.transactional.TransactionState;
 import org.apache.hadoop.hbase.client.transactional.TransState;
@@ -99,6 +100,7 @@ import com.google.protobuf.HBaseZeroCopyByteString;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -107,20 +109,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.TreeMap;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.trafodion.dtm.HBaseAuditControlPoint;
 
@@ -172,8 +177,26 @@ public class TmAuditTlog {
    private static boolean forceControlPoint;
    private boolean disableBlockCache;
    private boolean controlPointDeferred;
+   // Incremental control points: control points written by this TM, the one
+   // each committed transaction was last written at, and how many control
+   // points a committed record is left alone before it is written again
+   private long controlPointsWritten = 0;
+   private Map<Long, Long> cpLastWritten = new HashMap<Long, Long>();
+   private int cpRewriteInterval;
    private int TlogRetryDelay;
    private int TlogRetryCount;
+   private boolean groupCommit;
+   private int groupCommitMaxRecords;
+   private long groupCommitWindowMicros;
+   private AuditBuffer auditBuffer;
+   private boolean binaryFormat;
+
+   // Interned table ids of our own TLOG, see TlogRecord
+   private final ConcurrentHashMap<String, Integer> tableIds = new ConcurrentHashMap<String, Integer>();
+   private int nextTableId = 0;
+   // Table id to name, per TLOG table read
+   private static final ConcurrentHashMap<String, ConcurrentHashMap<Integer, String>> tableNamesByTlog =
+         new ConcurrentHashMap<String, ConcurrentHashMap<Integer, String>>();
 
    private static AtomicLong asn;  // Audit sequence number is the monotonic increasing value of the tLog write
 
@@ -540,18 +563,17 @@ public class TmAuditTlog {
                              }
                              TransactionState ts;
                              TransState lvTxState = TransState.STATE_NOTX;
-                             StringTokenizer st = new StringTokenizer(Bytes.toString(value), ",");
+                             TlogRecord record = TlogRecord.decode(rowResult.getRow(), value);
                              String stateString = new String("NOTX");
-                             String transidToken;
-                             if (! st.hasMoreElements()) {
+                             long transidToken;
+                             if (record == null) {
                                 continue;
                              }
-                             String asnToken = st.nextElement().toString();
-                             transidToken = st.nextElement().toString();
-                             stateString = st.nextElement().toString();
-                             long lvTransid = Long.parseLong(transidToken, 10);
+                             transidToken = record.getTransactionId();
+                             stateString = record.getState();
+                             long lvTransid = transidToken;
                              ts =  new TransactionState(lvTransid);
-                             ts.setRecoveryASN(Long.parseLong(asnToken, 10));
+                             ts.setRecoveryASN(record.getAsn());
                              ts.clearParticipatingRegions();
 
                              if (LOG.isTraceEnabled()) LOG.trace("getTransactionStatesFromInterval: transaction: "
@@ -588,19 +610,11 @@ public class TmAuditTlog {
                                 lvTxState = TransState.STATE_BAD;
                              }
 
-                             // get past the filler
-                             st.nextElement();
-
-                             // get past the place holder
-                             st.nextElement();
-                             String startIdToken = st.nextElement().toString();
-                             ts.setStartId(Long.parseLong(startIdToken));
-                             String commitIdToken = st.nextElement().toString();
-                             ts.setCommitId(Long.parseLong(commitIdToken));
+                             ts.setStartId(record.getStartId());
+                             ts.setCommitId(record.getCommitId());
 
                              // Load the TransactionState object up with regions
-                             while (st.hasMoreElements()) {
-                                String tableNameToken = st.nextToken();
+                             for (String tableNameToken : getRecordTableNames(table.getName().getNameAsString(), record)) {
                                 Table tmpTable = connection.getTable(TableName.valueOf(tableNameToken));
                                 RegionLocator   rl = connection.getRegionLocator(table.getName());
                                 List<HRegionLocation> regions = rl.getAllRegionLocations();
@@ -665,42 +679,198 @@ public class TmAuditTlog {
       } //getTransactionStatesFromIntervalX
    } // TlogCallable2  
 
-   private class AuditBuffer{
-      private ArrayList<Put> buffer;           // Each Put is an audit record
+   /**
+    * AuditRecord : one audit record waiting in the AuditBuffer for its
+    *               group write to complete
+    */
+   private static class AuditRecord {
+      final Put put;
+      final long transid;
+      private final CountDownLatch done = new CountDownLatch(1);
+      private IOException error;
+
+      AuditRecord(Put put, long transid) {
+         this.put = put;
+         this.transid = transid;
+      }
 
-      private AuditBuffer () {
-         buffer = new  ArrayList<Put>();
-         buffer.clear();
+      void complete(IOException e) {
+         error = e;
+         done.countDown();
+      }
 
+      void await() throws IOException {
+         boolean interrupted = false;
+         while (true) {
+            try {
+               done.await();
+               break;
+            } catch (InterruptedException ie) {
+               // The record is already queued; we must not return before it is written
+               interrupted = true;
+            }
+         }
+         if (interrupted)
+            Thread.currentThread().interrupt();
+         if (error != null)
+            throw error;
       }
+   }
 
-      private void bufferAdd(Put localPut) {
-         long threadId = Thread.currentThread().getId();
-         if (LOG.isTraceEnabled()) LOG.trace("BufferAdd start in thread " + threadId );
-         buffer.add(localPut);
-         if (LOG.isTraceEnabled()) LOG.trace("BufferAdd end in thread " + threadId );
+   /**
+    * AuditBuffer : group commit of local TLOG records.  Callers queue their
+    *               record and wait.  A single writer thread takes whatever
+    *               records are queued, waits up to TM_TLOG_GROUP_COMMIT_WINDOW_US
+    *               for more (bounded by TM_TLOG_GROUP_COMMIT_MAX_RECORDS), and
+    *               writes them with one multi-put so each TLOG region
+    *               syncs its WAL once for the whole group.  Records that arrive
+    *               while a write is in flight form the next group.
+    */
+   private class AuditBuffer implements Runnable {
+      private final LinkedBlockingQueue<AuditRecord> queue = new LinkedBlockingQueue<AuditRecord>();
+      private final ArrayList<AuditRecord> buffer;   // The group being written
+      private final int maxRecords;
+      private final long windowNanos;
+      private Table bufferTable;
+      private long groupWrites = 0;
+      private long groupRecords = 0;
+      private int  maxGroupSize = 0;
+
+      private AuditBuffer (int maxRecords, long windowMicros) throws IOException {
+         this.maxRecords = maxRecords;
+         this.windowNanos = windowMicros * 1000L;
+         buffer = new ArrayList<AuditRecord>(maxRecords);
+         bufferTable = connection.getTable(TableName.valueOf(getTlogTableNameBase()));
+         Thread writer = new Thread(this, "TmAuditTlog-group-commit");
+         writer.setDaemon(true);
+         writer.start();
       }
 
-      private int bufferSize() {
-         int lvSize;
-         long threadId = Thread.currentThread().getId();
-         lvSize = buffer.size();
-         if (LOG.isTraceEnabled()) LOG.trace("AuditBuffer bufferSize end; returning " + lvSize + " in thread " 
-                    +  Thread.currentThread().getId());
-         return lvSize;
+      /**
+      * Method  : write
+      * Params  : put - audit record
+      *           transid - transaction the record belongs to
+      * Return  : void
+      * Purpose : queue the record and return once its group has been written
+      */
+      private void write(Put put, long transid) throws IOException {
+         AuditRecord record = new AuditRecord(put, transid);
+         queue.add(record);
+         record.await();
       }
 
-      private void bufferClear() {
-         long threadId = Thread.currentThread().getId();
-         if (LOG.isTraceEnabled()) LOG.trace("AuditBuffer bufferClear start in thread " + threadId);
-         buffer.clear();
-         if (LOG.isTraceEnabled()) LOG.trace("AuditBuffer bufferClear end in thread " + threadId);
+      public void run() {
+         while (true) {
+            try {
+               buffer.add(queue.take());
+               queue.drainTo(buffer, maxRecords - buffer.size());
+               if (windowNanos > 0) {
+                  long deadline = System.nanoTime() + windowNanos;
+                  while (buffer.size() < maxRecords) {
+                     long remaining = deadline - System.nanoTime();
+                     if (remaining <= 0)
+                        break;
+                     AuditRecord record = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                     if (record == null)
+                        break;
+                     buffer.add(record);
+                     queue.drainTo(buffer, maxRecords - buffer.size());
+                  }
+               }
+            } catch (InterruptedException ie) {
+               if (buffer.isEmpty())
+                  continue;
+            }
+
+            IOException error = null;
+            try {
+               bufferWrite();
+            } catch (IOException e) {
+               error = e;
+            } catch (Throwable t) {
+               error = new IOException(t);
+            }
+            for (AuditRecord record : buffer) {
+               record.complete(error);
+            }
+            buffer.clear();
+         }
       }
 
-      private ArrayList<Put> getBuffer() {
+      private void bufferWrite() throws IOException {
          long threadId = Thread.currentThread().getId();
-         if (LOG.isTraceEnabled()) LOG.trace("getBuffer start in thread " + threadId );
-         return this.buffer;
+         int lvSize = buffer.size();
+         List<Put> puts = new ArrayList<Put>(lvSize);
+         for (AuditRecord record : buffer) {
+            puts.add(record.put);
+         }
+         if (LOG.isTraceEnabled()) LOG.trace("AuditBuffer writing " + lvSize + " records in thread " + threadId);
+
+         boolean complete = false;
+         int retries = 0;
+         do {
+            retries++;
+            try {
+               bufferTable.put(puts);
+               complete = true;
+               if (retries > 1){
+                  LOG.info("AuditBuffer write of " + lvSize + " records on table "
+                        + bufferTable.getName().getNameAsString() + " successful after " + retries + " retries");
+               }
+            }
+            catch (RetriesExhaustedWithDetailsException rewde){
+               LOG.error("Retry " + retries + " AuditBuffer write of " + lvSize + " records starting with transaction: "
+                     + buffer.get(0).transid + " on table " + bufferTable.getName().getNameAsString()
+                     + " due to RetriesExhaustedWithDetailsException ", rewde);
+               refreshLocations(puts);
+               try {
+                  Thread.sleep(TlogRetryDelay); // 3 second default
+               } catch (InterruptedException ie) {
+               }
+               if (retries == TlogRetryCount){
+                  LOG.error("AuditBuffer write aborting due to excessive retries on table "
+                        + bufferTable.getName().getNameAsString() + " due to RetriesExhaustedWithDetailsException; aborting ");
+                  System.exit(1);
+               }
+            }
+            catch (IOException e){
+               LOG.error("Retry " + retries + " AuditBuffer write of " + lvSize + " records starting with transaction: "
+                     + buffer.get(0).transid + " on table " + bufferTable.getName().getNameAsString() + " due to Exception ", e);
+               refreshLocations(puts);
+               try {
+                  Thread.sleep(TlogRetryDelay); // 3 second default
+               } catch (InterruptedException ie) {
+               }
+               if (retries == TlogRetryCount){
+                  LOG.error("AuditBuffer write aborting due to excessive retries on table "
+                        + bufferTable.getName().getNameAsString() + " due to Exception; aborting ");
+                  System.exit(1);
+               }
+            }
+         } while (! complete && retries < TlogRetryCount);  // default give up after 5 minutes
+
+         groupWrites++;
+         groupRecords += lvSize;
+         if (lvSize > maxGroupSize)
+            maxGroupSize = lvSize;
+         if (groupWrites % 60000 == 0) {
+            LOG.info("TLog group commit: " + groupRecords + " records in " + groupWrites
+                  + " write operations, largest group " + maxGroupSize);
+            groupRecords = 0;
+            maxGroupSize = 0;
+         }
+      }
+
+      private void refreshLocations(List<Put> puts) {
+         try {
+            RegionLocator locator = connection.getRegionLocator(bufferTable.getName());
+            for (Put put : puts) {
+               locator.getRegionLocation(put.getRow(), true);
+            }
+            locator.close();
+         } catch (IOException e) {
+            LOG.warn("AuditBuffer unable to refresh TLOG region locations ", e);
+         }
       }
    }// End of class AuditBuffer
 
@@ -913,6 +1083,11 @@ public class TmAuditTlog {
          LOG.error("TM_TLOG_MAX_VERSIONS is not valid in ms.env");
       }
 
+      // Aging removes records older than the control point versions - 2 back,
+      // rewrite well before that.
+      cpRewriteInterval = Math.max(1, (versions - 2) / 2);
+      LOG.info("Control point rewrite interval is " + cpRewriteInterval);
+
       TlogRetryDelay = 5000; // 3 seconds
       try {
          String retryDelayS = System.getenv("TM_TLOG_RETRY_DELAY");
@@ -958,6 +1133,29 @@ public class TmAuditTlog {
       }
       LOG.info("disableBlockCache is " + disableBlockCache);
 
+      groupCommit = true;
+      groupCommitMaxRecords = 256;
+      groupCommitWindowMicros = 0;
+      try {
+         String groupCommitS = System.getenv("TM_TLOG_GROUP_COMMIT");
+         if (groupCommitS != null){
+            groupCommit = (Integer.parseInt(groupCommitS) != 0);
+         }
+         String maxRecordsS = System.getenv("TM_TLOG_GROUP_COMMIT_MAX_RECORDS");
+         if (maxRecordsS != null){
+            groupCommitMaxRecords = Math.max(1, Integer.parseInt(maxRecordsS));
+         }
+         String windowS = System.getenv("TM_TLOG_GROUP_COMMIT_WINDOW_US");
+         if (windowS != null){
+            groupCommitWindowMicros = Math.max(0, Long.parseLong(windowS));
+         }
+      }
+      catch (NumberFormatException e) {
+         LOG.error("TM_TLOG_GROUP_COMMIT settings are not valid in ms.env");
+      }
+      LOG.info("groupCommit is " + groupCommit + ", max records " + groupCommitMaxRecords
+             + ", window " + groupCommitWindowMicros + " microseconds");
+
       switch (tlogNumLogs) {
         case 1:
           tLogHashKey = 0; // 0b0;
@@ -1069,6 +1267,26 @@ public class TmAuditTlog {
       }
       admin.close();
 
+      if (groupCommit) {
+         auditBuffer = new AuditBuffer(groupCommitMaxRecords, groupCommitWindowMicros);
+      }
+
+      binaryFormat = true;
+      try {
+         String binaryFormatS = System.getenv("TM_TLOG_BINARY_FORMAT");
+         if (binaryFormatS != null){
+            binaryFormat = (Integer.parseInt(binaryFormatS) != 0);
+         }
+      }
+      catch (NumberFormatException e) {
+         LOG.error("TM_TLOG_BINARY_FORMAT is not valid in ms.env");
+      }
+      LOG.info("binaryFormat is " + binaryFormat);
+      for (Map.Entry<Integer, String> entry : loadTableDictionary(getTlogTableNameBase()).entrySet()) {
+         tableIds.put(entry.getValue(), entry.getKey());
+         nextTableId = Math.max(nextTableId, entry.getKey() + 1);
+      }
+
       lvAsn = asn.get();
       // This control point write needs to be delayed until after recovery completes, 
       // but is here as a placeholder
@@ -1126,13 +1344,13 @@ public class TmAuditTlog {
       Table putTable;
       putTable = connection.getTable(TableName.valueOf(getTlogTableNameBase()));
 
+      List<String> tableNameList = new ArrayList<String>();
       if (regions != null) {
          // Regions passed in indicate a state record where recovery might be needed following a crash.
          // To facilitate branch notification we translate the regions into table names that can then
          // be translated back into new region names following a restart.  THis allows us to ensure all
          // branches reply prior to cleanup
          Iterator<TransactionRegionLocation> it = regions.iterator();
-         List<String> tableNameList = new ArrayList<String>();
          while (it.hasNext()) {
             String name = new String(it.next().getRegionInfo().getTable().getNameAsString());
             if ((name.length() > 0) && (tableNameList.contains(name) != true)){
@@ -1165,13 +1383,24 @@ public class TmAuditTlog {
       }
       if (LOG.isTraceEnabled()) LOG.trace("transid: " + lvTransid + " state: " + lvTxState + " ASN: " + lvAsn
               + " in thread " + threadId);
-      p.add(TLOG_FAMILY, ASN_STATE, Bytes.toBytes(String.valueOf(lvAsn) + ","
+      TransState lvState = toTransState(lvTxState);
+      if (binaryFormat && lvState != null) {
+         int[] lvTableIds = new int[tableNameList.size()];
+         for (int i = 0; i < lvTableIds.length; i++) {
+            lvTableIds[i] = internTableName(tableNameList.get(i));
+         }
+         p.addColumn(TLOG_FAMILY, ASN_STATE, TlogRecord.encode(lvAsn, lvTransid, lvState, hasPlaceHolder,
+                       lvStartId, lvCommitId, lvTableIds));
+      }
+      else {
+         p.add(TLOG_FAMILY, ASN_STATE, Bytes.toBytes(String.valueOf(lvAsn) + ","
                        + String.valueOf(lvTransid) + "," + lvTxState
                        + "," + Bytes.toString(filler)
                        + "," + hasPlaceHolderS
                        + "," + String.valueOf(lvStartId)
                        + "," + String.valueOf(lvCommitId)
                        + "," + tableString.toString()));
+      }
       if (! forced){
          p.setDurability(Durability.ASYNC_WAL);
       }
@@ -1239,6 +1468,12 @@ public class TmAuditTlog {
                recoveryTable.close();
          }
       }
+      else if (auditBuffer != null) {
+         // This goes to our local TLOG as part of a group write
+         if (LOG.isTraceEnabled()) LOG.trace("putSingleRecord buffering record for transaction: " + lvTransid
+                  + " in thread " + threadId);
+         auditBuffer.write(p, lvTransid);
+      }
       else {
          // This goes to our local TLOG
          startSynch = System.nanoTime();
@@ -1380,6 +1615,112 @@ public class TmAuditTlog {
         if (LOG.isTraceEnabled()) LOG.trace("putSingleRecord exit");
    }
 
+   private static TransState toTransState(String stateString) {
+      try {
+         TransState state = TransState.valueOf(stateString);
+         // No binary state code, these are logged in the string form
+         if (state == TransState.STATE_LAST || state == TransState.STATE_BAD)
+            return null;
+         return state;
+      } catch (IllegalArgumentException e) {
+         return null;
+      }
+   }
+
+   /**
+   * Method  : internTableName
+   * Params  : name - table name to be recorded in our TLOG
+   * Return  : id of the table in our TLOG
+   * Purpose : Return the id of a table, recording a new id in the TLOG table
+   *           dictionary before any record can refer to it
+   */
+   private synchronized int internTableName(String name) throws IOException {
+      Integer id = tableIds.get(name);
+      if (id != null)
+         return id;
+      id = nextTableId;
+      Put p = new Put(TlogRecord.TABLE_DICT_ROW);
+      p.addColumn(TLOG_FAMILY, Bytes.toBytes(id.intValue()), Bytes.toBytes(name));
+      Table dictTable = connection.getTable(TableName.valueOf(getTlogTableNameBase()));
+      try {
+         dictTable.put(p);
+      } finally {
+         dictTable.close();
+      }
+      nextTableId++;
+      tableIds.put(name, id);
+      ConcurrentHashMap<Integer, String> names = tableNamesByTlog.get(getTlogTableNameBase());
+      if (names != null)
+         names.put(id, name);
+      if (LOG.isDebugEnabled()) LOG.debug("internTableName " + name + " is table id " + id);
+      return id;
+   }
+
+   /**
+   * Method  : loadTableDictionary
+   * Params  : tlogName - TLOG table to read
+   * Return  : map of table id to table name for the TLOG
+   * Purpose : (Re)read the table dictionary row of a TLOG
+   */
+   private static ConcurrentHashMap<Integer, String> loadTableDictionary(String tlogName) throws IOException {
+      ConcurrentHashMap<Integer, String> names = new ConcurrentHashMap<Integer, String>();
+      Table dictTable = connection.getTable(TableName.valueOf(tlogName));
+      try {
+         Get g = new Get(TlogRecord.TABLE_DICT_ROW);
+         g.addFamily(TLOG_FAMILY);
+         Result r = dictTable.get(g);
+         if (r != null && ! r.isEmpty()) {
+            for (Cell cell : r.rawCells()) {
+               names.put(Bytes.toInt(CellUtil.cloneQualifier(cell)), Bytes.toString(CellUtil.cloneValue(cell)));
+            }
+         }
+      } finally {
+         dictTable.close();
+      }
+      tableNamesByTlog.put(tlogName, names);
+      return names;
+   }
+
+   /**
+   * Method  : getRecordTableNames
+   * Params  : tlogName - TLOG table the record was read from
+   *           record - decoded TLOG record
+   * Return  : table names of the record
+   * Purpose : Resolve the interned table ids of a binary record
+   */
+   private static List<String> getRecordTableNames(String tlogName, TlogRecord record) throws IOException {
+      if (! record.isBinary())
+         return record.getTableNames();
+      ConcurrentHashMap<Integer, String> names = tableNamesByTlog.get(tlogName);
+      if (names == null)
+         names = loadTableDictionary(tlogName);
+      List<String> result = new ArrayList<String>(record.getTableIds().length);
+      for (int id : record.getTableIds()) {
+         String name = names.get(id);
+         if (name == null) {
+            // Interned by the owning TM after we last read the dictionary
+            names = loadTableDictionary(tlogName);
+            name = names.get(id);
+         }
+         if (name == null) {
+            LOG.error("TLOG " + tlogName + " has no table for id " + id + " in transaction " + record.getTransactionId());
+            continue;
+         }
+         result.add(name);
+      }
+      return result;
+   }
+
+   /**
+   * Method  : getRecordState
+   * Params  : value - TLOG record in either format
+   * Return  : state string of the record, or STATE_NOTX if there is no record
+   */
+   private static String getRecordState(byte[] row, byte[] value) throws IOException {
+      TlogRecord record = TlogRecord.decode(row, value);
+      return (record == null) ? TransState.STATE_NOTX.toString() : record.getState();
+   }
+
    public static int getRecord(final long lvTransid) throws IOException {
       if (LOG.isTraceEnabled()) LOG.trace("getRecord start");
       TransState lvTxState = TransState.STATE_NOTX;
@@ -1395,7 +1736,7 @@ public class TmAuditTlog {
          try {
             Result r = getTable.get(g);
             byte [] value = r.getValue(TLOG_FAMILY, ASN_STATE);
-            stateString =  new String (Bytes.toString(value));
+            stateString = getRecordState(r.getRow(), value);
             if (LOG.isTraceEnabled()) LOG.trace("stateString is " + stateString);
             if (stateString.contains("COMMITTED")){
                 lvTxState = TransState.STATE_COMMITTED;
@@ -1488,12 +1829,11 @@ public class TmAuditTlog {
          g = new Get(Bytes.toBytes(key));
          try {
             Result r = getTable.get(g);
-            StringTokenizer st = 
-                 new StringTokenizer(Bytes.toString(r.getValue(TLOG_FAMILY, ASN_STATE)), ",");
-            String asnToken = st.nextElement().toString();
-            String transidToken = st.nextElement().toString();
-            lvTxState = st.nextElement().toString();
-            if (LOG.isTraceEnabled()) LOG.trace("transid: " + transidToken + " state: " + lvTxState);
+            TlogRecord record = TlogRecord.decode(g.getRow(), r.getValue(TLOG_FAMILY, ASN_STATE));
+            if (record != null) {
+               lvTxState = record.getState();
+               if (LOG.isTraceEnabled()) LOG.trace("transid: " + record.getTransactionId() + " state: " + lvTxState);
+            }
          } catch (IOException e){
              LOG.error("getRecord IOException: ", e);
              throw e;
@@ -1551,30 +1891,30 @@ public class TmAuditTlog {
                   if (LOG.isTraceEnabled()) LOG.trace("scanComplete");
                   break;
                }
+               if (TlogRecord.isTableDictRow(r.getRow())) {
+                  continue;
+               }
                for (Cell cell : r.rawCells()) {
-                  StringTokenizer st =
-                        new StringTokenizer(Bytes.toString(CellUtil.cloneValue(cell)), ",");
-                  if (LOG.isTraceEnabled()) LOG.trace("string tokenizer success ");
-                  if (st.hasMoreElements()) {
-                     String asnToken = st.nextElement().toString();
+                  TlogRecord record = TlogRecord.decode(r.getRow(), CellUtil.cloneValue(cell));
+                  if (record != null) {
+                     long asnToken = record.getAsn();
                      if (LOG.isTraceEnabled()) LOG.trace("asnToken: " + asnToken);
-                     if (Long.parseLong(asnToken) > lvAsn){
+                     if (asnToken > lvAsn){
                         if (LOG.isTraceEnabled()) LOG.trace("RawCells asnToken: " + asnToken
                                       + " is greater than: " + lvAsn + ".  Scan complete");
                         scanComplete = true;
                         break;
                      }
-                     String transidToken = st.nextElement().toString();
-                     String stateToken = st.nextElement().toString();
+                     long transidToken = record.getTransactionId();
+                     String stateToken = record.getState();
                      if (LOG.isTraceEnabled()) LOG.trace("Transid: " + transidToken + " has state: " + stateToken);
                      if (LOG.isTraceEnabled()){
-                        long tmp_trans = Long.parseLong(transidToken);
                         LOG.trace("Transid: " + transidToken + " has sequence: "
-                                  + TransactionState.getTransSeqNum(tmp_trans)
-                                  + ", node: " + TransactionState.getNodeId(tmp_trans)
-                                  + ", clusterId: " + TransactionState.getClusterId(tmp_trans));
+                                  + TransactionState.getTransSeqNum(transidToken)
+                                  + ", node: " + TransactionState.getNodeId(transidToken)
+                                  + ", clusterId: " + TransactionState.getClusterId(transidToken));
                      }
-                     if ((Long.parseLong(asnToken) < lvAsn) && (stateToken.contains(TransState.STATE_FORGOTTEN.toString()))) {
+                     if ((asnToken < lvAsn) && (stateToken.contains(TransState.STATE_FORGOTTEN.toString()))) {
                         Delete del = new Delete(r.getRow());
                         del.setDurability(Durability.SKIP_WAL);
                         if (LOG.isTraceEnabled()) LOG.trace("adding transid: " + transidToken + " to delete list");
@@ -1583,7 +1923,7 @@ public class TmAuditTlog {
                           deleteCount++;
                           deleteMutator.mutate(del);
                      }
-                     else if ((Long.parseLong(asnToken) < lvAsn) &&
+                     else if ((asnToken < lvAsn) &&
                              (stateToken.equals(TransState.STATE_COMMITTED.toString()) || stateToken.equals(TransState.STATE_ABORTED.toString()))) {
                         if (ageCommitted) {
                            Delete del = new Delete(r.getRow());
@@ -1600,13 +1940,13 @@ public class TmAuditTlog {
                            Result lvResult = deleteTable.get(get);
                            List<Cell> list = lvResult.getColumnCells(TLOG_FAMILY, ASN_STATE);  // returns all versions of this column
                            for (Cell element : list) {
-                              StringTokenizer stok = new StringTokenizer(Bytes.toString(CellUtil.cloneValue(element)), ",");
-                              if (stok.hasMoreElements()) {
+                              TlogRecord version = TlogRecord.decode(r.getRow(), CellUtil.cloneValue(element));
+                              if (version != null) {
                                  if (LOG.isTraceEnabled()) LOG.trace("Performing secondary search on (" + transidToken + ")");
-                                 asnToken = stok.nextElement().toString() ;
-                                 transidToken = stok.nextElement().toString() ;
-                                 stateToken = stok.nextElement().toString() ;
-                                 if ((Long.parseLong(asnToken) < lvAsn) && (stateToken.contains(TransState.STATE_FORGOTTEN.toString()))) {
+                                 asnToken = version.getAsn();
+                                 transidToken = version.getTransactionId();
+                                 stateToken = version.getState();
+                                 if ((asnToken < lvAsn) && (stateToken.contains(TransState.STATE_FORGOTTEN.toString()))) {
                                     Delete del = new Delete(r.getRow());
                                     del.setDurability(Durability.SKIP_WAL);
                                     if (LOG.isTraceEnabled()) LOG.trace("Secondary search found new delete - adding (" + transidToken + ") with asn: " + asnToken + " to delete list");
@@ -1660,46 +2000,80 @@ public class TmAuditTlog {
      return true;
    }
 
-   public long writeControlPointRecords (final int clusterId, final Map<Long, TransactionState> map) throws IOException {
-      int cpWrites = 0;
+   /**
+    * Pick the committed transactions of map whose records this control point
+    * must write: those not seen by an earlier control point, and those last
+    * written cpRewriteInterval or more control points ago, before aging can
+    * reach their records. Everything else already has a recent enough record.
+    *
+    * @return the control point each committed transaction will have been
+    *         written at once records are written
+    */
+   private Map<Long, Long> collectControlPointRecords(final Map<Long, TransactionState> map,
+                                                      final List<TransactionState> records) {
+      long cp = controlPointsWritten + 1;
+      Map<Long, Long> lastWritten = new HashMap<Long, Long>();
+      for (Map.Entry<Long, TransactionState> e : map.entrySet()) {
+         Long transid = e.getKey();
+         TransactionState value = e.getValue();
+         if (value.getStatus().equals(TransState.STATE_COMMITTED.toString())){
+            Long last = cpLastWritten.get(transid);
+            if (last == null || cp - last >= cpRewriteInterval) {
+               if (LOG.isTraceEnabled()) LOG.trace("writeControlPointRecords adding record for trans (" + transid + ") : state is " + value.getStatus());
+               records.add(value);
+               last = cp;
+            }
+            lastWritten.put(transid, last);
+         }
+      }
+      return lastWritten;
+   }
+
+   private long writeControlPointRecords (final int mapSize, final List<TransactionState> records,
+                                          final Map<Long, Long> lastWritten) throws IOException {
       long startTime = System.nanoTime();
       long endTime;
 
-      if (LOG.isTraceEnabled()) LOG.trace("Tlog " + getTlogTableNameBase()
-           + " writeControlPointRecords for clusterId " + clusterId + " start with map size " + map.size());
-
-      try {
-        for (Map.Entry<Long, TransactionState> e : map.entrySet()) {
+      for (TransactionState value : records) {
          try {
-            Long transid = e.getKey();
-            TransactionState value = e.getValue();
-            if (value.getStatus().equals(TransState.STATE_COMMITTED.toString())){
-               if (LOG.isTraceEnabled()) LOG.trace("writeControlPointRecords adding record for trans (" + transid + ") : state is " + value.getStatus());
-               cpWrites++;
-               putSingleRecord(transid, value.getStartId(), value.getCommitId(), value.getStatus(), value.getParticipatingRegions(), value.hasPlaceHolder(), forceControlPoint);
-            }
+            putSingleRecord(value.getTransactionId(), value.getStartId(), value.getCommitId(), value.getStatus(), value.getParticipatingRegions(), value.hasPlaceHolder(), forceControlPoint);
          }
          catch (IOException ex) {
             LOG.error("formatRecord Exception ", ex);
             throw ex;
          }
-        }
-      } catch (ConcurrentModificationException cme){
-          LOG.info("writeControlPointRecords ConcurrentModificationException;  delaying control point ", cme);
-          // Return the current value rather than incrementing this interval.
-          controlPointDeferred = true;
-          return tLogControlPoint.getCurrControlPt(clusterId) - 1;
-      } 
+      }
+      controlPointsWritten++;
+      cpLastWritten = lastWritten;
 
       endTime = System.nanoTime();
       if (LOG.isDebugEnabled()) LOG.debug("TLog Control Point Write Report\n" + 
                    "                        Total records: " 
-                       +  map.size() + " in " + cpWrites + " write operations\n" +
+                       +  mapSize + " in " + records.size() + " write operations, "
+                       + lastWritten.size() + " committed\n" +
                    "                        Write time: " + (endTime - startTime) / 1000 + " microseconds\n" );
   
       if (LOG.isTraceEnabled()) LOG.trace("writeControlPointRecords exit ");
       return -1L;
+   }
 
+   public long writeControlPointRecords (final int clusterId, final Map<Long, TransactionState> map) throws IOException {
+      if (LOG.isTraceEnabled()) LOG.trace("Tlog " + getTlogTableNameBase()
+           + " writeControlPointRecords for clusterId " + clusterId + " start with map size " + map.size());
+
+      List<TransactionState> records = new ArrayList<TransactionState>();
+      Map<Long, Long> lastWritten;
+      try {
+         lastWritten = collectControlPointRecords(map, records);
+      } catch (ConcurrentModificationException cme){
+          LOG.info("writeControlPointRecords ConcurrentModificationException;  delaying control point ", cme);
+          // Return the current value rather than incrementing this interval.
+          controlPointDeferred = true;
+          return tLogControlPoint.getCurrControlPt(clusterId) - 1;
+      } 
+
+      // The records are written without holding on to the map
+      return writeControlPointRecords(map.size(), records, lastWritten);
    }
 
    public long addControlPoint (final int clusterId, final Map<Long, TransactionState> map, final boolean incrementCP) throws IOException {
@@ -1712,10 +2086,14 @@ public class TmAuditTlog {
 
       if (controlPointDeferred) {
          // We deferred the control point once already due to concurrency.  We'll synchronize this timeIndex
+         // Only the scan of the map is synchronized, not the writes.
+         List<TransactionState> records = new ArrayList<TransactionState>();
+         Map<Long, Long> lastWritten;
          synchronized (map) {
-            if (LOG.isTraceEnabled()) LOG.trace("Control point was deferred.  Writing synchronized control point records");
-            lvCtrlPt = writeControlPointRecords(clusterId, map);
+            if (LOG.isTraceEnabled()) LOG.trace("Control point was deferred.  Collecting synchronized control point records");
+            lastWritten = collectControlPointRecords(map, records);
          }
+         lvCtrlPt = writeControlPointRecords(map.size(), records, lastWritten);
 
          controlPointDeferred = false;
       }
@@ -1805,14 +2183,7 @@ public class TmAuditTlog {
       boolean complete = false;
       int retries = 0;
       Get g;
-      byte [] value;
-      String stateString = "";
-      String transidToken = "";
-      String startIdToken = "";
-      String commitIdToken = "";
-      TransState lvTxState = TransState.STATE_NOTX;
       Result r;
-      StringTokenizer st;
       long key = lvTransid;
 
       do {
@@ -1821,7 +2192,6 @@ public class TmAuditTlog {
             String transidString = new String(String.valueOf(lvTransid));
             if (LOG.isTraceEnabled()) LOG.trace("key: " + key + ", hexkey: " + Long.toHexString(key) + ", transid: " +  lvTransid);
             g = new Get(Bytes.toBytes(key));
-            lvTxState = TransState.STATE_NOTX;
             r = unknownTransactionTable.get(g);
             if (r == null) {
                ts.setStatus(TransState.STATE_NOTX);
@@ -1831,101 +2201,7 @@ public class TmAuditTlog {
                ts.setStatus(TransState.STATE_NOTX);
                if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: tLog empty result: " + transidString);
             }
-            value = r.getValue(TLOG_FAMILY, ASN_STATE);
-            if (value == null) {
-               ts.setStatus(TransState.STATE_NOTX);
-               if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: tLog value is null: " + transidString);
-               return;
-            }
-            if (value.length == 0) {
-               ts.setStatus(TransState.STATE_NOTX);
-               if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: tLog transaction not found: " + transidString);
-               return;
-            }
-            try {
-               st = new StringTokenizer(Bytes.toString(value), ",");
-               if (st.hasMoreElements()) {
-                   String asnToken = st.nextElement().toString();
-                   transidToken = st.nextElement().toString();
-                   stateString = st.nextElement().toString();
-                   if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: transaction: " + transidToken + " stateString is: " + stateString);
-                }
-                if (stateString.contains("COMMITTED")){
-                   lvTxState = TransState.STATE_COMMITTED;
-                }
-                else if (stateString.contains("ABORT")){
-                   lvTxState = TransState.STATE_ABORTED;
-                }
-                else if (stateString.contains("FORGOT")){
-                   // Need to get the previous state record so we know how to drive the regions
-                   String keyS = new String(r.getRow());
-                   Get get = new Get(r.getRow());
-                   get.setMaxVersions(versions);  // will return last n versions of row
-                   Result lvResult = unknownTransactionTable.get(get);
-                   // byte[] b = lvResult.getValue(TLOG_FAMILY, ASN_STATE);  // returns current version of value
-                   List<Cell> list = lvResult.getColumnCells(TLOG_FAMILY, ASN_STATE);  // returns all versions of this column
-                   for (Cell element : list) {
-                      st = new StringTokenizer(Bytes.toString(CellUtil.cloneValue(element)), ",");
-                      if (st.hasMoreElements()) {
-                         if (LOG.isTraceEnabled()) LOG.trace("Performing secondary search on (" + transidToken + ")");
-                         String asnToken = st.nextElement().toString() ;
-                         transidToken = st.nextElement().toString() ;
-                         String stateToken = st.nextElement().toString() ;
-                         if (LOG.isTraceEnabled()) LOG.trace("Trans (" + transidToken + ") has stateToken: " + stateToken);
-                         if ((stateToken.contains("COMMITTED")) || (stateToken.contains("ABORT"))) {
-                            if (LOG.isTraceEnabled()) LOG.trace("Secondary search found record for (" + transidToken + ") with state: " + stateToken);
-                            lvTxState = (stateToken.contains("COMMITTED")) ? TransState.STATE_COMMITTED : TransState.STATE_ABORTED;
-                            break;
-                         }
-                         else {
-                            if (LOG.isTraceEnabled()) LOG.trace("Secondary search skipping entry for (" + 
-                                         transidToken + ") with state: " + stateToken );
-                         }
-                      }
-                   }
-                }
-                else {
-                   lvTxState = TransState.STATE_BAD;
-                }
-
-                // get past the filler
-                st.nextElement();
-
-                // get past the place holder
-                st.nextElement();
-
-                startIdToken = st.nextElement().toString();
-                ts.setStartId(Long.parseLong(startIdToken));
-                commitIdToken = st.nextElement().toString();
-                ts.setCommitId(Long.parseLong(commitIdToken));
-
-                if (postAllRegions){
-                   ts.clearParticipatingRegions();
-
-                   List<HRegionLocation> regionList;
-                   // Load the TransactionState object up with regions
-                   while (st.hasMoreElements()) {
-                      String tableNameToken = st.nextToken();
-                      regionList = connection.getRegionLocator(TableName.valueOf(lv_tLogName)).getAllRegionLocations();
-                      Iterator<HRegionLocation> it =  regionList.iterator();
-                      while(it.hasNext()) { // iterate entries.
-                         HRegionLocation hloc = it.next();
-                         if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: transaction: " + transidToken +
-                                   " adding region: " + hloc.getRegionInfo().getRegionNameAsString());
-                         TransactionRegionLocation tloc = new TransactionRegionLocation(hloc.getRegionInfo(),hloc.getServerName());
-                         if (postAllRegions) ts.addRegion(tloc); // TBD quick workaround, skip put if noPostAllRegions
-                      }
-                   }
-                }
-            }
-            catch (Exception ste) {
-               LOG.error("getTransactionState found a malformed record for transid: " + lvTransid
-               		 + " record: " + Bytes.toString(value) + " on table: "
-                         +lv_tLogName + " returning STATE_NOTX ");
-               ts.setStatus(TransState.STATE_NOTX);
-               return;
-            }
-            ts.setStatus(lvTxState);
+            setTransactionStateFromRow(ts, r, unknownTransactionTable, lv_tLogName, postAllRegions);
 
             complete = true;
             if (retries > 1){
@@ -1948,12 +2224,193 @@ public class TmAuditTlog {
             }
          }
       } while (! complete && retries < TlogRetryCount);  // default give up after 5 minutes
-      if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: returning transid: " + ts.getTransactionId() + " state: " + lvTxState);
+      if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: returning transid: " + ts.getTransactionId() + " state: " + ts.getStatus());
 
       if (LOG.isTraceEnabled()) LOG.trace("getTransactionState end transid: " + ts.getTransactionId());
       return;
    }
 
+   /**
+    * Set the state, ids and, if postAllRegions, the regions of ts from its
+    * TLOG row r (possibly empty) read from unknownTransactionTable.
+    */
+   private void setTransactionStateFromRow(TransactionState ts, Result r, Table unknownTransactionTable,
+                                           String lv_tLogName, boolean postAllRegions) throws IOException {
+      String transidString = String.valueOf(ts.getTransactionId());
+      long lvTransid = ts.getTransactionId();
+      byte [] value;
+      String stateString = "";
+      String transidToken = "";
+      TransState lvTxState = TransState.STATE_NOTX;
+      TlogRecord record;
+
+      value = r.getValue(TLOG_FAMILY, ASN_STATE);
+      if (value == null) {
+         ts.setStatus(TransState.STATE_NOTX);
+         if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: tLog value is null: " + transidString);
+         return;
+      }
+      if (value.length == 0) {
+         ts.setStatus(TransState.STATE_NOTX);
+         if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: tLog transaction not found: " + transidString);
+         return;
+      }
+      try {
+         record = TlogRecord.decode(r.getRow(), value);
+         if (record == null) {
+            ts.setStatus(TransState.STATE_NOTX);
+            if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: tLog record is empty: " + transidString);
+            return;
+         }
+         transidToken = String.valueOf(record.getTransactionId());
+         stateString = record.getState();
+         if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: transaction: " + transidToken + " stateString is: " + stateString);
+          if (stateString.contains("COMMITTED")){
+             lvTxState = TransState.STATE_COMMITTED;
+          }
+          else if (stateString.contains("ABORT")){
+             lvTxState = TransState.STATE_ABORTED;
+          }
+          else if (stateString.contains("FORGOT")){
+             // Need to get the previous state record so we know how to drive the regions
+             String keyS = new String(r.getRow());
+             Get get = new Get(r.getRow());
+             get.setMaxVersions(versions);  // will return last n versions of row
+             Result lvResult = unknownTransactionTable.get(get);
+             // byte[] b = lvResult.getValue(TLOG_FAMILY, ASN_STATE);  // returns current version of value
+             List<Cell> list = lvResult.getColumnCells(TLOG_FAMILY, ASN_STATE);  // returns all versions of this column
+             for (Cell element : list) {
+                TlogRecord version = TlogRecord.decode(r.getRow(), CellUtil.cloneValue(element));
+                if (version != null) {
+                   if (LOG.isTraceEnabled()) LOG.trace("Performing secondary search on (" + transidToken + ")");
+                   transidToken = String.valueOf(version.getTransactionId());
+                   String stateToken = version.getState();
+                   if (LOG.isTraceEnabled()) LOG.trace("Trans (" + transidToken + ") has stateToken: " + stateToken);
+                   if ((stateToken.contains("COMMITTED")) || (stateToken.contains("ABORT"))) {
+                      if (LOG.isTraceEnabled()) LOG.trace("Secondary search found record for (" + transidToken + ") with state: " + stateToken);
+                      lvTxState = (stateToken.contains("COMMITTED")) ? TransState.STATE_COMMITTED : TransState.STATE_ABORTED;
+                      break;
+                   }
+                   else {
+                      if (LOG.isTraceEnabled()) LOG.trace("Secondary search skipping entry for (" + 
+                                   transidToken + ") with state: " + stateToken );
+                   }
+                }
+             }
+          }
+          else {
+             lvTxState = TransState.STATE_BAD;
+          }
+
+          ts.setStartId(record.getStartId());
+          ts.setCommitId(record.getCommitId());
+
+          if (postAllRegions){
+             ts.clearParticipatingRegions();
+
+             List<HRegionLocation> regionList;
+             // Load the TransactionState object up with regions
+             for (String tableNameToken : getRecordTableNames(lv_tLogName, record)) {
+                regionList = connection.getRegionLocator(TableName.valueOf(lv_tLogName)).getAllRegionLocations();
+                Iterator<HRegionLocation> it =  regionList.iterator();
+                while(it.hasNext()) { // iterate entries.
+                   HRegionLocation hloc = it.next();
+                   if (LOG.isTraceEnabled()) LOG.trace("getTransactionState: transaction: " + transidToken +
+                             " adding region: " + hloc.getRegionInfo().getRegionNameAsString());
+                   TransactionRegionLocation tloc = new TransactionRegionLocation(hloc.getRegionInfo(),hloc.getServerName());
+                   if (postAllRegions) ts.addRegion(tloc); // TBD quick workaround, skip put if noPostAllRegions
+                }
+             }
+          }
+      }
+      catch (Exception ste) {
+         LOG.error("getTransactionState found a malformed record for transid: " + lvTransid
+         		 + " record: " + Bytes.toString(value) + " on table: "
+                   +lv_tLogName + " returning STATE_NOTX ");
+         ts.setStatus(TransState.STATE_NOTX);
+         return;
+      }
+      ts.setStatus(lvTxState);
+   }
+
+   /**
+    * Look up the TLOG state of many transactions at once, as
+    * getTransactionState does for one. Rows are read with one multi-get per
+    * owning TLOG and batchSize rows, in transaction id order. A batch that
+    * fails falls back to getTransactionState, and its retries, per
+    * transaction.
+    */
+   public void getTransactionStates (Collection<TransactionState> states, boolean postAllRegions, int batchSize) throws IOException {
+      for (Map.Entry<Integer, List<List<TransactionState>>> ownerEntry : batchesByTlog(states, batchSize).entrySet()) {
+         String lv_tLogName = new String("TRAFODION._DTM_.TLOG" + String.valueOf(ownerEntry.getKey()));
+         if (LOG.isDebugEnabled()) LOG.debug("getTransactionStates reading " + ownerEntry.getValue().size()
+                  + " batches from: " + lv_tLogName);
+         Table tlogTable = connection.getTable(TableName.valueOf(lv_tLogName));
+         try {
+            for (List<TransactionState> batch : ownerEntry.getValue()) {
+               Result[] results = readBatch(tlogTable, lv_tLogName, batch);
+               for (int i = 0; i < batch.size(); i++) {
+                  if (results != null && results[i] != null)
+                     setTransactionStateFromRow(batch.get(i), results[i], tlogTable, lv_tLogName, postAllRegions);
+                  else
+                     getTransactionState(batch.get(i), postAllRegions);
+               }
+            }
+         } finally {
+            tlogTable.close();
+         }
+      }
+   }
+
+   /**
+    * Group states by the node id of their owning TLOG, then split each
+    * group into batches of at most batchSize in transaction id order.
+    */
+   static Map<Integer, List<List<TransactionState>>> batchesByTlog(Collection<TransactionState> states, int batchSize) {
+      Map<Integer, TreeMap<Long, TransactionState>> byOwner = new TreeMap<Integer, TreeMap<Long, TransactionState>>();
+      for (TransactionState ts : states) {
+         int lv_ownerNid = (int)TransactionState.getNodeId(ts.getTransactionId());
+         TreeMap<Long, TransactionState> owned = byOwner.get(lv_ownerNid);
+         if (owned == null) {
+            owned = new TreeMap<Long, TransactionState>();
+            byOwner.put(lv_ownerNid, owned);
+         }
+         owned.put(ts.getTransactionId(), ts);
+      }
+      int lv_batchSize = Math.max(batchSize, 1);
+      Map<Integer, List<List<TransactionState>>> batches = new TreeMap<Integer, List<List<TransactionState>>>();
+      for (Map.Entry<Integer, TreeMap<Long, TransactionState>> ownerEntry : byOwner.entrySet()) {
+         List<List<TransactionState>> owned = new ArrayList<List<TransactionState>>();
+         List<TransactionState> batch = null;
+         for (TransactionState ts : ownerEntry.getValue().values()) {
+            if (batch == null || batch.size() == lv_batchSize) {
+               batch = new ArrayList<TransactionState>(lv_batchSize);
+               owned.add(batch);
+            }
+            batch.add(ts);
+         }
+         batches.put(ownerEntry.getKey(), owned);
+      }
+      return batches;
+   }
+
+   /**
+    * Read the TLOG rows of batch with one multi-get. Returns null if the
+    * multi-get fails so the caller can read the rows one at a time.
+    */
+   static Result[] readBatch(Table tlogTable, String lv_tLogName, List<TransactionState> batch) {
+      List<Get> gets = new ArrayList<Get>(batch.size());
+      for (TransactionState ts : batch)
+         gets.add(new Get(Bytes.toBytes(ts.getTransactionId())));
+      try {
+         return tlogTable.get(gets);
+      } catch (IOException e) {
+         LOG.warn("getTransactionStates batch of " + batch.size() + " failed on table "
+                  + lv_tLogName + ", reading transactions one at a time ", e);
+         return null;
+      }
+   }
+
    public long getAuditCP(int clustertoRetrieve) throws IOException {
       long cp = 0;
       try {
@@ -0,0 +1,227 @@
+/**
+* @@@ START COPYRIGHT @@@
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+* @@@ END COPYRIGHT @@@
+**/
+
+package org.trafodion.dtm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.client.transactional.TransactionState;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The parallel recovery path: in-doubt transactions are looked up in their
+ * owning TLOG with batched multi-gets, then resolved concurrently.
+ */
+public class TestParallelRecovery {
+
+  private static final int THREADS = 4;
+
+  private ExecutorService pool;
+
+  @Before
+  public void setUp() {
+    pool = Executors.newFixedThreadPool(THREADS);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  private static long transid(int nodeId, int seq) {
+    return ((long)nodeId << 32) | seq;
+  }
+
+  private static List<Long> ids(List<TransactionState> batch) {
+    List<Long> ids = new ArrayList<Long>();
+    for (TransactionState ts : batch)
+      ids.add(ts.getTransactionId());
+    return ids;
+  }
+
+  /** A TLOG table that records its multi-gets, optionally failing them. */
+  private static Table tlogTable(final List<List<Get>> multiGets, final boolean fail) {
+    return (Table) Proxy.newProxyInstance(Table.class.getClassLoader(), new Class<?>[] { Table.class },
+        new InvocationHandler() {
+          @SuppressWarnings("unchecked")
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("get") && args[0] instanceof List) {
+              List<Get> gets = (List<Get>) args[0];
+              multiGets.add(gets);
+              if (fail)
+                throw new IOException("region server down");
+              Result[] results = new Result[gets.size()];
+              for (int i = 0; i < results.length; i++)
+                results[i] = Result.EMPTY_RESULT;
+              return results;
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  @Test
+  public void testBatchesGroupedByOwningTlogInTransactionIdOrder() {
+    List<TransactionState> states = new ArrayList<TransactionState>();
+    for (int seq : new int[] { 7, 3, 5, 1, 6, 2, 4 })
+      states.add(new TransactionState(transid(2, seq)));
+    states.add(new TransactionState(transid(1, 9)));
+    states.add(new TransactionState(transid(1, 8)));
+
+    Map<Integer, List<List<TransactionState>>> batches = TmAuditTlog.batchesByTlog(states, 3);
+
+    assertEquals(Arrays.asList(1, 2), new ArrayList<Integer>(batches.keySet()));
+    List<List<TransactionState>> node1 = batches.get(1);
+    assertEquals(1, node1.size());
+    assertEquals(Arrays.asList(transid(1, 8), transid(1, 9)), ids(node1.get(0)));
+    List<List<TransactionState>> node2 = batches.get(2);
+    assertEquals(3, node2.size());
+    assertEquals(Arrays.asList(transid(2, 1), transid(2, 2), transid(2, 3)), ids(node2.get(0)));
+    assertEquals(Arrays.asList(transid(2, 4), transid(2, 5), transid(2, 6)), ids(node2.get(1)));
+    assertEquals(Arrays.asList(transid(2, 7)), ids(node2.get(2)));
+  }
+
+  @Test
+  public void testBatchSizeBelowOneReadsOneRowAtATime() {
+    List<TransactionState> states = new ArrayList<TransactionState>();
+    states.add(new TransactionState(transid(1, 1)));
+    states.add(new TransactionState(transid(1, 2)));
+
+    assertEquals(2, TmAuditTlog.batchesByTlog(states, 0).get(1).size());
+  }
+
+  @Test
+  public void testReadBatchIsOneMultiGetInBatchOrder() {
+    List<TransactionState> batch = new ArrayList<TransactionState>();
+    for (int seq = 1; seq <= 5; seq++)
+      batch.add(new TransactionState(transid(3, seq)));
+    List<List<Get>> multiGets = new ArrayList<List<Get>>();
+
+    Result[] results = TmAuditTlog.readBatch(tlogTable(multiGets, false), "TRAFODION._DTM_.TLOG3", batch);
+
+    assertEquals(batch.size(), results.length);
+    assertEquals(1, multiGets.size());
+    for (int i = 0; i < batch.size(); i++)
+      assertTrue(Bytes.equals(Bytes.toBytes(batch.get(i).getTransactionId()), multiGets.get(0).get(i).getRow()));
+  }
+
+  @Test
+  public void testFailedMultiGetFallsBackToSingleReads() {
+    List<TransactionState> batch = new ArrayList<TransactionState>();
+    batch.add(new TransactionState(transid(3, 1)));
+    List<List<Get>> multiGets = new ArrayList<List<Get>>();
+
+    assertNull(TmAuditTlog.readBatch(tlogTable(multiGets, true), "TRAFODION._DTM_.TLOG3", batch));
+    assertEquals(1, multiGets.size());
+  }
+
+  @Test
+  public void testOutcomesResolveConcurrentlyWithinThePool() throws Exception {
+    final int count = 4 * THREADS;
+    final CountDownLatch together = new CountDownLatch(THREADS);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final AtomicInteger resolved = new AtomicInteger();
+    List<Callable<Integer>> outcomes = new ArrayList<Callable<Integer>>();
+    for (int i = 0; i < count; i++) {
+      outcomes.add(new Callable<Integer>() {
+        public Integer call() throws Exception {
+          int now = running.incrementAndGet();
+          synchronized (maxRunning) {
+            maxRunning.set(Math.max(maxRunning.get(), now));
+          }
+          // The first THREADS outcomes only finish once all of them run at once
+          together.countDown();
+          together.await(10, TimeUnit.SECONDS);
+          running.decrementAndGet();
+          resolved.incrementAndGet();
+          return 0;
+        }
+      });
+    }
+
+    HBaseTxClient.runAll(pool, outcomes);
+
+    assertEquals(count, resolved.get());
+    assertEquals(0, together.getCount());
+    assertEquals(THREADS, maxRunning.get());
+  }
+
+  @Test
+  public void testFirstFailureRethrownAfterEveryOutcome() throws Exception {
+    final IOException first = new IOException("commit redrive failed");
+    final AtomicInteger resolved = new AtomicInteger();
+    final CountDownLatch failed = new CountDownLatch(1);
+    List<Callable<Integer>> outcomes = new ArrayList<Callable<Integer>>();
+    outcomes.add(new Callable<Integer>() {
+      public Integer call() throws IOException {
+        failed.countDown();
+        throw first;
+      }
+    });
+    for (int i = 0; i < 10; i++) {
+      outcomes.add(new Callable<Integer>() {
+        public Integer call() throws Exception {
+          failed.await(10, TimeUnit.SECONDS);
+          Thread.sleep(5);
+          resolved.incrementAndGet();
+          return 0;
+        }
+      });
+    }
+
+    IOException thrown = null;
+    try {
+      HBaseTxClient.runAll(pool, outcomes);
+    } catch (IOException e) {
+      thrown = e;
+    }
+
+    assertSame(first, thrown);
+    assertEquals(10, resolved.get());
+  }
+}
@@ -55,25 +55,61 @@ DEFINE_EXTERN_COMP_DOVERS(idtmsrv)
 void do_reply(BMS_SRE *pp_sre, char *pp_reply, int pv_len, short pv_ec);
 
 
+//
+// The clock as a counter value, secs << 20 | usecs
+//
+unsigned long clock_counter() {
+
+    struct timespec lv_ts;
+
+    clock_gettime(CLOCK_REALTIME, &lv_ts);
+    return ((unsigned long) lv_ts.tv_sec << 20) |
+           ((unsigned long) lv_ts.tv_nsec / 1000);
+}
+
 //
 // Reset the global time counter
 //
 void reset_time_counter() {
 
-    struct timespec lv_new_ts;
+    unsigned long lv_new_tsl = clock_counter();
 
-    clock_gettime(CLOCK_REALTIME, &lv_new_ts);
-    unsigned long lv_new_tsl = ((unsigned long) lv_new_ts.tv_sec << 20) |
-                               ((unsigned long) lv_new_ts.tv_nsec / 1000);
+    if (gv_verbose)
+        printf("srv: reset_time_counter, converted time 0x%lx\n", lv_new_tsl);
+
+    // Only ever move the counter forward, going back would hand out
+    // ids a second time.  id_block keeps it within MAX_ID_DRIFT of the
+    // clock, so the clock catches up.
+    unsigned long lv_existing_tsl;
+    do {
+        lv_existing_tsl = __sync_add_and_fetch_8(gp_shm, 0);
+        if (lv_new_tsl <= lv_existing_tsl)
+            break;
+    } while (!__sync_bool_compare_and_swap(gp_shml, lv_existing_tsl, lv_new_tsl));
 
     if (gv_verbose)
-        printf("srv: reset_time_counter, original ts =0x%lx,0x%lx converted time 0x%lx\n", lv_new_ts.tv_sec, lv_new_ts.tv_nsec, lv_new_tsl);
+        printf("srv: reset_time_counter, existing=0x%lx, shm=0x%lx\n", lv_existing_tsl, *gp_shml);
+}
 
-    unsigned long lv_existing_tsl = __sync_add_and_fetch_8(gp_shm, 0);
-    __sync_add_and_fetch_8(gp_shm, lv_new_tsl - lv_existing_tsl);
+//
+// Take pv_count ids starting no earlier than the clock.
+// Return the first id, or 0 if the counter would get more than
+// MAX_ID_DRIFT ahead of the clock.
+//
+unsigned long take_id_block(int pv_count) {
 
-    if (gv_verbose)
-        printf("srv: reset_time_counter, adjustment=0x%lx, shm=0x%lx\n", lv_new_tsl - lv_existing_tsl, *gp_shml);
+    unsigned long lv_now = clock_counter();
+    unsigned long lv_existing_tsl;
+    unsigned long lv_first;
+
+    do {
+        lv_existing_tsl = __sync_add_and_fetch_8(gp_shm, 0);
+        lv_first = (lv_existing_tsl < lv_now ? lv_now : lv_existing_tsl) + 1;
+        if (lv_first + pv_count - 1 > lv_now + MAX_ID_DRIFT)
+            return 0;
+    } while (!__sync_bool_compare_and_swap(gp_shml, lv_existing_tsl, lv_first + pv_count - 1));
+
+    return lv_first;
 }
 
 //
@@ -413,6 +449,7 @@ void do_mon_msg(BMS_SRE *pp_sre, bool *pp_done) {
 //
 void do_req(BMS_SRE *pp_sre) {
     const char     *lp_req_type;
+    int             lv_count;
     short           lv_ec;
     int             lv_ferr;
     int             lv_len;
@@ -456,6 +493,9 @@ void do_req(BMS_SRE *pp_sre) {
             case GID_REQ_ID:
                 lp_req_type = "id";
                 break;
+            case GID_REQ_ID_BLOCK:
+                lp_req_type = "id_block";
+                break;
             case GID_REQ_ID_TO_STRING:
                 lp_req_type = "id_to_string";
                 break;
@@ -507,6 +547,34 @@ void do_req(BMS_SRE *pp_sre) {
             }
             break;
 
+        case GID_REQ_ID_BLOCK:
+            if ((lv_req.iv_req_len == (int) sizeof(lv_req.u.iv_id_block)) &&
+                (lv_req.u.iv_id_block.iv_count > 0) &&
+                (lv_req.u.iv_id_block.iv_count <= MAX_ID_BLOCK)) {
+                lv_count = lv_req.u.iv_id_block.iv_count;
+                if (gv_verbose)
+                    printf("srv: received id_block request, count=%d\n", lv_count);
+                lv_rep.iv_rep_type = GID_REP_ID_BLOCK;
+                lv_rep.iv_rep_tag = lv_req.iv_req_tag;
+                lv_rep.iv_rep_len = (int) sizeof(lv_rep.u.iv_id_block);
+                lv_rep.u.iv_id_block.iv_com.iv_error = GID_ERR_OK;
+                lv_rep.u.iv_id_block.iv_id = take_id_block(lv_count);
+                lv_rep.u.iv_id_block.iv_count = lv_count;
+                if (lv_rep.u.iv_id_block.iv_id == 0) {
+                    if (gv_verbose)
+                        printf("srv: id_block, count=%d would pass the clock by more than MAX_ID_DRIFT, setting BOUNDSERR\n",
+                               lv_count);
+                    lv_ec = XZFIL_ERR_BOUNDSERR;
+                }
+            } else {
+                if (gv_verbose)
+                    printf("srv: received id_block, req-len=%d, expecting len=%d, count=%d, setting BADCOUNT\n",
+                           lv_req.iv_req_len, (int) sizeof(lv_req.u.iv_id_block),
+                           lv_req.u.iv_id_block.iv_count);
+                lv_ec = XZFIL_ERR_BADCOUNT;
+            }
+            break;
+
         case GID_REQ_ID_TO_STRING:
             if (lv_req.iv_req_len == (int) sizeof(lv_req.u.iv_id_to_string)) {
                 lv_rep.iv_rep_type = GID_REP_ID_TO_STRING;
@@ -25,6 +25,8 @@
 #define __IDTMSRV_H_
 
 #define MAX_DATE_TIME_BUFF_LEN 40 //Fri February 20 15:43:36:355840 2016....
+#define MAX_ID_BLOCK 4096 // max ids leased by one id_block request
+#define MAX_ID_DRIFT (1UL << 20) // id_block keeps the counter within 1 sec of the clock
 
 // request types
 typedef enum {
@@ -32,7 +34,8 @@ typedef enum {
     GID_REQ_ID             = 2,
     GID_REQ_ID_TO_STRING   = 3,
     GID_REQ_STRING_TO_ID   = 4,
-    GID_REQ_LAST           = 5
+    GID_REQ_ID_BLOCK       = 5,
+    GID_REQ_LAST           = 6
 } GID_REQ_TYPE;
 
 // reply types
@@ -41,7 +44,8 @@ typedef enum {
     GID_REP_ID             = 101,
     GID_REP_ID_TO_STRING   = 102,
     GID_REP_STRING_TO_ID   = 103,
-    GID_REP_LAST           = 104
+    GID_REP_ID_BLOCK       = 104,
+    GID_REP_LAST           = 105
 } GID_REP_TYPE;
 
 // error types
@@ -62,6 +66,13 @@ typedef struct GID_Rep_Id_Type {
     long             iv_id;
 } GID_Rep_Id_Type;
 
+// id block reply - ids iv_id .. iv_id + iv_count - 1
+typedef struct GID_Rep_Id_Block_Type {
+    GID_Rep_Com_Type iv_com;
+    long             iv_id;
+    int              iv_count;
+} GID_Rep_Id_Block_Type;
+
 // id to string reply
 typedef struct GID_Rep_Id_To_String_Type {
   GID_Rep_Com_Type iv_com;
@@ -85,6 +96,11 @@ typedef struct GID_Rep_Ping_Type {
 typedef struct GID_Req_Id_Type {
 } GID_Req_Id_Type;
 
+// id block request
+typedef struct GID_Req_Id_Block_Type {
+    int    iv_count;
+} GID_Req_Id_Block_Type;
+
 // id to string request
 typedef struct GID_Req_Id_To_String_Type {
     long   iv_req_id_to_string;
@@ -106,6 +122,7 @@ typedef struct GID_Req {
     int          iv_req_len;   // size of union type
     union {
         GID_Req_Id_Type            iv_id;
+        GID_Req_Id_Block_Type      iv_id_block;
         GID_Req_Id_To_String_Type  iv_id_to_string;
         GID_Req_String_To_Id_Type  iv_string_to_id;
         GID_Req_Ping_Type          iv_ping;
@@ -119,6 +136,7 @@ typedef struct GID_Rep {
     int          iv_rep_len;   // size of union type
     union {
         GID_Rep_Id_Type            iv_id;
+        GID_Rep_Id_Block_Type      iv_id_block;
         GID_Rep_Id_To_String_Type  iv_id_to_string;
         GID_Rep_String_To_Id_Type  iv_string_to_id;
         GID_Rep_Ping_Type          iv_ping;
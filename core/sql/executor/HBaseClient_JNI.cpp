@@ -4328,6 +4328,18 @@ JNIEXPORT jint JNICALL Java_org_trafodion_sql_HTableClient_setResultInfo
    return 0;
 }
 
+JNIEXPORT jint JNICALL Java_org_trafodion_sql_HTableClient_setResultBuffer
+  (JNIEnv *jenv, jobject jobj, jlong jniObject, jobject jResultBuffer,
+        jint numCellsReturned, jint numRowsReturned)
+{
+   HTableClient_JNI *htc = (HTableClient_JNI *)jniObject;
+   if (htc->getFetchMode() == HTableClient_JNI::GET_ROW ||
+          htc->getFetchMode() == HTableClient_JNI::BATCH_GET)
+      htc->setJavaObject(jobj);
+   htc->setResultBuffer(jResultBuffer, numCellsReturned, numRowsReturned);
+   return 0;
+}
+
 JNIEXPORT jint JNICALL Java_org_trafodion_sql_HTableClient_setJavaObject
   (JNIEnv *jenv, jobject jobj, jlong jniObject)
 {
@@ -4422,11 +4434,45 @@ void HTableClient_JNI::setResultInfo( jintArray jKvValLen, jintArray jKvValOffse
    numRowsReturned_ = numRowsReturned;
    prevRowCellNum_ = 0;
    currentRowNum_ = -1;
+   directResult_ = FALSE;
    cleanupDone_ = FALSE;
    ex_assert(! exceptionFound, "Exception in HTableClient_JNI::setResultInfo");
    return;
 } 
 
+// The batch was serialized by HTableClient.pushRowsToJniBuffer() into a
+// direct ByteBuffer. Only a reference to the buffer is kept here, the cell
+// info and the cell bytes are read from the buffer address without any
+// further JNI calls.
+void HTableClient_JNI::setResultBuffer(jobject jResultBuffer,
+        jint numCellsReturned, jint numRowsReturned)
+{
+   if (numRowsReturned_ > 0)
+      cleanupResultInfo();
+   if (jResultBuffer_ != NULL)
+   {
+      jenv_->DeleteGlobalRef(jResultBuffer_);
+      jResultBuffer_ = NULL;
+   }
+   NABoolean exceptionFound = FALSE;
+   jResultBuffer_ = jenv_->NewGlobalRef(jResultBuffer);
+   if (jenv_->ExceptionCheck())
+      exceptionFound = TRUE;
+   if (! exceptionFound) {
+      p_resultBuffer_ = (BYTE *)jenv_->GetDirectBufferAddress(jResultBuffer_);
+      if (p_resultBuffer_ == NULL)
+         exceptionFound = TRUE;
+   }
+   numCellsReturned_ = numCellsReturned;
+   numRowsReturned_ = numRowsReturned;
+   prevRowCellNum_ = 0;
+   currentRowNum_ = -1;
+   directResult_ = TRUE;
+   cleanupDone_ = FALSE;
+   ex_assert(! exceptionFound, "Exception in HTableClient_JNI::setResultBuffer");
+   return;
+}
+
 void HTableClient_JNI::cleanupResultInfo()
 {
    if (cleanupDone_)
@@ -4498,10 +4544,25 @@ void HTableClient_JNI::cleanupResultInfo()
    }
    if (p_kvsPerRow_ != NULL)
    {
-      jenv_->ReleaseIntArrayElements(jKvsPerRow_, p_kvsPerRow_, JNI_ABORT);
+      // In direct mode p_kvsPerRow_ points into the result buffer
+      if (! directResult_)
+         jenv_->ReleaseIntArrayElements(jKvsPerRow_, p_kvsPerRow_, JNI_ABORT);
        p_kvsPerRow_ = NULL;
    }
-   jenv_->DeleteGlobalRef(jKvsPerRow_);
+   if (jKvsPerRow_ != NULL)
+   {
+      jenv_->DeleteGlobalRef(jKvsPerRow_);
+      jKvsPerRow_ = NULL;
+   }
+   if (jResultBuffer_ != NULL)
+   {
+      jenv_->DeleteGlobalRef(jResultBuffer_);
+      jResultBuffer_ = NULL;
+   }
+   p_resultBuffer_ = NULL;
+   p_rowIDOffset_ = NULL;
+   p_rowIDLen_ = NULL;
+   directResult_ = FALSE;
    cleanupDone_ = TRUE;
    return;
 }
@@ -4582,9 +4643,20 @@ void HTableClient_JNI::getResultInfo()
 {
    // Allocate Buffer and copy the cell info
    int numCellsNeeded;
+   jint *p_cellInfo = NULL;
+   if (directResult_)
+   {
+      // Row info is used in place, see HTableClient.pushRowsToJniBuffer()
+      // for the layout of the buffer
+      p_kvsPerRow_ = (jint *)p_resultBuffer_;
+      p_rowIDOffset_ = p_kvsPerRow_ + numRowsReturned_;
+      p_rowIDLen_ = p_rowIDOffset_ + numRowsReturned_;
+      p_cellInfo = p_rowIDLen_ + numRowsReturned_;
+   }
    if (numCellsReturned_ == 0)
    {
-      p_kvsPerRow_ = jenv_->GetIntArrayElements(jKvsPerRow_, NULL);
+      if (! directResult_)
+         p_kvsPerRow_ = jenv_->GetIntArrayElements(jKvsPerRow_, NULL);
       currentRowNum_ = 0;
       currentRowCellNum_ = 0;
       prevRowCellNum_ = 0;
@@ -4608,6 +4680,8 @@ void HTableClient_JNI::getResultInfo()
               numCellsNeeded = numCellsReturned_;
           else    
               numCellsNeeded = 2 * numReqRows_ * numColsInScan_;
+          if (numCellsNeeded < numCellsReturned_)
+              numCellsNeeded = numCellsReturned_;
        }
        p_kvValLen_ = new (heap) jint[numCellsNeeded];
        p_kvValOffset_ = new (heap) jint[numCellsNeeded];
@@ -4618,14 +4692,35 @@ void HTableClient_JNI::getResultInfo()
        p_timestamp_ = new (heap) jlong[numCellsNeeded];
        numCellsAllocated_ = numCellsNeeded;
     }
-    jenv_->GetIntArrayRegion(jKvValLen_, 0, numCellsReturned_, p_kvValLen_);
-    jenv_->GetIntArrayRegion(jKvValOffset_, 0, numCellsReturned_, p_kvValOffset_);
-    jenv_->GetIntArrayRegion(jKvQualLen_, 0, numCellsReturned_, p_kvQualLen_);
-    jenv_->GetIntArrayRegion(jKvQualOffset_, 0, numCellsReturned_, p_kvQualOffset_);
-    jenv_->GetIntArrayRegion(jKvFamLen_, 0, numCellsReturned_, p_kvFamLen_);
-    jenv_->GetIntArrayRegion(jKvFamOffset_, 0, numCellsReturned_, p_kvFamOffset_);
-    jenv_->GetLongArrayRegion(jTimestamp_, 0, numCellsReturned_, p_timestamp_);
-    p_kvsPerRow_ = jenv_->GetIntArrayElements(jKvsPerRow_, NULL);
+    if (directResult_)
+    {
+       size_t cellInfoLen = numCellsReturned_ * sizeof(jint);
+       memcpy(p_kvValLen_, p_cellInfo, cellInfoLen);
+       p_cellInfo += numCellsReturned_;
+       memcpy(p_kvValOffset_, p_cellInfo, cellInfoLen);
+       p_cellInfo += numCellsReturned_;
+       memcpy(p_kvQualLen_, p_cellInfo, cellInfoLen);
+       p_cellInfo += numCellsReturned_;
+       memcpy(p_kvQualOffset_, p_cellInfo, cellInfoLen);
+       p_cellInfo += numCellsReturned_;
+       memcpy(p_kvFamLen_, p_cellInfo, cellInfoLen);
+       p_cellInfo += numCellsReturned_;
+       memcpy(p_kvFamOffset_, p_cellInfo, cellInfoLen);
+       // timestamps start at the next 8 byte boundary
+       size_t tsOffset = ((3 * numRowsReturned_ + 6 * numCellsReturned_) * sizeof(jint) + 7) & ~7;
+       memcpy(p_timestamp_, p_resultBuffer_ + tsOffset, numCellsReturned_ * sizeof(jlong));
+    }
+    else
+    {
+       jenv_->GetIntArrayRegion(jKvValLen_, 0, numCellsReturned_, p_kvValLen_);
+       jenv_->GetIntArrayRegion(jKvValOffset_, 0, numCellsReturned_, p_kvValOffset_);
+       jenv_->GetIntArrayRegion(jKvQualLen_, 0, numCellsReturned_, p_kvQualLen_);
+       jenv_->GetIntArrayRegion(jKvQualOffset_, 0, numCellsReturned_, p_kvQualOffset_);
+       jenv_->GetIntArrayRegion(jKvFamLen_, 0, numCellsReturned_, p_kvFamLen_);
+       jenv_->GetIntArrayRegion(jKvFamOffset_, 0, numCellsReturned_, p_kvFamOffset_);
+       jenv_->GetLongArrayRegion(jTimestamp_, 0, numCellsReturned_, p_timestamp_);
+       p_kvsPerRow_ = jenv_->GetIntArrayElements(jKvsPerRow_, NULL);
+    }
     currentRowNum_ = 0;
     currentRowCellNum_ = 0;
     prevRowCellNum_ = 0;
@@ -4635,6 +4730,10 @@ HTC_RetCode HTableClient_JNI::prepareForNextCell(int idx)
 {
     jobject kvBufferObj;
 
+    // All the cells are in the result buffer already
+    if (directResult_)
+       return HTC_OK;
+
     if (jba_kvFamArray_ != NULL)
     {
        jenv_->DeleteGlobalRef(jba_kvFamArray_);
@@ -4746,12 +4845,12 @@ HTC_RetCode HTableClient_JNI::getColName(int colNo,
         }
         colName = colName_; 
     }
-    jenv_->GetByteArrayRegion(jba_kvFamArray_, kvFamOffset, kvFamLen, 
-            (jbyte *)colName);
+    getCellBytes(jba_kvFamArray_, kvFamOffset, kvFamLen, 
+            (BYTE *)colName);
     colName[kvFamLen] = ':';
     char *temp = colName+ kvFamLen+1;
-    jenv_->GetByteArrayRegion(jba_kvQualArray_, kvQualOffset, kvQualLen, 
-            (jbyte *)temp);
+    getCellBytes(jba_kvQualArray_, kvQualOffset, kvQualLen, 
+            (BYTE *)temp);
     timestamp = p_timestamp_[idx];
     *outColName = colName;
     if (hbs_)
@@ -4778,17 +4877,17 @@ HTC_RetCode HTableClient_JNI::getColVal(int colNo, BYTE *colVal,
     {
       dataLen = kvValLen - 1; 
       copyLen = MINOF(dataLen, colValLen);
-      jenv_->GetByteArrayRegion(jba_kvBuffer_, kvValOffset, 1, &nullByte); 
-      jenv_->GetByteArrayRegion(jba_kvBuffer_, kvValOffset+1, copyLen, 
-                                (jbyte *)colVal); 
+      getCellBytes(jba_kvBuffer_, kvValOffset, 1, (BYTE *)&nullByte); 
+      getCellBytes(jba_kvBuffer_, kvValOffset+1, copyLen, 
+                                colVal); 
     }
     else 
     {
       dataLen = kvValLen;
       copyLen = MINOF(dataLen, colValLen);
       nullByte = 0;
-      jenv_->GetByteArrayRegion(jba_kvBuffer_, kvValOffset, copyLen,
-                                (jbyte *)colVal); 
+      getCellBytes(jba_kvBuffer_, kvValOffset, copyLen,
+                                colVal); 
     }
     nullVal = nullByte;
     if (dataLen > colValLen)
@@ -4825,8 +4924,8 @@ HTC_RetCode HTableClient_JNI::getColVal(NAHeap *heap, int colNo, BYTE **colVal,
        colValTmp = new (heap) BYTE[kvValLen];
        colValLenTmp = kvValLen;
     }
-    jenv_->GetByteArrayRegion(jba_kvBuffer_, kvValOffset, colValLenTmp,
-             (jbyte *)colValTmp); 
+    getCellBytes(jba_kvBuffer_, kvValOffset, colValLenTmp,
+             colValTmp); 
     *colVal = colValTmp;
     colValLen = colValLenTmp;
     if (hbs_)
@@ -4861,6 +4960,13 @@ HTC_RetCode HTableClient_JNI::getRowID(HbaseStr &rowID)
        rowID.val = NULL;
     }
     else
+    if (directResult_)
+    {
+       rowIDLen_ = p_rowIDLen_[currentRowNum_];
+       rowID.len = rowIDLen_;
+       rowID.val = (char *)(p_resultBuffer_ + p_rowIDOffset_[currentRowNum_]);
+    }
+    else
     {
        jobject rowIDObj;
        rowIDObj = jenv_->GetObjectArrayElement(jRowIDs_, currentRowNum_);
@@ -4978,14 +5084,14 @@ HTC_RetCode HTableClient_JNI::nextCell(
       }
       colName = colName_;
    }
-   jenv_->GetByteArrayRegion(jba_kvFamArray_, kvFamOffset, kvFamLen,
-            (jbyte *)colName);
+   getCellBytes(jba_kvFamArray_, kvFamOffset, kvFamLen,
+            (BYTE *)colName);
    colName[kvFamLen] = ':';
    colFamName.val = colName;
    colFamName.len = kvFamLen; 
    char *temp = colName+ kvFamLen+1;
-   jenv_->GetByteArrayRegion(jba_kvQualArray_, kvQualOffset, kvQualLen,
-            (jbyte *)temp);
+   getCellBytes(jba_kvQualArray_, kvQualOffset, kvQualLen,
+            (BYTE *)temp);
    colQualName.val = temp;
    colQualName.len = kvQualLen;
    timestamp = p_timestamp_[idx];
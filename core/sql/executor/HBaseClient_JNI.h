@@ -26,6 +26,7 @@
 #define MAX_COLNAME_LEN 32767 
 
 #include <list>
+#include <string.h>
 #include "Platform.h"
 #include "Collections.h"
 #include "NABasicObject.h"
@@ -174,6 +175,11 @@ public:
      numCellsReturned_ = 0;
      numCellsAllocated_ = 0;
      rowIDLen_ = 0;
+     jResultBuffer_ = NULL;
+     p_resultBuffer_ = NULL;
+     p_rowIDOffset_ = NULL;
+     p_rowIDLen_ = NULL;
+     directResult_ = FALSE;
   }
 
   // Destructor
@@ -213,6 +219,8 @@ public:
         jobjectArray jKvBuffer, 
         jobjectArray jKvFamArray, jobjectArray jKvQualArray, jobjectArray jRowIDs,
         jintArray jKvsPerRow, jint numCellsReturned, jint numRowsReturned);
+  void setResultBuffer(jobject jResultBuffer,
+        jint numCellsReturned, jint numRowsReturned);
   void getResultInfo();
   void cleanupResultInfo();
   HTC_RetCode fetchRows();
@@ -284,6 +292,16 @@ public:
 private:
   NAString getLastJavaError();
 
+  // Copy cell bytes either from the direct result buffer or from the
+  // java byte array of the cell, depending on how the batch was returned
+  void getCellBytes(jbyteArray jba, jint offset, jint len, BYTE *target)
+  {
+     if (directResult_)
+        memcpy(target, p_resultBuffer_ + offset, len);
+     else
+        jenv_->GetByteArrayRegion(jba, offset, len, (jbyte *)target);
+  }
+
   enum JAVA_METHODS {
     JM_GET_ERROR
    ,JM_SCAN_OPEN 
@@ -323,6 +341,12 @@ private:
   jbyteArray jba_rowID_;
   jbyte *p_rowID_;
   jint *p_kvsPerRow_;
+  // Direct result buffer filled by HTableClient.pushRowsToJniBuffer()
+  jobject jResultBuffer_;
+  BYTE *p_resultBuffer_;
+  jint *p_rowIDOffset_;
+  jint *p_rowIDLen_;
+  NABoolean directResult_;
   jint numRowsReturned_;
   int currentRowNum_;
   int currentRowCellNum_;
@@ -46,6 +46,7 @@ static const char* const sfrErrorEnumStr[] =
  ,"Java exception in fetchNextRow()"
  ,"Java exception in close()"
  ,"Java exception in getRowNum()"
+ ,"Java exception in fetchNextBatch()"
 };
 
 
@@ -127,6 +128,10 @@ OFR_RetCode OrcFileReader::init()
     JavaMethods_[JM_FETCHROW2 ].jm_signature = "()Lorg/trafodion/sql/OrcFileReader$OrcRowReturnSQL;";
     JavaMethods_[JM_GETNUMROWS ].jm_name      = "getNumberOfRows";
     JavaMethods_[JM_GETNUMROWS ].jm_signature = "()J";
+    JavaMethods_[JM_OPEN_BATCH].jm_name      = "openBatch";
+    JavaMethods_[JM_OPEN_BATCH].jm_signature = "(Ljava/lang/String;[I[I[Ljava/lang/String;[Ljava/lang/String;)Ljava/lang/String;";
+    JavaMethods_[JM_FETCH_BATCH].jm_name     = "fetchNextBatch";
+    JavaMethods_[JM_FETCH_BATCH].jm_signature = "()Ljava/nio/ByteBuffer;";
 //    JavaMethods_[JM_FETCHBUFF1].jm_name      = "fetchArrayOfRows";
 //    JavaMethods_[JM_FETCHBUFF1].jm_signature = "(I)[Ljava/lang/String;";
 //    JavaMethods_[JM_FETCHBUFF2].jm_name      = "fetchArrayOfRows";
@@ -382,6 +387,124 @@ OFR_RetCode OrcFileReader::fetchNextRow(char * buffer, long& array_length, long&
   return (OFR_OK);
 }
 
+//////////////////////////////////////////////////////////////////////////////
+// 
+//////////////////////////////////////////////////////////////////////////////
+OFR_RetCode OrcFileReader::openBatch(const char* path, Int32 numCols, const Int32* cols,
+                                     Int32 numPreds, const Int32* predCols,
+                                     const char** predMin, const char** predMax)
+{
+  QRLogger::log(CAT_SQL_HDFS_ORC_FILE_READER, LL_DEBUG, "OrcFileReader::openBatch(%s, %d, %d) called.", path, numCols, numPreds);
+
+  if (initJNIEnv() != JOI_OK)
+     return OFR_ERROR_OPEN_PARAM;
+  jstring js_path = jenv_->NewStringUTF(path);
+  if (js_path == NULL) 
+  {
+    jenv_->PopLocalFrame(NULL);
+    return OFR_ERROR_OPEN_PARAM;
+  }
+  jintArray j_cols = NULL;
+  if (numCols > 0)
+  {
+    j_cols = jenv_->NewIntArray(numCols);
+    if (j_cols == NULL)
+    {
+      jenv_->PopLocalFrame(NULL);
+      return OFR_ERROR_OPEN_PARAM;
+    }
+    jenv_->SetIntArrayRegion(j_cols, 0, numCols, (const jint*)cols);
+  }
+  jintArray j_predCols = NULL;
+  jobjectArray j_predMin = NULL;
+  jobjectArray j_predMax = NULL;
+  if (numPreds > 0)
+  {
+    jclass stringClass = jenv_->FindClass("java/lang/String");
+    j_predCols = jenv_->NewIntArray(numPreds);
+    if (stringClass != NULL)
+    {
+      j_predMin = jenv_->NewObjectArray(numPreds, stringClass, NULL);
+      j_predMax = jenv_->NewObjectArray(numPreds, stringClass, NULL);
+    }
+    if (j_predCols == NULL || j_predMin == NULL || j_predMax == NULL)
+    {
+      jenv_->PopLocalFrame(NULL);
+      return OFR_ERROR_OPEN_PARAM;
+    }
+    jenv_->SetIntArrayRegion(j_predCols, 0, numPreds, (const jint*)predCols);
+    for (Int32 i = 0; i < numPreds; i++)
+    {
+      if (predMin[i] != NULL)
+        jenv_->SetObjectArrayElement(j_predMin, i, jenv_->NewStringUTF(predMin[i]));
+      if (predMax[i] != NULL)
+        jenv_->SetObjectArrayElement(j_predMax, i, jenv_->NewStringUTF(predMax[i]));
+    }
+  }
+  // String openBatch(java.lang.String, int[], int[], java.lang.String[], java.lang.String[]);
+  tsRecentJMFromJNI = JavaMethods_[JM_OPEN_BATCH].jm_full_name;
+  jstring jresult = (jstring)jenv_->CallObjectMethod(javaObj_, JavaMethods_[JM_OPEN_BATCH].methodID,
+                                                     js_path, j_cols, j_predCols, j_predMin, j_predMax);
+
+  if (jenv_->ExceptionCheck())
+  {
+    getExceptionDetails();
+    logError(CAT_SQL_HDFS_ORC_FILE_READER, __FILE__, __LINE__);
+    jenv_->PopLocalFrame(NULL);
+    return OFR_ERROR_OPEN_EXCEPTION;
+  }
+
+  if (jresult != NULL)
+  {
+    logError(CAT_SQL_HDFS_ORC_FILE_READER, "OrcFileReader::openBatch()", jresult);
+    jenv_->PopLocalFrame(NULL);
+    return OFR_ERROR_OPEN_EXCEPTION;
+  }
+  
+  jenv_->PopLocalFrame(NULL);
+  return OFR_OK;
+}
+
+//////////////////////////////////////////////////////////////////////////////
+// 
+//////////////////////////////////////////////////////////////////////////////
+OFR_RetCode OrcFileReader::fetchNextBatch(char*& batch, Int32& numRows)
+{
+  batch = NULL;
+  numRows = 0;
+
+  if (initJNIEnv() != JOI_OK)
+     return OFR_ERROR_FETCHBATCH_EXCEPTION;
+
+  // ByteBuffer fetchNextBatch();
+  tsRecentJMFromJNI = JavaMethods_[JM_FETCH_BATCH].jm_full_name;
+  jobject jresult = jenv_->CallObjectMethod(javaObj_, JavaMethods_[JM_FETCH_BATCH].methodID);
+
+  if (jenv_->ExceptionCheck())
+  {
+    getExceptionDetails();
+    logError(CAT_SQL_HDFS_ORC_FILE_READER, __FILE__, __LINE__);
+    logError(CAT_SQL_HDFS_ORC_FILE_READER, "OrcFileReader::fetchNextBatch()", getLastError());
+    jenv_->PopLocalFrame(NULL);
+    return OFR_ERROR_FETCHBATCH_EXCEPTION;
+  }
+
+  if (jresult == NULL)
+  {
+    jenv_->PopLocalFrame(NULL);
+    return OFR_NOMORE;
+  }
+
+  // The buffer is a direct ByteBuffer owned by the Java reader, so it
+  // outlives the local reference released below.
+  batch = (char *)jenv_->GetDirectBufferAddress(jresult);
+  jenv_->PopLocalFrame(NULL);
+  if (batch == NULL)
+    return OFR_ERROR_FETCHBATCH_EXCEPTION;
+  numRows = *(Int32 *)batch;
+  return OFR_OK;
+}
+
 //////////////////////////////////////////////////////////////////////////////
 // 
 //////////////////////////////////////////////////////////////////////////////
@@ -43,6 +43,7 @@ typedef enum {
  ,OFR_ERROR_FETCHROW_EXCEPTION  // Java exception in fetchNextRow()
  ,OFR_ERROR_CLOSE_EXCEPTION     // Java exception in close()
  ,OFR_ERROR_GETNUMROWS_EXCEPTION
+ ,OFR_ERROR_FETCHBATCH_EXCEPTION // Java exception in fetchNextBatch()
  ,OFR_LAST
 } OFR_RetCode;
 
@@ -83,6 +84,19 @@ public:
 //  OFR_RetCode    fetchNextRow(Int64 stopOffset, char* buffer);
 		OFR_RetCode fetchNextRow(char * buffer, long& array_length, long& rowNumber, int& num_columns);
   
+  // Open the file for batch reads, returning only the numCols columns
+  // listed in cols (all columns if numCols is 0). predCols/predMin/predMax
+  // give numPreds range predicates, used to skip stripes and row groups
+  // by their min/max statistics; a NULL bound leaves that end open.
+  OFR_RetCode    openBatch(const char* path, Int32 numCols, const Int32* cols,
+                           Int32 numPreds, const Int32* predCols,
+                           const char** predMin, const char** predMax);
+
+  // Fetch the next batch of rows. On return 'batch' points to the
+  // column-major batch buffer described in OrcFileReader.java, which
+  // stays valid until the next call; numRows is 0 at the end of the file.
+  OFR_RetCode    fetchNextBatch(char*& batch, Int32& numRows);
+
   // Close the file.
   OFR_RetCode    close();
 
@@ -108,6 +122,8 @@ private:
     JM_FETCHROW,
     JM_FETCHROW2,
     JM_GETNUMROWS,
+    JM_OPEN_BATCH,
+    JM_FETCH_BATCH,
 //    JM_FETCHBUFF1,
 //    JM_FETCHBUFF2,
     JM_CLOSE,
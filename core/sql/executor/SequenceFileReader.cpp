@@ -46,6 +46,8 @@ static const char* const sfrErrorEnumStr[] =
  ,"Java exception in isEOF()"
  ,"Java exception in fetchNextRow()"
  ,"Java exception in close()"
+ ,"Java exception in beginSplit()"
+ ,"Java exception in fetchRowBatch()"
 };
 
 //////////////////////////////////////////////////////////////////////////////
@@ -113,6 +115,10 @@ SFR_RetCode SequenceFileReader::init()
     JavaMethods_[JM_FETCHBUFF2].jm_signature = "(II)[Ljava/lang/String;";
     JavaMethods_[JM_CLOSE     ].jm_name      = "close";
     JavaMethods_[JM_CLOSE     ].jm_signature = "()Ljava/lang/String;";
+    JavaMethods_[JM_BEGIN_SPLIT].jm_name     = "beginSplit";
+    JavaMethods_[JM_BEGIN_SPLIT].jm_signature = "(JJZ)Ljava/lang/String;";
+    JavaMethods_[JM_FETCH_BATCH].jm_name     = "fetchRowBatch";
+    JavaMethods_[JM_FETCH_BATCH].jm_signature = "()Ljava/nio/ByteBuffer;";
    
     rc = (SFR_RetCode)JavaObjectInterface::init(className, javaClass_, JavaMethods_, (Int32)JM_LAST, javaMethodsInitialized_);
     javaMethodsInitialized_ = TRUE;
@@ -373,6 +379,86 @@ SFR_RetCode SequenceFileReader::fetchRowsIntoBuffer(Int64   stopOffset,
   return retCode;
 }
 
+//////////////////////////////////////////////////////////////////////////////
+// 
+//////////////////////////////////////////////////////////////////////////////
+SFR_RetCode SequenceFileReader::beginSplit(Int64 startOffset, Int64 stopOffset, bool readAhead)
+{
+  QRLogger::log(CAT_SQL_HDFS_SEQ_FILE_READER, LL_DEBUG, "SequenceFileReader::beginSplit(%ld, %ld, %d) called.", startOffset, stopOffset, readAhead);
+
+  if (initJNIEnv() != JOI_OK)
+     return SFR_ERROR_BEGINSPLIT_EXCEPTION;
+
+  // String beginSplit(long, long, boolean);
+  tsRecentJMFromJNI = JavaMethods_[JM_BEGIN_SPLIT].jm_full_name;
+  jstring jresult = (jstring)jenv_->CallObjectMethod(javaObj_, JavaMethods_[JM_BEGIN_SPLIT].methodID,
+                                                      startOffset, stopOffset, (jboolean)readAhead);
+
+  if (jenv_->ExceptionCheck())
+  {
+    getExceptionDetails();
+    logError(CAT_SQL_HDFS_SEQ_FILE_READER, __FILE__, __LINE__);
+    jenv_->PopLocalFrame(NULL);
+    return SFR_ERROR_BEGINSPLIT_EXCEPTION;
+  }
+
+  if (jresult != NULL)
+  {
+    logError(CAT_SQL_HDFS_SEQ_FILE_READER, "SequenceFileReader::beginSplit()", jresult);
+    jenv_->PopLocalFrame(NULL);
+    return SFR_ERROR_BEGINSPLIT_EXCEPTION;
+  }
+
+  jenv_->PopLocalFrame(NULL);
+  return SFR_OK;
+}
+
+//////////////////////////////////////////////////////////////////////////////
+// 
+//////////////////////////////////////////////////////////////////////////////
+SFR_RetCode SequenceFileReader::fetchRowBatch(char*& batch, Int32& numRows)
+{
+  batch = NULL;
+  numRows = 0;
+
+  if (initJNIEnv() != JOI_OK)
+     return SFR_ERROR_FETCHBATCH_EXCEPTION;
+
+  // ByteBuffer fetchRowBatch();
+  tsRecentJMFromJNI = JavaMethods_[JM_FETCH_BATCH].jm_full_name;
+  jobject jresult = jenv_->CallObjectMethod(javaObj_, JavaMethods_[JM_FETCH_BATCH].methodID);
+
+  if (jenv_->ExceptionCheck())
+  {
+    getExceptionDetails();
+    logError(CAT_SQL_HDFS_SEQ_FILE_READER, __FILE__, __LINE__);
+    jenv_->PopLocalFrame(NULL);
+    return SFR_ERROR_FETCHBATCH_EXCEPTION;
+  }
+
+  if (jresult == NULL)
+  {
+    jstring jerror = getLastError();
+    if (jerror != NULL)
+    {
+      logError(CAT_SQL_HDFS_SEQ_FILE_READER, "SequenceFileReader::fetchRowBatch()", jerror);
+      jenv_->PopLocalFrame(NULL);
+      return SFR_ERROR_FETCHBATCH_EXCEPTION;
+    }
+    jenv_->PopLocalFrame(NULL);
+    return SFR_NOMORE;
+  }
+
+  // The buffer is a direct ByteBuffer owned by the Java reader, so it
+  // outlives the local reference released below.
+  batch = (char *)jenv_->GetDirectBufferAddress(jresult);
+  jenv_->PopLocalFrame(NULL);
+  if (batch == NULL)
+    return SFR_ERROR_FETCHBATCH_EXCEPTION;
+  numRows = *(Int32 *)batch;
+  return SFR_OK;
+}
+
 // ===========================================================================
 // ===== Class SequenceFileWriter
 // ===========================================================================
@@ -42,6 +42,8 @@ typedef enum {
  ,SFR_ERROR_ISEOF_EXCEPTION     // Java exception in isEOF()
  ,SFR_ERROR_FETCHROW_EXCEPTION  // Java exception in fetchNextRow()
  ,SFR_ERROR_CLOSE_EXCEPTION     // Java exception in close()
+ ,SFR_ERROR_BEGINSPLIT_EXCEPTION // Java exception in beginSplit()
+ ,SFR_ERROR_FETCHBATCH_EXCEPTION // Java exception in fetchRowBatch()
  ,SFR_LAST
 } SFR_RetCode;
 
@@ -99,6 +101,15 @@ public:
 
   SFR_RetCode    fetchRowsIntoBuffer(Int64 stopOffset, char* buffer, Int64 buffSize, Int64& bytesRead, char rowDelimiter);
 
+  // Position the reader at the split [startOffset, stopOffset), optionally
+  // reading the next batch ahead on a Java thread.
+  SFR_RetCode    beginSplit(Int64 startOffset, Int64 stopOffset, bool readAhead);
+
+  // Fetch the next batch of the split. 'batch' points to an Int32 row count
+  // followed by an Int32 length and the row bytes for each row, and stays
+  // valid until the next call. Returns SFR_NOMORE at the end of the split.
+  SFR_RetCode    fetchRowBatch(char*& batch, Int32& numRows);
+
   virtual char*  getErrorText(SFR_RetCode errEnum);
 
 protected:
@@ -121,6 +132,8 @@ private:
     JM_FETCHBUFF1,
     JM_FETCHBUFF2,
     JM_CLOSE,
+    JM_BEGIN_SPLIT,
+    JM_FETCH_BATCH,
     JM_LAST
   };
  
@@ -21,6 +21,14 @@ extern "C" {
 JNIEXPORT jint JNICALL Java_org_trafodion_sql_HTableClient_setResultInfo
   (JNIEnv *, jobject, jlong, jintArray, jintArray, jintArray, jintArray, jintArray, jintArray, jlongArray, jobjectArray, jobjectArray, jobjectArray, jobjectArray, jintArray, jint, jint);
 
+/*
+ * Class:     org_trafodion_sql_HTableClient
+ * Method:    setResultBuffer
+ * Signature: (JLjava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_org_trafodion_sql_HTableClient_setResultBuffer
+  (JNIEnv *, jobject, jlong, jobject, jint, jint);
+
 /*
  * Class:     org_trafodion_sql_HTableClient
  * Method:    cleanup
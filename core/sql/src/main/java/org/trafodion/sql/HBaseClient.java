@@ -862,7 +862,6 @@ public class HBaseClient {
              throws MasterNotRunningException, IOException {
             if (logger.isDebugEnabled()) logger.debug("HBaseClient.getRegionStats(" + tableName + ") called.");
 
-            Admin admin = getConnection().getAdmin();
             if (tableName == null) //tableName.isEmpty())
                 return getClusterStats();
 
@@ -870,7 +869,7 @@ public class HBaseClient {
             HRegionInfo hregInfo = null;
             byte[][] regionInfo = null;
             try {
-                TrafRegionStats rsc = new TrafRegionStats(htbl, admin);
+                TrafRegionStats rsc = new TrafRegionStats(htbl, getConnection());
                 
                 NavigableMap<HRegionInfo, ServerName> locations
                     = htbl.getRegionLocations();
@@ -886,6 +885,9 @@ public class HBaseClient {
                     String encodedRegionName = hregInfo.getEncodedName();
                     String ppRegionName = HRegionInfo.prettyPrint(encodedRegionName);
                     SizeInfo regionSizeInfo  = rsc.getRegionSizeInfo(regionName);
+                    // region not reported by any region server
+                    if (regionSizeInfo == null)
+                        continue;
                     String serverNameStr     = regionSizeInfo.serverName;
                     int  numStores           = regionSizeInfo.numStores;
                     int  numStoreFiles       = regionSizeInfo.numStoreFiles;
@@ -912,9 +914,11 @@ public class HBaseClient {
                 }
             }
             finally {
-                admin.close();
+                htbl.close();
             }
 
+            if (regionStatsEntries < regionInfo.length)
+                return Arrays.copyOf(regionInfo, regionStatsEntries);
             return regionInfo;
     }
 
@@ -1076,35 +1080,16 @@ public class HBaseClient {
       if (rowSize == 0)
         return 0;
 
-      Admin admin = getConnection().getAdmin();
-      HTable htbl = new HTable(config, tblName);
       long totalMemStoreBytes = 0;
       try {
-        // Get a set of all the regions for the table.
-        Set<HRegionInfo> tableRegionInfos = htbl.getRegionLocations().keySet();
-        Set tableRegions = new TreeSet(Bytes.BYTES_COMPARATOR);
-        for (HRegionInfo regionInfo : tableRegionInfos) {
-          tableRegions.add(regionInfo.getRegionName());
-        }
-     
-        // Get collection of all servers in the cluster.
-        ClusterStatus clusterStatus = admin.getClusterStatus();
-        Collection<ServerName> servers = clusterStatus.getServers();
-        final long bytesPerMeg = 1024L * 1024L;
-     
-        // For each server, look at each region it contains and see if 
-        // it is in the set of regions for the table. If so, add the
-        // size of its the running total.
-        for (ServerName serverName : servers) {
-          ServerLoad serverLoad = clusterStatus.getLoad(serverName);
-          for (RegionLoad regionLoad: serverLoad.getRegionsLoad().values()) {
-            byte[] regionId = regionLoad.getName();
-            if (tableRegions.contains(regionId)) {
-              long regionMemStoreBytes = bytesPerMeg * regionLoad.getMemStoreSizeMB();
-              if (logger.isDebugEnabled()) logger.debug("Region " + regionLoad.getNameAsString()
-                           + " has MemStore size " + regionMemStoreBytes);
-              totalMemStoreBytes += regionMemStoreBytes;
-            }
+        // The region loads of the table come from the region stats cache
+        // (see TrafRegionStats), so this does not go to the master.
+        List<SizeInfo> tableRegions = TrafRegionStats.getTableSizeInfo(getConnection(), tblName);
+        if (tableRegions != null) {
+          for (SizeInfo sizeInfo : tableRegions) {
+            if (logger.isDebugEnabled()) logger.debug("Region " + sizeInfo.regionName
+                         + " has MemStore size " + sizeInfo.memStoreSize);
+            totalMemStoreBytes += sizeInfo.memStoreSize;
           }
         }
       }
@@ -1114,9 +1099,6 @@ public class HBaseClient {
       catch (Throwable e) {
         if (logger.isDebugEnabled()) logger.debug("Throwable caught in estimateMemStoreRows: " + e);
       }
-      finally {
-        admin.close();
-      }
 
       // Divide the total MemStore size by the size of a single row.
       if (logger.isDebugEnabled()) logger.debug("Estimating " + (totalMemStoreBytes / rowSize)
@@ -29,6 +29,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Iterator;
 import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.PropertyConfigurator;
@@ -44,6 +48,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RegionLocator;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
@@ -110,6 +115,62 @@ public class HBulkLoadClient
   DataBlockEncoding dataBlockEncoding = DataBlockEncoding.NONE;
   FSDataOutputStream fsOut = null;
 
+  // Scratch arrays and per-column family/qualifier cache reused by addToHFile
+  byte[] rowIDBuf = null;
+  byte[] colNameBuf = null;
+  byte[] colValueBuf = null;
+  byte[][] cachedColNames = new byte[0][];
+  byte[][] cachedFamilies = new byte[0][];
+  byte[][] cachedQualifiers = new byte[0][];
+
+  // Counters for the HFile being written
+  long hFileCells = 0;
+  long hFileBytes = 0;
+  long hFileOpenTime = 0;
+  long hFileCloseTime = 0;
+
+  // Region-aware mode: one writer per target region, so that no HFile
+  // crosses a region boundary and LoadIncrementalHFiles never has to
+  // split. regionStartKeys is null when the mode is off or the table
+  // has a single region, and the single writer above is used instead.
+  static boolean envRegionAwareLoad;
+  static int envBulkLoadThreads;
+  static HTableClientExecutor writerExecutor = null;
+  byte[][] regionStartKeys = null;
+  RegionWriter[] regionWriters = null;
+  List<List<KeyValue>> regionBatches = null;
+
+  static class RegionWriter
+  {
+    final int regionNum;
+    HFile.Writer writer = null;
+    long bytes = 0;
+    long cells = 0;
+
+    RegionWriter(int regionNum)
+    {
+      this.regionNum = regionNum;
+    }
+
+    void append(List<KeyValue> kvs) throws IOException
+    {
+      for (KeyValue kv : kvs)
+        writer.append(kv);
+    }
+
+    void close() throws IOException
+    {
+      if (writer == null)
+        return;
+      writer.close();
+      if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.RegionWriter.close() region: " + regionNum
+                                               + " path: " + writer.getPath() + " cells: " + cells + " bytes: " + bytes);
+      writer = null;
+      bytes = 0;
+      cells = 0;
+    }
+  }
+
   public HBulkLoadClient() throws IOException
   {
     if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.HBulkLoadClient() called.");
@@ -159,6 +220,29 @@ public class HBulkLoadClient
     else 
       maxHFileSize = userMaxSize * 1024 *1024;  //maxSize is in MBs
 
+    regionStartKeys = null;
+    regionWriters = null;
+    regionBatches = null;
+    if (envRegionAwareLoad)
+    {
+      RegionLocator locator = connection_.getRegionLocator(TableName.valueOf(tblName));
+      byte[][] startKeys;
+      try {
+        startKeys = locator.getStartKeys();
+      } finally {
+        locator.close();
+      }
+      if (startKeys != null && startKeys.length > 1)
+      {
+        regionStartKeys = startKeys;
+        regionWriters = new RegionWriter[startKeys.length];
+        regionBatches = new ArrayList<List<KeyValue>>(startKeys.length);
+        for (int i = 0; i < startKeys.length; i++)
+          regionBatches.add(null);
+        if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.initHFileParams() writing one HFile per region, regions: " + startKeys.length);
+      }
+    }
+
     myHTable.close();
 
     if (sampleTblDDL.length() > 0)
@@ -172,16 +256,12 @@ public class HBulkLoadClient
 
     return true;
   }
-  public boolean doCreateHFile() throws IOException, URISyntaxException
+  private HFile.Writer createWriter(String fileName) throws IOException
   {
-    if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.doCreateHFile() called.");
-    
-    closeHFile();
-    
     if (fileSys == null)
      fileSys = FileSystem.get(config); 
 
-    Path hfilePath = new Path(new Path(hFileLocation ), hFileName + "_" +  System.currentTimeMillis());
+    Path hfilePath = new Path(new Path(hFileLocation ), fileName + "_" +  System.currentTimeMillis());
     hfilePath = hfilePath.makeQualified(hfilePath.toUri(), null);
 
     if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.createHFile Path: " + hfilePath);
@@ -193,17 +273,36 @@ public class HBulkLoadClient
                                  .build();
 
 
-    writer =    HFile.getWriterFactoryNoCache(config)
+    HFile.Writer hfileWriter = HFile.getWriterFactoryNoCache(config)
                      .withPath(fileSys, hfilePath)
                      .withFileContext(hfileContext)
                      .withComparator(KeyValue.COMPARATOR)
                      .create();
-    if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.createHFile Path: " + writer.getPath() + "Created");
+    if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.createHFile Path: " + hfileWriter.getPath() + "Created");
+    return hfileWriter;
+  }
+
+  public boolean doCreateHFile() throws IOException, URISyntaxException
+  {
+    if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.doCreateHFile() called.");
+    
+    closeHFile();
+    
+    // In region-aware mode the per-region files are opened on demand
+    if (regionStartKeys == null)
+      writer = createWriter(hFileName);
+    hFileCells = 0;
+    hFileBytes = 0;
+    hFileOpenTime = System.currentTimeMillis();
+    hFileCloseTime = 0;
     return true;
   }
   
   public boolean isNewFileNeeded() throws IOException
   {
+    if (regionStartKeys != null)
+      return (hFileOpenTime == 0 || hFileCloseTime != 0);
+
     if (writer == null)
       return true;
     
@@ -216,11 +315,138 @@ public class HBulkLoadClient
     return false;
   }
 
+  // Returns a scratch array of at least len bytes, reusing buf when it is
+  // big enough.
+  private static byte[] ensureCapacity(byte[] buf, int len)
+  {
+    if (buf == null || buf.length < len)
+      return new byte[Math.max(len, (buf == null) ? 64 : buf.length * 2)];
+    return buf;
+  }
+
+  // Splits the column name at colIndex into family and qualifier, reusing
+  // the arrays from the previous row when the name has not changed.
+  private void setColumn(int colIndex, byte[] colName, int colNameLen)
+  {
+    if (colIndex >= cachedColNames.length)
+    {
+      int newLen = Math.max(colIndex + 1, cachedColNames.length * 2);
+      cachedColNames = Arrays.copyOf(cachedColNames, newLen);
+      cachedFamilies = Arrays.copyOf(cachedFamilies, newLen);
+      cachedQualifiers = Arrays.copyOf(cachedQualifiers, newLen);
+    }
+    byte[] cached = cachedColNames[colIndex];
+    if (cached != null && Bytes.equals(cached, 0, cached.length, colName, 0, colNameLen))
+      return;
+    byte[] qc = Arrays.copyOf(colName, colNameLen);
+    cachedColNames[colIndex] = qc;
+    cachedFamilies[colIndex] = HTableClient.getFamily(qc);
+    cachedQualifiers[colIndex] = HTableClient.getName(qc);
+  }
+
+  // Index of the region whose key range holds the given row
+  private int findRegion(byte[] row, int offset, int length)
+  {
+    int low = 0;
+    int high = regionStartKeys.length - 1;
+    while (low < high)
+    {
+      int mid = (low + high + 1) >>> 1;
+      byte[] startKey = regionStartKeys[mid];
+      if (Bytes.compareTo(startKey, 0, startKey.length, row, offset, length) <= 0)
+        low = mid;
+      else
+        high = mid - 1;
+    }
+    return low;
+  }
+
+  // Appends the cells routed by addToHFile to their region writers. The
+  // writers are independent, so when more than one region received cells
+  // the appends run concurrently.
+  private void flushRegionBatches() throws IOException
+  {
+    List<RegionWriter> touched = new ArrayList<RegionWriter>();
+    for (int i = 0; i < regionBatches.size(); i++)
+    {
+      List<KeyValue> batch = regionBatches.get(i);
+      if (batch == null || batch.isEmpty())
+        continue;
+      RegionWriter rw = regionWriters[i];
+      if (rw == null)
+      {
+        rw = new RegionWriter(i);
+        regionWriters[i] = rw;
+      }
+      if (rw.writer != null && rw.bytes > maxHFileSize)
+        rw.close();
+      if (rw.writer == null)
+        rw.writer = createWriter(hFileName + "_r" + i);
+      for (KeyValue kv : batch)
+        rw.bytes += kv.getLength();
+      rw.cells += batch.size();
+      touched.add(rw);
+    }
+
+    try
+    {
+      if (touched.size() == 1)
+      {
+        RegionWriter rw = touched.get(0);
+        rw.append(regionBatches.get(rw.regionNum));
+      }
+      else
+      {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(touched.size());
+        for (final RegionWriter rw : touched)
+        {
+          final List<KeyValue> kvs = regionBatches.get(rw.regionNum);
+          futures.add(writerExecutor.submit(new Callable<Void>() {
+            public Void call() throws IOException {
+              rw.append(kvs);
+              return null;
+            }
+          }));
+        }
+        waitForAll(futures);
+      }
+    }
+    finally
+    {
+      for (RegionWriter rw : touched)
+        regionBatches.get(rw.regionNum).clear();
+    }
+  }
+
+  private static void waitForAll(List<Future<Void>> futures) throws IOException
+  {
+    IOException ioe = null;
+    for (Future<Void> future : futures)
+    {
+      try
+      {
+        future.get();
+      }
+      catch (ExecutionException e)
+      {
+        if (ioe == null)
+          ioe = (e.getCause() instanceof IOException) ? (IOException)e.getCause()
+                                                       : new IOException(e.getCause());
+      }
+      catch (InterruptedException e)
+      {
+        if (ioe == null)
+          ioe = new InterruptedIOException("HBulkLoadClient interrupted while writing HFiles");
+      }
+    }
+    if (ioe != null)
+      throw ioe;
+  }
+
   public boolean addToHFile(short rowIDLen, Object rowIDs,
                 Object rows) throws IOException, URISyntaxException
   {
      if (logger.isDebugEnabled()) logger.debug("Enter addToHFile() ");
-     Put put;
     if (isNewFileNeeded())
     {
       doCreateHFile();
@@ -229,14 +455,20 @@ public class HBulkLoadClient
      short numCols, numRows;
      short colNameLen;
      int colValueLen;
-     byte[] colName, colValue, rowID;
      short actRowIDLen;
+     byte[] rowIDArr, colValueArr;
+     int rowIDOffset, colValueOffset;
 
      bbRowIDs = (ByteBuffer)rowIDs;
      bbRows = (ByteBuffer)rows;
+     // Heap buffers are sliced in place; direct buffers are copied into
+     // scratch arrays that are kept for the life of this client.
+     boolean rowIDsHaveArray = bbRowIDs.hasArray();
+     boolean rowsHaveArray = bbRows.hasArray();
      numRows = bbRowIDs.getShort();
-     HTableClient htc = new HTableClient(HBaseClient.getConnection());
      long now = System.currentTimeMillis();
+     long cells = 0;
+     long bytes = 0;
      for (short rowNum = 0; rowNum < numRows; rowNum++) 
      {
         byte rowIDSuffix  = bbRowIDs.get();
@@ -244,40 +476,147 @@ public class HBulkLoadClient
            actRowIDLen = (short)(rowIDLen+1);
         else
            actRowIDLen = rowIDLen;
-        rowID = new byte[actRowIDLen];
-        bbRowIDs.get(rowID, 0, actRowIDLen);
+        if (rowIDsHaveArray)
+        {
+           rowIDArr = bbRowIDs.array();
+           rowIDOffset = bbRowIDs.arrayOffset() + bbRowIDs.position();
+           bbRowIDs.position(bbRowIDs.position() + actRowIDLen);
+        }
+        else
+        {
+           rowIDBuf = ensureCapacity(rowIDBuf, actRowIDLen);
+           bbRowIDs.get(rowIDBuf, 0, actRowIDLen);
+           rowIDArr = rowIDBuf;
+           rowIDOffset = 0;
+        }
+        List<KeyValue> regionBatch = null;
+        if (regionStartKeys != null)
+        {
+           int regionNum = findRegion(rowIDArr, rowIDOffset, actRowIDLen);
+           regionBatch = regionBatches.get(regionNum);
+           if (regionBatch == null)
+           {
+              regionBatch = new ArrayList<KeyValue>();
+              regionBatches.set(regionNum, regionBatch);
+           }
+        }
         numCols = bbRows.getShort();
         for (short colIndex = 0; colIndex < numCols; colIndex++)
         {
             colNameLen = bbRows.getShort();
-            colName = new byte[colNameLen];
-            bbRows.get(colName, 0, colNameLen);
+            colNameBuf = ensureCapacity(colNameBuf, colNameLen);
+            bbRows.get(colNameBuf, 0, colNameLen);
+            setColumn(colIndex, colNameBuf, colNameLen);
             colValueLen = bbRows.getInt();
-            colValue = new byte[colValueLen];
-            bbRows.get(colValue, 0, colValueLen);
-            KeyValue kv = new KeyValue(rowID,
-                                htc.getFamily(colName), 
-                                htc.getName(colName), 
-                                now,
-                                colValue);
-            writer.append(kv);
+            if (rowsHaveArray)
+            {
+               colValueArr = bbRows.array();
+               colValueOffset = bbRows.arrayOffset() + bbRows.position();
+               bbRows.position(bbRows.position() + colValueLen);
+            }
+            else
+            {
+               colValueBuf = ensureCapacity(colValueBuf, colValueLen);
+               bbRows.get(colValueBuf, 0, colValueLen);
+               colValueArr = colValueBuf;
+               colValueOffset = 0;
+            }
+            byte[] family = cachedFamilies[colIndex];
+            byte[] qualifier = cachedQualifiers[colIndex];
+            KeyValue kv = new KeyValue(rowIDArr, rowIDOffset, actRowIDLen,
+                                family, 0, family.length,
+                                qualifier, 0, qualifier.length,
+                                now, KeyValue.Type.Put,
+                                colValueArr, colValueOffset, colValueLen);
+            if (regionBatch != null)
+               regionBatch.add(kv);
+            else
+               writer.append(kv);
+            cells++;
+            bytes += kv.getLength();
         } 
     }
+    if (regionStartKeys != null)
+       flushRegionBatches();
+    hFileCells += cells;
+    hFileBytes += bytes;
     if (logger.isDebugEnabled()) logger.debug("End addToHFile() ");
        return true;
   }
 
+  public long getHFileCellCount()
+  {
+    return hFileCells;
+  }
+
+  public long getHFileBytes()
+  {
+    return hFileBytes;
+  }
+
+  // Throughput of the current (or last closed) HFile
+  public String getHFileStats()
+  {
+    long elapsedMillis = ((hFileCloseTime != 0) ? hFileCloseTime : System.currentTimeMillis()) - hFileOpenTime;
+    if (elapsedMillis <= 0)
+      elapsedMillis = 1;
+    String files;
+    if (regionStartKeys != null)
+      files = hFileName + "_r* (" + regionStartKeys.length + " regions)";
+    else
+      files = (writer == null) ? "none" : writer.getPath().toString();
+    return "HFile: " + files
+        + " cells: " + hFileCells
+        + " bytes: " + hFileBytes
+        + " elapsedMillis: " + elapsedMillis
+        + " cellsPerSec: " + (hFileCells * 1000 / elapsedMillis)
+        + " bytesPerSec: " + (hFileBytes * 1000 / elapsedMillis);
+  }
+
   public boolean closeHFile() throws IOException
   {
     if (logger.isDebugEnabled()) logger.debug("HBulkLoadClient.closeHFile() called." + ((writer == null) ? "NULL" : "NOT NULL"));
 
-    if (writer == null)
-      return false;
+    if (regionWriters != null)
+    {
+      if (! closeRegionWriters())
+        return false;
+    }
+    else
+    {
+      if (writer == null)
+        return false;
     
-    writer.close();
+      writer.close();
+    }
+    if (hFileCloseTime == 0)
+    {
+      hFileCloseTime = System.currentTimeMillis();
+      if (logger.isInfoEnabled()) logger.info("HBulkLoadClient.closeHFile() " + getHFileStats());
+    }
     return true;
   }
 
+  // Closes the open region writers concurrently, since each close flushes
+  // the last block and writes the file trailer.
+  private boolean closeRegionWriters() throws IOException
+  {
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (final RegionWriter rw : regionWriters)
+    {
+      if (rw == null || rw.writer == null)
+        continue;
+      futures.add(writerExecutor.submit(new Callable<Void>() {
+        public Void call() throws IOException {
+          rw.close();
+          return null;
+        }
+      }));
+    }
+    waitForAll(futures);
+    return (futures.size() > 0);
+  }
+
   private boolean createSnapshot( String tableName, String snapshotName)
       throws MasterNotRunningException, IOException, SnapshotCreationException, InterruptedException
   {
@@ -418,8 +757,12 @@ public class HBulkLoadClient
     LoadIncrementalHFiles loader = null;
     // The constructor below throws Exception, so it is caught
     // and thrown as IOException
+    // The region files are already split on region boundaries, so the
+    // loader only has to hand them out; let it load them in parallel.
+    Configuration loadConf = new Configuration(config);
+    loadConf.setInt("hbase.loadincremental.threads.max", envBulkLoadThreads);
     try {
-       loader = new LoadIncrementalHFiles(config);    
+       loader = new LoadIncrementalHFiles(loadConf);    
     }
     catch (Exception e) {
        throw new IOException(e);
@@ -469,11 +812,14 @@ public class HBulkLoadClient
   }
   
   public boolean release( ) throws IOException {
-    if (writer != null)
+    if (writer != null || regionWriters != null)
     {
-       writer.close();
+       closeHFile();
        writer = null;
     }
+    regionStartKeys = null;
+    regionWriters = null;
+    regionBatches = null;
     //  This is one place that is unconditionally closing the 
     // hdfsFs that's part of this thread's JNIenv.
     // if (fileSys !=null)
@@ -500,4 +846,19 @@ public class HBulkLoadClient
     }
     return true;
   }
+
+  static {
+    envRegionAwareLoad = true;
+    String regionAwareLoad = System.getenv("BULKLOAD_REGION_AWARE");
+    if (regionAwareLoad != null) {
+       int lv_regionAwareLoad = (Integer.parseInt(regionAwareLoad));
+       if (lv_regionAwareLoad == 0)
+          envRegionAwareLoad = false;
+    }
+    envBulkLoadThreads = 8;
+    String bulkLoadThreads = System.getenv("BULKLOAD_THREADS");
+    if (bulkLoadThreads != null)
+       envBulkLoadThreads = Integer.parseInt(bulkLoadThreads);
+    writerExecutor = new HTableClientExecutor("bulkload", envBulkLoadThreads, 4 * envBulkLoadThreads);
+  }
 }
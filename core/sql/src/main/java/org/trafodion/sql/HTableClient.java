@@ -25,16 +25,17 @@ import org.trafodion.sql.*;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.NavigableSet;
 
 import org.apache.commons.codec.binary.Hex;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -58,8 +59,11 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.client.coprocessor.AggregationClient;
 import org.apache.hadoop.hbase.client.transactional.RMInterface;
 import org.apache.hadoop.hbase.client.transactional.TransactionalAggregationClient;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.ScanPredicate;
+import org.apache.hadoop.hbase.coprocessor.transactional.generated.TrxRegionProtos.TransactionalAggregateSpec;
 import org.apache.hadoop.hbase.client.transactional.TransactionalTable;
 import org.apache.hadoop.hbase.client.transactional.TransactionState;
+import org.apache.hadoop.hbase.regionserver.transactional.TrxScanPushdown;
 
 import org.apache.log4j.Logger;
 
@@ -109,10 +113,11 @@ public class HTableClient {
 	private boolean useTRexScanner;
         private static boolean envUseTRex;
         private static boolean envUseTRexScanner;
+        private static boolean envUseScanPushdown;
 	private String tableName;
         private static Connection connection;
 	private ResultScanner scanner = null;
-        private ScanHelper scanHelper = null;
+        private ScanPrefetcher scanPrefetcher = null;
 	Result[] getResultSet = null;
 	String lastError;
         RMInterface table = null;
@@ -131,7 +136,34 @@ public class HTableClient {
 	int[] kvsPerRow = null;
         byte[][] kvFamArray = null;
         byte[][] kvQualArray = null;
-        static ExecutorService executorService = null;
+        // separate lanes so that async DML cannot starve scan prefetch
+        static HTableClientExecutor scanExecutor = null;
+        static HTableClientExecutor dmlExecutor = null;
+        private static boolean envUseDirectResultBuffer;
+        private static final int RESULT_BUFFER_INIT_SIZE = 256 * 1024;
+        private static final int RESULT_BUFFER_MAX_SIZE = 64 * 1024 * 1024;
+        private boolean useDirectResultBuffer = false;
+        private ByteBuffer resultBuffer = null;
+        private Result[] singleResult = null;
+        private static int envScanPrefetchDepth;
+        private static long envScanPrefetchMaxBytes;
+        // Adaptive scanner caching, see setScanCaching()
+        private static boolean envAdaptiveScanCaching;
+        private static long envScanTargetRpcBytes;
+        private static final int SCAN_MAX_CACHING = 5000;
+        private static final int SCAN_MAX_CACHING_GROWTH = 8;
+        private static final int ROW_SIZE_SAMPLE_BATCHES = 3;
+        private static final int ROW_SIZE_MAX_ENTRIES = 4096;
+        // average row size by table and projection, see scanStatsKey()
+        private static ConcurrentHashMap<String, Long> avgRowBytesByScan =
+            new ConcurrentHashMap<String, Long>();
+        private String scanStatsKey = null;
+        private int scanRequestedCaching = 0;
+        private int scanCaching = 0;
+        private long scanMaxResultSize = 0;
+        private int scanBatches = 0;
+        private long scanRows = 0;
+        private long scanBytes = 0;
         Future future = null;
 	boolean preFetch = false;
 	int fetchType = 0;
@@ -281,12 +313,6 @@ public class HTableClient {
            this.connection = connection;
         }
 
-	class ScanHelper implements Callable {
-            public Result[] call() throws IOException {
-                return scanner.next(numRowsCached);
-            }
-        }
-	 
 	static Logger logger = Logger.getLogger(HTableClient.class.getName());;
 
         static public  byte[] getFamily(byte[] qc) {
@@ -347,8 +373,9 @@ public class HTableClient {
 	         this.useTRexScanner = envUseTRexScanner;
 	    }
 	    table = new RMInterface(tblName, connection);
+	    useDirectResultBuffer = envUseDirectResultBuffer;
 	    if (logger.isDebugEnabled()) logger.debug("Exit HTableClient::init, useTRex: " + this.useTRex + ", useTRexScanner: "
-	              + this.useTRexScanner + ", table object: " + table);
+	              + this.useTRexScanner + ", useDirectResultBuffer: " + useDirectResultBuffer + ", table object: " + table);
 	    return true;
 	}
 
@@ -402,6 +429,31 @@ public class HTableClient {
     //      this is an important optimzation for IN statement on non null column
     // uses the columnToRemove parametter to know if we need to use the SingleColumnValue Exclude or not method to limit returned columns
     
+    // Only the MVCC transactional scanner evaluates a TrxScanPushdown
+    private boolean useScanPushdown(long transID, Scan scan) {
+        return envUseScanPushdown && useTRexScanner && transID != 0 && !scan.isRaw()
+            && table.getTransactionAlgorithm() == RMInterface.AlgorithmType.MVCC;
+    }
+
+    // The V2 predicate as a ScanPredicate, null if it has no such form
+    private static ScanPredicate toScanPredicate(Object[] colNamesToFilter,
+                                                 Object[] compareOpList,
+                                                 Object[] colValuesToCompare) {
+        byte[][] families = new byte[colNamesToFilter.length][];
+        byte[][] qualifiers = new byte[colNamesToFilter.length][];
+        for (int i = 0; i < colNamesToFilter.length; i++) {
+            families[i] = getFamily((byte[])colNamesToFilter[i]);
+            qualifiers[i] = getName((byte[])colNamesToFilter[i]);
+        }
+        String[] ops = new String[compareOpList.length - 1];
+        for (int i = 1; i < compareOpList.length; i++) // skip first one containing "V2" marker
+            ops[i - 1] = new String((byte[])compareOpList[i]);
+        byte[][] values = new byte[(colValuesToCompare == null) ? 0 : colValuesToCompare.length][];
+        for (int i = 0; i < values.length; i++)
+            values[i] = (byte[])colValuesToCompare[i];
+        return TrxScanPushdown.fromV2Predicate(families, qualifiers, ops, values);
+    }
+
     private Filter constructV2Filter(Object[] colNamesToFilter, 
                                  Object[] compareOpList, 
                                  Object[] colValuesToCompare,
@@ -841,7 +893,7 @@ public class HTableClient {
               scan.setCacheBlocks(false);
           
       scan.setSmall(smallScanner);
-	  scan.setCaching(numCacheRows);
+	  setScanCaching(scan, numCacheRows, smallScanner, columns);
 	  numRowsCached = numCacheRows;
 	  if (columns != null) {
 	    numColsInScan = columns.length;
@@ -852,7 +904,19 @@ public class HTableClient {
 	  }
 	  else
 	    numColsInScan = 0;
-	  if (colNamesToFilter != null) {
+	  ScanPredicate pushdownPredicate = null;
+	  if (colNamesToFilter != null && compareOpList != null && useScanPushdown(transID, scan)
+	      && new String((byte[])compareOpList[0]).equals("V2"))
+	    pushdownPredicate = toScanPredicate(colNamesToFilter, compareOpList, colValuesToCompare);
+	  if (pushdownPredicate != null) {
+	    // The region evaluates the predicate and leaves out the columns
+	    // added for it, no filters needed
+	    TrxScanPushdown.setPushdown(scan, pushdownPredicate, null);
+	    if (logger.isTraceEnabled()) logger.trace("Pushed down predicate:" + pushdownPredicate);
+	    if (samplePercent > 0.0f)
+	      scan.setFilter(new RandomRowFilter(samplePercent));
+	  }
+	  else if (colNamesToFilter != null) {
 	        FilterList list;
 	        boolean narrowDownResultColumns = false; //to check if we need a narrow down column filter (V2 only feature)
 	        if (compareOpList == null)return false;
@@ -1028,8 +1092,9 @@ public class HTableClient {
 	     preFetch = inPreFetch;
 	  if (preFetch)
 	  {
-	    scanHelper = new ScanHelper(); 
-            future = executorService.submit(scanHelper);
+	    scanPrefetcher = new ScanPrefetcher(scanner, numRowsCached, scanExecutor,
+	                                        envScanPrefetchDepth, envScanPrefetchMaxBytes);
+	    scanPrefetcher.start();
 	  }
           fetchType = SCAN_FETCH;
 	  if (logger.isTraceEnabled()) logger.trace("Exit startScan().");
@@ -1073,18 +1138,12 @@ public class HTableClient {
 
 	}
 
-	// The TransactionalTable class is missing the batch get operation,
-	// so work around it.
+	// The transactional batch get groups the rows by region and sends
+	// one request per region, in parallel when more than one is involved.
 	private Result[] batchGet(long transactionID, List<Get> gets)
 			throws IOException {
 		if (logger.isTraceEnabled()) logger.trace("Enter batchGet(multi-row) " + tableName);
-		Result [] results = new Result[gets.size()];
-		int i=0;
-		for (Get g : gets) {
-			Result r = table.get(transactionID, g);
-			results[i++] = r;
-		}
-		return results;
+		return table.get(transactionID, gets);
 	}
 
 	public int startGet(long transID, Object[] rows,
@@ -1196,27 +1255,111 @@ public class HTableClient {
 			Result[] result = null;
 			if (preFetch)
 			{
-				result = (Result[])future.get();
+				result = scanPrefetcher.next();
 				rowsReturned = pushRowsToJni(result);
-				future = null;
-				if ((rowsReturned <= 0 || rowsReturned < numRowsCached))
-					return rowsReturned;
-                                future = executorService.submit(scanHelper);
 			}
 			else
 			{
 				result = scanner.next(numRowsCached);
 				rowsReturned = pushRowsToJni(result);
 			}
+			updateScanStats(result);
 			return rowsReturned;
 		}
 	}
 
+	// The caching of a ClientScanner is fixed once the scanner is opened,
+	// so the payload of each RPC is bounded with the max result size and
+	// the caching is derived from the row size observed by earlier scans
+	// of the same table and columns. Tables with tiny rows get a larger
+	// caching than the compiler asked for, wide rows are cut by the max
+	// result size. The compiler sizes numCacheRows from the rows it expects,
+	// so the caching is never raised beyond SCAN_MAX_CACHING_GROWTH times
+	// that, which keeps LIMIT and other short scans from over-reading.
+	private void setScanCaching(Scan scan, int numCacheRows, boolean smallScanner,
+	                            Object[] columns)
+	{
+	    scanStatsKey = scanStatsKey(columns);
+	    scanRequestedCaching = numCacheRows;
+	    scanCaching = numCacheRows;
+	    scanMaxResultSize = 0;
+	    scanBatches = 0;
+	    scanRows = 0;
+	    scanBytes = 0;
+	    if (envAdaptiveScanCaching && ! smallScanner) {
+	        scanMaxResultSize = envScanTargetRpcBytes;
+	        scan.setMaxResultSize(scanMaxResultSize);
+	        Long avgRowBytes = avgRowBytesByScan.get(scanStatsKey);
+	        if (avgRowBytes != null && avgRowBytes.longValue() > 0) {
+	            long caching = envScanTargetRpcBytes / avgRowBytes.longValue();
+	            if (caching > (long)numCacheRows * SCAN_MAX_CACHING_GROWTH)
+	                caching = (long)numCacheRows * SCAN_MAX_CACHING_GROWTH;
+	            if (caching > SCAN_MAX_CACHING)
+	                caching = SCAN_MAX_CACHING;
+	            if (caching > scanCaching)
+	                scanCaching = (int)caching;
+	        }
+	    }
+	    scan.setCaching(scanCaching);
+	}
+
+	// Row sizes are only comparable between scans reading the same columns
+	private String scanStatsKey(Object[] columns)
+	{
+	    if (columns == null || columns.length == 0)
+	        return tableName + "/*";
+	    int hash = 1;
+	    for (int i = 0; i < columns.length; i++)
+	        hash = 31 * hash + Arrays.hashCode((byte[])columns[i]);
+	    return tableName + "/" + columns.length + "/" + hash;
+	}
+
+	private void updateScanStats(Result[] result)
+	{
+	    if (result == null || result.length == 0)
+	        return;
+	    scanBatches++;
+	    scanRows += result.length;
+	    scanBytes += ScanPrefetcher.resultSize(result);
+	    if (scanBatches == ROW_SIZE_SAMPLE_BATCHES)
+	        recordRowSize();
+	}
+
+	private void recordRowSize()
+	{
+	    if (scanRows == 0 || tableName == null || scanStatsKey == null)
+	        return;
+	    long avgRowBytes = scanBytes / scanRows;
+	    if (avgRowBytes == 0)
+	        avgRowBytes = 1;
+	    if (avgRowBytesByScan.size() >= ROW_SIZE_MAX_ENTRIES
+	        && ! avgRowBytesByScan.containsKey(scanStatsKey))
+	        avgRowBytesByScan.clear();
+	    avgRowBytesByScan.put(scanStatsKey, avgRowBytes);
+	}
+
+	private void logScanStats()
+	{
+	    if (scanBatches == 0)
+	        return;
+	    if (scanBatches < ROW_SIZE_SAMPLE_BATCHES)
+	        recordRowSize();
+	    if (logger.isDebugEnabled())
+	        logger.debug("Scan statistics for " + tableName
+	            + " batches: " + scanBatches + " rows: " + scanRows + " bytes: " + scanBytes
+	            + " avgRowBytes: " + (scanBytes / scanRows)
+	            + " requestedCaching: " + scanRequestedCaching + " caching: " + scanCaching
+	            + " maxResultSize: " + scanMaxResultSize);
+	    scanBatches = 0;
+	}
+
 	protected int pushRowsToJni(Result[] result) 
 			throws IOException {
 		if (result == null || result.length == 0)
 			return 0; 
 		int rowsReturned = result.length;
+		if (useDirectResultBuffer && pushRowsToJniBuffer(result, rowsReturned))
+			return rowsReturned;
 		int numTotalCells = 0;
 		if (numColsInScan == 0)
 		{
@@ -1301,6 +1444,16 @@ public class HTableClient {
 		int rowsReturned = 1;
 		int numTotalCells;
 
+		if (useDirectResultBuffer) {
+			if (singleResult == null)
+				singleResult = new Result[1];
+			singleResult[0] = result;
+			boolean pushed = pushRowsToJniBuffer(singleResult, rowsReturned);
+			singleResult[0] = null;
+			if (pushed)
+				return rowsReturned;
+		}
+
 		if (numColsInScan == 0)
 			numTotalCells = result.size();
 		else
@@ -1365,6 +1518,119 @@ public class HTableClient {
 		return rowsReturned;	
 	}		
 	
+	// Serializes the batch once into the reusable direct resultBuffer so that
+	// the native side reads every cell of the batch from one off-heap region
+	// instead of fetching each cell's byte[] through JNI. The layout is in
+	// native byte order and all offsets are relative to the start of the buffer:
+	//   int[rows]   kvsPerRow, rowIDOffset, rowIDLen
+	//   int[cells]  kvValLen, kvValOffset, kvQualLen, kvQualOffset,
+	//               kvFamLen, kvFamOffset
+	//   long[cells] timestamp (8 byte aligned)
+	//   row ids, families, qualifiers and values packed contiguously
+	// Returns false if the batch does not fit in RESULT_BUFFER_MAX_SIZE, in
+	// which case the caller falls back to setResultInfo with the cell arrays.
+	private boolean pushRowsToJniBuffer(Result[] result, int rowsReturned)
+			throws IOException {
+		int numCellsReturned = 0;
+		long dataLen = 0;
+		Cell[] kvList;
+		Cell kv;
+		byte[] rowID;
+
+		for (int rowNum = 0; rowNum < rowsReturned; rowNum++) {
+			rowID = result[rowNum].getRow();
+			if (rowID != null)
+				dataLen += rowID.length;
+			kvList = result[rowNum].rawCells();
+			if (kvList == null)
+				continue;
+			numCellsReturned += kvList.length;
+			for (int colNum = 0; colNum < kvList.length; colNum++) {
+				kv = kvList[colNum];
+				dataLen += kv.getFamilyLength() + kv.getQualifierLength()
+					+ kv.getValueLength();
+			}
+		}
+		int tsPos = ((3 * rowsReturned + 6 * numCellsReturned) * 4 + 7) & ~7;
+		long totalLen = tsPos + (8L * numCellsReturned) + dataLen;
+		if (totalLen > RESULT_BUFFER_MAX_SIZE) {
+			if (logger.isDebugEnabled()) logger.debug("pushRowsToJniBuffer() batch of " + totalLen
+				+ " bytes exceeds the result buffer limit, using cell arrays. Table: " + tableName);
+			return false;
+		}
+		if (resultBuffer == null || resultBuffer.capacity() < totalLen) {
+			int bufSize = (resultBuffer == null ? RESULT_BUFFER_INIT_SIZE : resultBuffer.capacity());
+			while (bufSize < totalLen)
+				bufSize *= 2;
+			if (bufSize > RESULT_BUFFER_MAX_SIZE)
+				bufSize = RESULT_BUFFER_MAX_SIZE;
+			resultBuffer = ByteBuffer.allocateDirect(bufSize).order(ByteOrder.nativeOrder());
+		}
+		resultBuffer.clear();
+
+		int kvsPerRowPos = 0;
+		int rowIDOffsetPos = kvsPerRowPos + 4 * rowsReturned;
+		int rowIDLenPos = rowIDOffsetPos + 4 * rowsReturned;
+		int valLenPos = rowIDLenPos + 4 * rowsReturned;
+		int valOffsetPos = valLenPos + 4 * numCellsReturned;
+		int qualLenPos = valOffsetPos + 4 * numCellsReturned;
+		int qualOffsetPos = qualLenPos + 4 * numCellsReturned;
+		int famLenPos = qualOffsetPos + 4 * numCellsReturned;
+		int famOffsetPos = famLenPos + 4 * numCellsReturned;
+		int dataPos = tsPos + 8 * numCellsReturned;
+		// Most rows carry a single column family, so a family that is
+		// identical to the previous cell's family is written only once
+		byte[] prevFamArray = null;
+		int prevFamOffset = 0;
+		int prevFamLen = -1;
+		int prevFamPos = 0;
+		int cellNum = 0;
+		int numColsReturned;
+		int famLen, qualLen, valLen;
+
+		resultBuffer.position(dataPos);
+		for (int rowNum = 0; rowNum < rowsReturned; rowNum++) {
+			rowID = result[rowNum].getRow();
+			kvList = result[rowNum].rawCells();
+			numColsReturned = (kvList == null ? 0 : kvList.length);
+			resultBuffer.putInt(kvsPerRowPos + 4 * rowNum, numColsReturned);
+			if (rowID == null) {
+				resultBuffer.putInt(rowIDOffsetPos + 4 * rowNum, 0);
+				resultBuffer.putInt(rowIDLenPos + 4 * rowNum, 0);
+			}
+			else {
+				resultBuffer.putInt(rowIDOffsetPos + 4 * rowNum, resultBuffer.position());
+				resultBuffer.putInt(rowIDLenPos + 4 * rowNum, rowID.length);
+				resultBuffer.put(rowID);
+			}
+			for (int colNum = 0; colNum < numColsReturned; colNum++, cellNum++) {
+				kv = kvList[colNum];
+				famLen = kv.getFamilyLength();
+				if (famLen != prevFamLen || ! Bytes.equals(prevFamArray, prevFamOffset, prevFamLen,
+						kv.getFamilyArray(), kv.getFamilyOffset(), famLen)) {
+					prevFamArray = kv.getFamilyArray();
+					prevFamOffset = kv.getFamilyOffset();
+					prevFamLen = famLen;
+					prevFamPos = resultBuffer.position();
+					resultBuffer.put(prevFamArray, prevFamOffset, famLen);
+				}
+				resultBuffer.putInt(famLenPos + 4 * cellNum, famLen);
+				resultBuffer.putInt(famOffsetPos + 4 * cellNum, prevFamPos);
+				qualLen = kv.getQualifierLength();
+				resultBuffer.putInt(qualLenPos + 4 * cellNum, qualLen);
+				resultBuffer.putInt(qualOffsetPos + 4 * cellNum, resultBuffer.position());
+				resultBuffer.put(kv.getQualifierArray(), kv.getQualifierOffset(), qualLen);
+				valLen = kv.getValueLength();
+				resultBuffer.putInt(valLenPos + 4 * cellNum, valLen);
+				resultBuffer.putInt(valOffsetPos + 4 * cellNum, resultBuffer.position());
+				resultBuffer.put(kv.getValueArray(), kv.getValueOffset(), valLen);
+				resultBuffer.putLong(tsPos + 8 * cellNum, kv.getTimestamp());
+			}
+		}
+		setResultBuffer(jniObject, resultBuffer, numCellsReturned, rowsReturned);
+		return true;
+	}
+
 	public boolean deleteRow(final long transID, byte[] rowID, 
 				 Object[] columns,
 				 long timestamp,
@@ -1387,7 +1653,7 @@ public class HTableClient {
                 }
             }
             if (asyncOperation) {
-                future = executorService.submit(new Callable() {
+                future = dmlExecutor.submit(new Callable() {
                         public Object call() throws IOException {
                             boolean res = true;
                             if (useTRex && (transID != 0)) {
@@ -1451,7 +1717,7 @@ public class HTableClient {
 			listOfDeletes.add(del);
 		}
                 if (asyncOperation) {
-                        future = executorService.submit(new Callable() {
+                        future = dmlExecutor.submit(new Callable() {
                                 public Object call() throws IOException {
                                     boolean res = true;
 				   if (useTRex && (transID != 0)) 
@@ -1563,7 +1829,7 @@ public class HTableClient {
 		final byte[] family1 = family;
 		final byte[] qualifier1 = qualifier;
 		if (asyncOperation) {
-                    future = executorService.submit(new Callable() {
+                    future = dmlExecutor.submit(new Callable() {
                             public Object call() throws IOException {
                                 boolean res = true;
                                 
@@ -1685,7 +1951,7 @@ public class HTableClient {
 			listOfPuts.add(put);
 		}
 		if (asyncOperation) {
-			future = executorService.submit(new Callable() {
+			future = dmlExecutor.submit(new Callable() {
 				public Object call() throws IOException {
 					boolean res = true;
 					if (useTRex && (transID != 0)) 
@@ -1758,16 +2024,17 @@ public class HTableClient {
 		      Scan scan = new Scan();
 		      scan.addFamily(colFamily);
 		      scan.setCacheBlocks(false);
-		      final ColumnInterpreter<Long, Long, EmptyMsg, LongMsg, LongMsg> ci =
-              new LongColumnInterpreter();
-		      byte[] tname = getTableName().getBytes();
               TransactionalTable lv_ttable = new TransactionalTable(getTableName(), connection);
               TransactionState ts = table.registerTransaction(lv_ttable, transID, startRowID);
 
-		      rowCount = aggregationClient.rowCount(transID, ts.getStartId(),
-                        org.apache.hadoop.hbase.TableName.valueOf(getTableName()),
-                        ci,
-                        scan);
+              // A single ungrouped COUNT(*)
+              List<TransactionalAggregateSpec> aggregates = Collections.singletonList(
+                        TransactionalAggregateSpec.newBuilder()
+                           .setType(TransactionalAggregateSpec.AggregateType.COUNT).build());
+              NavigableMap<byte[], Long[]> groups = aggregationClient.multiAggregate(transID, ts.getStartId(),
+                        lv_ttable, scan, aggregates, 0, null, null);
+              if (! groups.isEmpty())
+                 rowCount = groups.firstEntry().getValue()[0];
                     }
                     else {
 		      AggregationClient aggregationClient = 
@@ -1810,7 +2077,21 @@ public class HTableClient {
               }
               future = null;
           }
+	  if (scanPrefetcher != null) {
+	     try {
+	        if (! scanPrefetcher.close(30000)) {
+	           logger.error("Prefetch of scanner for " + tableName + " did not complete within the timeout");
+	           retcode = true;
+	        }
+	     } catch(InterruptedException e) {
+	        logger.error("Prefetch of scanner for " + tableName + " is interrupted, " + e);
+	        retcode = true;
+	     }
+	     if (logger.isDebugEnabled()) logger.debug("Scan prefetch statistics for " + tableName + " "
+	           + scanPrefetcher.getStats() + " " + scanExecutor.getStats());
+	  }
 	  if (scanner != null) {
+	  	logScanStats();
 	  	if (logger.isTraceEnabled()) logger.trace("scanner.close() " + tableName + " " + scanner + " " 
 	  			 + retcode );
 	    scanner.close();
@@ -1828,7 +2109,7 @@ public class HTableClient {
 	      cleanup(jniObject);
             tableName = null;
 	  }
-          scanHelper = null;
+          scanPrefetcher = null;
 	  jniObject = 0;
           table.close();
 	  return retcode;
@@ -1850,6 +2131,25 @@ public class HTableClient {
            return true;
 	}
 
+    public static String getExecutorStats()
+    {
+       return scanExecutor.getStats() + "; " + dmlExecutor.getStats();
+    }
+
+    public int getScanStallCount()
+    {
+       if (scanPrefetcher == null)
+          return 0;
+       return scanPrefetcher.getStallCount();
+    }
+
+    public long getScanStallTime()
+    {
+       if (scanPrefetcher == null)
+          return 0;
+       return scanPrefetcher.getStallTimeMillis();
+    }
+
     public byte[][] getStartKeys() throws IOException
     {
        return table.getStartKeys();
@@ -1894,6 +2194,11 @@ public class HTableClient {
 				int[] kvsPerRow, int numCellsReturned,
 				int rowsReturned);
 
+   private native int setResultBuffer(long jniObject,
+				ByteBuffer resultBuffer,
+				int numCellsReturned,
+				int rowsReturned);
+
    private native void cleanup(long jniObject);
 
    protected native int setJavaObject(long jniObject);
@@ -1913,7 +2218,49 @@ public class HTableClient {
         if (lv_useTransactionsScanner == 0) 
            envUseTRexScanner = false;
      }
-     executorService = Executors.newCachedThreadPool();
+     envUseDirectResultBuffer = true;
+     envUseScanPushdown = true;
+     String useScanPushdown = System.getenv("USE_TRANSACTIONS_SCAN_PUSHDOWN");
+     if (useScanPushdown != null) {
+        int lv_useScanPushdown = (Integer.parseInt(useScanPushdown));
+        if (lv_useScanPushdown == 0)
+           envUseScanPushdown = false;
+     }
+     String useDirectResultBuffer = System.getenv("USE_DIRECT_RESULT_BUFFER");
+     if (useDirectResultBuffer != null) {
+        int lv_useDirectResultBuffer = (Integer.parseInt(useDirectResultBuffer));
+        if (lv_useDirectResultBuffer == 0)
+           envUseDirectResultBuffer = false;
+     }
+     envScanPrefetchDepth = 2;
+     String scanPrefetchDepth = System.getenv("SCAN_PREFETCH_DEPTH");
+     if (scanPrefetchDepth != null)
+        envScanPrefetchDepth = Integer.parseInt(scanPrefetchDepth);
+     envScanPrefetchMaxBytes = 32 * 1024 * 1024;
+     String scanPrefetchMaxBytes = System.getenv("SCAN_PREFETCH_MAX_BYTES");
+     if (scanPrefetchMaxBytes != null)
+        envScanPrefetchMaxBytes = Long.parseLong(scanPrefetchMaxBytes);
+     envAdaptiveScanCaching = true;
+     String adaptiveScanCaching = System.getenv("ADAPTIVE_SCAN_CACHING");
+     if (adaptiveScanCaching != null) {
+        int lv_adaptiveScanCaching = (Integer.parseInt(adaptiveScanCaching));
+        if (lv_adaptiveScanCaching == 0)
+           envAdaptiveScanCaching = false;
+     }
+     envScanTargetRpcBytes = 2 * 1024 * 1024;
+     String scanTargetRpcBytes = System.getenv("SCAN_TARGET_RPC_BYTES");
+     if (scanTargetRpcBytes != null)
+        envScanTargetRpcBytes = Long.parseLong(scanTargetRpcBytes);
+     int scanPrefetchThreads = 32;
+     String scanPrefetchThreadsStr = System.getenv("SCAN_PREFETCH_THREADS");
+     if (scanPrefetchThreadsStr != null)
+        scanPrefetchThreads = Integer.parseInt(scanPrefetchThreadsStr);
+     int asyncDMLThreads = 16;
+     String asyncDMLThreadsStr = System.getenv("ASYNC_DML_THREADS");
+     if (asyncDMLThreadsStr != null)
+        asyncDMLThreads = Integer.parseInt(asyncDMLThreadsStr);
+     scanExecutor = new HTableClientExecutor("scan", scanPrefetchThreads, 4 * scanPrefetchThreads);
+     dmlExecutor = new HTableClientExecutor("dml", asyncDMLThreads, 4 * asyncDMLThreads);
      System.loadLibrary("executor");
    }
 }
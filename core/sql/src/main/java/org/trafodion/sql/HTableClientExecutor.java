@@ -0,0 +1,141 @@
+// @@@ START COPYRIGHT @@@
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+// @@@ END COPYRIGHT @@@
+
+package org.trafodion.sql;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded thread pool used by HTableClient for one kind of background
+ * work (scan prefetch or asynchronous DML), by HBulkLoadClient for
+ * concurrent HFile writes, and by TrafRegionStats to refresh its region
+ * stats cache. The number of threads and
+ * the number of queued tasks are capped; when both are exhausted the
+ * submitting thread runs the task itself, which throttles the producer
+ * instead of creating more threads. Tasks submitted after shutdown are
+ * run by the submitting thread as well. tryExecute() instead reports the
+ * rejection, for callers that must not run the task inline.
+ */
+public class HTableClientExecutor extends ThreadPoolExecutor {
+
+  static Logger logger = Logger.getLogger(HTableClientExecutor.class.getName());
+
+  private final String laneName;
+  private final AtomicLong tasksSubmitted = new AtomicLong(0);
+  private final AtomicLong callerRuns = new AtomicLong(0);
+  // Set while tryExecute submits, the rejection handler runs on that thread
+  private static final ThreadLocal<Boolean> rejectToCaller = new ThreadLocal<Boolean>();
+
+  static class LaneThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final AtomicInteger threadNum = new AtomicInteger(0);
+
+    LaneThreadFactory(String laneName) {
+      namePrefix = "HTableClient-" + laneName + "-";
+    }
+
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, namePrefix + threadNum.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+
+  // Runs rejected tasks on the submitting thread, also once the lane is
+  // shut down: callers such as the scan prefetcher wait for the task to
+  // complete, so dropping it would leave them blocked.
+  static class CallerRunsBackPressure implements RejectedExecutionHandler {
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+      if (rejectToCaller.get() != null)
+        throw new RejectedExecutionException("Lane " + ((HTableClientExecutor)executor).laneName + " is saturated");
+      ((HTableClientExecutor)executor).callerRuns.incrementAndGet();
+      r.run();
+    }
+  }
+
+  public HTableClientExecutor(String laneName, int numThreads, int queueSize) {
+    super(numThreads, numThreads, 60, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<Runnable>(queueSize),
+          new LaneThreadFactory(laneName),
+          new CallerRunsBackPressure());
+    this.laneName = laneName;
+    // Threads are created on demand and go away when the lane is idle
+    allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    tasksSubmitted.incrementAndGet();
+    super.execute(command);
+  }
+
+  /**
+   * Queues command like execute(), but returns false rather than running
+   * it on this thread when the lane is saturated or shut down.
+   */
+  public boolean tryExecute(Runnable command) {
+    rejectToCaller.set(Boolean.TRUE);
+    try {
+      execute(command);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    } finally {
+      rejectToCaller.remove();
+    }
+  }
+
+  public String getLaneName() {
+    return laneName;
+  }
+
+  public int getQueueDepth() {
+    return getQueue().size();
+  }
+
+  public long getTasksSubmitted() {
+    return tasksSubmitted.get();
+  }
+
+  public long getCallerRuns() {
+    return callerRuns.get();
+  }
+
+  public String getStats() {
+    return laneName + " activeThreads: " + getActiveCount()
+        + " poolSize: " + getPoolSize()
+        + " largestPoolSize: " + getLargestPoolSize()
+        + " maxThreads: " + getMaximumPoolSize()
+        + " queueDepth: " + getQueueDepth()
+        + " submitted: " + getTasksSubmitted()
+        + " completed: " + getCompletedTaskCount()
+        + " callerRuns: " + getCallerRuns();
+  }
+}
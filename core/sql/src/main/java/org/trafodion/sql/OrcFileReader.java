@@ -24,6 +24,7 @@ package org.trafodion.sql;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -33,6 +34,14 @@ import org.apache.hadoop.fs.Path;
 
 import org.apache.hadoop.hive.serde2.objectinspector.*;
 import org.apache.hadoop.hive.ql.io.orc.*;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgument;
+import org.apache.hadoop.hive.ql.io.sarg.SearchArgumentFactory;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 
 import org.apache.log4j.PropertyConfigurator;		 
 import org.apache.log4j.Logger;
@@ -79,6 +88,14 @@ public class OrcRowReturnSQL
 
     OrcRowReturnSQL		rowData;	//TEMP!!
 
+    // Batch mode, see openBatch() and fetchNextBatch()
+    static final int BATCH_BUFFER_INIT_SIZE = 1024 * 1024;
+    static final int BATCH_HAS_NULLS = 1;
+    int[]                       m_batchCols;
+    OrcProto.Type.Kind[]        m_batchKinds;
+    VectorizedRowBatch          m_batch;
+    ByteBuffer                  m_batchBuffer;
+
 
     OrcFileReader() {
 	rowData = new OrcRowReturnSQL();	//TEMP: was in fetch
@@ -100,6 +117,238 @@ public class OrcRowReturnSQL
 	return null;
     }
 
+//********************************************************************************
+// Batch mode. Rows are read through ORC's VectorizedRowBatch and handed
+// back column by column in a reusable direct buffer, in native byte order:
+//
+//   int numRows, int numCols
+//   per projected column, each section padded to 8 bytes:
+//     int colNum, int kind (OrcProto.Type.Kind), int dataLen, int flags
+//     byte null[numRows]                      if flags & BATCH_HAS_NULLS
+//     long or double value[numRows]           BOOLEAN..LONG, DATE, TIMESTAMP,
+//                                             FLOAT, DOUBLE
+//     int offset[numRows + 1], byte data[]    STRING, CHAR, VARCHAR, BINARY,
+//                                             DECIMAL (as text)
+//
+// Dates are days and timestamps nanoseconds since the epoch. dataLen is
+// the length of the value section(s) that follow the null bytes.
+//
+// pv_includeCols lists the 0-based columns to return (null for all).
+// pv_predCols/pv_predMin/pv_predMax describe range predicates; either end
+// may be null. They are given to ORC as a search argument so that stripes
+// and row groups whose min/max statistics cannot match are skipped. Rows
+// that are returned still have to be evaluated by the caller.
+    public String openBatch(String pv_file_name,
+                            int[] pv_includeCols,
+                            int[] pv_predCols,
+                            String[] pv_predMin,
+                            String[] pv_predMax) throws IOException {
+	m_file_path = new Path(pv_file_name);
+
+	m_reader = OrcFile.createReader(m_file_path, OrcFile.readerOptions(m_conf));
+	m_types = m_reader.getTypes();
+	m_oi = (StructObjectInspector) m_reader.getObjectInspector();
+	m_fields = m_oi.getAllStructFieldRefs();
+
+	OrcProto.Type lv_root = m_types.get(0);
+	int lv_numFields = lv_root.getSubtypesCount();
+	if (pv_includeCols == null) {
+	    pv_includeCols = new int[lv_numFields];
+	    for (int i = 0; i < lv_numFields; i++)
+		pv_includeCols[i] = i;
+	}
+
+	boolean[] lv_include = new boolean[m_types.size()];
+	lv_include[0] = true;
+	m_batchCols = pv_includeCols;
+	m_batchKinds = new OrcProto.Type.Kind[pv_includeCols.length];
+	for (int i = 0; i < pv_includeCols.length; i++) {
+	    int lv_col = pv_includeCols[i];
+	    if (lv_col < 0 || lv_col >= lv_numFields)
+		return "Invalid column number: " + lv_col + " provided.";
+	    int lv_typeId = lv_root.getSubtypes(lv_col);
+	    OrcProto.Type.Kind lv_kind = m_types.get(lv_typeId).getKind();
+	    switch (lv_kind) {
+	    case STRUCT:
+	    case LIST:
+	    case MAP:
+	    case UNION:
+		return "Column " + lv_col + " of type " + lv_kind + " is not supported in batch mode.";
+	    default:
+		break;
+	    }
+	    m_batchKinds[i] = lv_kind;
+	    lv_include[lv_typeId] = true;
+	}
+
+	m_options = new Reader.Options();
+	if (pv_predCols != null && pv_predCols.length > 0) {
+	    // Names are indexed by ORC type id, as the reader expects
+	    String[] lv_colNames = new String[m_types.size()];
+	    for (int i = 0; i < lv_numFields; i++)
+		lv_colNames[lv_root.getSubtypes(i)] = m_fields.get(i).getFieldName();
+	    SearchArgument.Builder lv_sarg = SearchArgumentFactory.newBuilder().startAnd();
+	    for (int i = 0; i < pv_predCols.length; i++) {
+		int lv_typeId = lv_root.getSubtypes(pv_predCols[i]);
+		OrcProto.Type.Kind lv_kind = m_types.get(lv_typeId).getKind();
+		String lv_name = lv_colNames[lv_typeId];
+		Object lv_min = sargLiteral(lv_kind, pv_predMin[i]);
+		Object lv_max = sargLiteral(lv_kind, pv_predMax[i]);
+		if (lv_min != null && lv_max != null)
+		    lv_sarg.between(lv_name, lv_min, lv_max);
+		else if (lv_max != null)
+		    lv_sarg.lessThanEquals(lv_name, lv_max);
+		else if (lv_min != null)
+		    lv_sarg.startNot().lessThan(lv_name, lv_min).end();
+		// The statistics of a predicate column are read even if the
+		// column itself is not returned
+		lv_include[lv_typeId] = true;
+	    }
+	    m_options.searchArgument(lv_sarg.end().build(), lv_colNames);
+	}
+	m_rr = m_reader.rowsOptions(m_options.include(lv_include));
+	m_batch = null;
+	if (m_batchBuffer == null) {
+	    m_batchBuffer = ByteBuffer.allocateDirect(BATCH_BUFFER_INIT_SIZE);
+	    m_batchBuffer.order(ByteOrder.nativeOrder());
+	}
+	return null;
+    }
+
+    // Converts a predicate bound to the literal type ORC compares the
+    // column statistics with.
+    static Object sargLiteral(OrcProto.Type.Kind pv_kind, String pv_value) {
+	if (pv_value == null)
+	    return null;
+	switch (pv_kind) {
+	case BYTE:
+	case SHORT:
+	case INT:
+	case LONG:
+	    return Long.valueOf(pv_value);
+	case FLOAT:
+	case DOUBLE:
+	    return Double.valueOf(pv_value);
+	case DECIMAL:
+	    return org.apache.hadoop.hive.common.type.HiveDecimal.create(pv_value);
+	case DATE:
+	    return java.sql.Date.valueOf(pv_value);
+	case TIMESTAMP:
+	    return java.sql.Timestamp.valueOf(pv_value);
+	default:
+	    return pv_value;
+	}
+    }
+
+    // Reads the next batch of rows into the batch buffer and returns it,
+    // or returns null at the end of the file.
+    public ByteBuffer fetchNextBatch() throws IOException {
+	if (! m_rr.hasNext())
+	    return null;
+	m_batch = m_rr.nextBatch(m_batch);
+	if (m_batch.size == 0)
+	    return null;
+	while (true) {
+	    try {
+		m_batchBuffer.clear();
+		encodeBatch(m_batch, m_batchBuffer);
+		return m_batchBuffer;
+	    } catch (BufferOverflowException e) {
+		ByteBuffer lv_buffer = ByteBuffer.allocateDirect(m_batchBuffer.capacity() * 2);
+		lv_buffer.order(ByteOrder.nativeOrder());
+		m_batchBuffer = lv_buffer;
+		if (logger.isDebugEnabled()) logger.debug("OrcFileReader.fetchNextBatch() batch buffer grown to " + lv_buffer.capacity());
+	    }
+	}
+    }
+
+    static void skip(ByteBuffer pv_buffer, int pv_len) {
+	if (pv_buffer.remaining() < pv_len)
+	    throw new BufferOverflowException();
+	pv_buffer.position(pv_buffer.position() + pv_len);
+    }
+
+    static void pad8(ByteBuffer pv_buffer) {
+	while ((pv_buffer.position() & 7) != 0)
+	    pv_buffer.put((byte)0);
+    }
+
+    void encodeBatch(VectorizedRowBatch pv_batch, ByteBuffer pv_buffer) {
+	int lv_numRows = pv_batch.size;
+	pv_buffer.putInt(lv_numRows);
+	pv_buffer.putInt(m_batchCols.length);
+	for (int c = 0; c < m_batchCols.length; c++) {
+	    ColumnVector lv_cv = pv_batch.cols[m_batchCols[c]];
+	    OrcProto.Type.Kind lv_kind = m_batchKinds[c];
+	    boolean lv_hasNulls = ! lv_cv.noNulls;
+	    pv_buffer.putInt(m_batchCols[c]);
+	    pv_buffer.putInt(lv_kind.getNumber());
+	    int lv_dataLenPos = pv_buffer.position();
+	    pv_buffer.putInt(0);
+	    pv_buffer.putInt(lv_hasNulls ? BATCH_HAS_NULLS : 0);
+	    if (lv_hasNulls) {
+		for (int r = 0; r < lv_numRows; r++) {
+		    int lv_row = rowIndex(pv_batch, lv_cv, r);
+		    pv_buffer.put(lv_cv.isNull[lv_row] ? (byte)1 : (byte)0);
+		}
+		pad8(pv_buffer);
+	    }
+	    int lv_dataStart = pv_buffer.position();
+	    if (lv_cv instanceof LongColumnVector) {
+		long[] lv_vector = ((LongColumnVector)lv_cv).vector;
+		for (int r = 0; r < lv_numRows; r++)
+		    pv_buffer.putLong(lv_vector[rowIndex(pv_batch, lv_cv, r)]);
+	    }
+	    else if (lv_cv instanceof DoubleColumnVector) {
+		double[] lv_vector = ((DoubleColumnVector)lv_cv).vector;
+		for (int r = 0; r < lv_numRows; r++)
+		    pv_buffer.putDouble(lv_vector[rowIndex(pv_batch, lv_cv, r)]);
+	    }
+	    else if (lv_cv instanceof BytesColumnVector) {
+		BytesColumnVector lv_bcv = (BytesColumnVector)lv_cv;
+		int lv_offsetPos = pv_buffer.position();
+		skip(pv_buffer, (4 * (lv_numRows + 1) + 7) & ~7);
+		int lv_offset = 0;
+		for (int r = 0; r < lv_numRows; r++) {
+		    int lv_row = rowIndex(pv_batch, lv_cv, r);
+		    pv_buffer.putInt(lv_offsetPos + 4 * r, lv_offset);
+		    if (lv_cv.noNulls || ! lv_cv.isNull[lv_row]) {
+			pv_buffer.put(lv_bcv.vector[lv_row], lv_bcv.start[lv_row], lv_bcv.length[lv_row]);
+			lv_offset += lv_bcv.length[lv_row];
+		    }
+		}
+		pv_buffer.putInt(lv_offsetPos + 4 * lv_numRows, lv_offset);
+		pad8(pv_buffer);
+	    }
+	    else if (lv_cv instanceof DecimalColumnVector) {
+		DecimalColumnVector lv_dcv = (DecimalColumnVector)lv_cv;
+		int lv_offsetPos = pv_buffer.position();
+		skip(pv_buffer, (4 * (lv_numRows + 1) + 7) & ~7);
+		int lv_offset = 0;
+		for (int r = 0; r < lv_numRows; r++) {
+		    int lv_row = rowIndex(pv_batch, lv_cv, r);
+		    pv_buffer.putInt(lv_offsetPos + 4 * r, lv_offset);
+		    if (lv_cv.noNulls || ! lv_cv.isNull[lv_row]) {
+			byte[] lv_val = lv_dcv.vector[lv_row].getHiveDecimal().toString().getBytes();
+			pv_buffer.put(lv_val);
+			lv_offset += lv_val.length;
+		    }
+		}
+		pv_buffer.putInt(lv_offsetPos + 4 * lv_numRows, lv_offset);
+		pad8(pv_buffer);
+	    }
+	    pv_buffer.putInt(lv_dataLenPos, pv_buffer.position() - lv_dataStart);
+	}
+	pv_buffer.flip();
+    }
+
+    // Maps the r'th returned row to its slot in the column vector
+    static int rowIndex(VectorizedRowBatch pv_batch, ColumnVector pv_cv, int r) {
+	if (pv_cv.isRepeating)
+	    return 0;
+	return pv_batch.selectedInUse ? pv_batch.selected[r] : r;
+    }
+
 //********************************************************************************
 /*
     public String open(String pv_file_name) throws IOException, FileNotFoundException {
@@ -131,6 +380,7 @@ public class OrcRowReturnSQL
 				m_reader = null;
 				m_rr = null; 
 				m_file_path = null;            
+				m_batch = null;
     return null;
 	}
 
@@ -0,0 +1,229 @@
+// @@@ START COPYRIGHT @@@
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+// @@@ END COPYRIGHT @@@
+
+package org.trafodion.sql;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Keeps up to prefetchDepth batches of rowsPerBatch rows, but no more
+ * than prefetchMaxBytes, fetched ahead of HTableClient.fetchRows(). Only
+ * one scanner.next() is outstanding at a time since ResultScanner is not
+ * thread safe; the fetch task resubmits itself while the queue is below
+ * its limits and is restarted by next() once the consumer drains it.
+ *
+ * A fetch is never run by the executor on the submitting thread. When the
+ * lane is saturated next() reads the batch from the scanner itself.
+ */
+class ScanPrefetcher implements Runnable {
+    private final ResultScanner scanner;
+    private final int rowsPerBatch;
+    private final HTableClientExecutor executor;
+    private final int prefetchDepth;
+    private final long prefetchMaxBytes;
+    private final ArrayDeque<Result[]> batches = new ArrayDeque<Result[]>();
+    private final ArrayDeque<Long> batchBytes = new ArrayDeque<Long>();
+    private long queuedBytes = 0;
+    private boolean running = false;
+    private boolean scanDone = false;
+    private boolean closed = false;
+    private IOException fetchException = null;
+    // statistics
+    private int batchesFetched = 0;
+    private long bytesFetched = 0;
+    private int maxQueuedBatches = 0;
+    private int stallCount = 0;
+    private long stallTimeNanos = 0;
+    private int directFetches = 0;
+
+    ScanPrefetcher(ResultScanner scanner, int rowsPerBatch, HTableClientExecutor executor,
+                   int depth, long maxBytes) {
+        this.scanner = scanner;
+        this.rowsPerBatch = rowsPerBatch;
+        this.executor = executor;
+        prefetchDepth = (depth < 1 ? 1 : depth);
+        prefetchMaxBytes = maxBytes;
+    }
+
+    synchronized void start() {
+        startFetch();
+    }
+
+    // must be called with the monitor held; running stays false if the
+    // lane rejected the task
+    private void startFetch() {
+        running = executor.tryExecute(this);
+    }
+
+    public void run() {
+        Result[] batch = null;
+        IOException ioe = null;
+        try {
+            batch = scanner.next(rowsPerBatch);
+        } catch (IOException e) {
+            ioe = e;
+        } catch (RuntimeException e) {
+            ioe = new IOException(e);
+        }
+        synchronized (this) {
+            addBatch(batch, ioe);
+            if (! scanDone && ! closed && batches.size() < prefetchDepth
+                   && queuedBytes < prefetchMaxBytes)
+                startFetch();
+            else
+                running = false;
+            notifyAll();
+        }
+    }
+
+    // must be called with the monitor held
+    private void addBatch(Result[] batch, IOException ioe) {
+        if (ioe != null) {
+            fetchException = ioe;
+            scanDone = true;
+        }
+        else if (batch == null || batch.length == 0)
+            scanDone = true;
+        else {
+            long bytes = resultSize(batch);
+            batches.addLast(batch);
+            batchBytes.addLast(bytes);
+            queuedBytes += bytes;
+            batchesFetched++;
+            bytesFetched += bytes;
+            if (batches.size() > maxQueuedBatches)
+                maxQueuedBatches = batches.size();
+            if (batch.length < rowsPerBatch)
+                scanDone = true;
+        }
+    }
+
+    // Reads the next batch on the calling thread. Must be called with the
+    // monitor held and no fetch running, so nothing else uses the scanner.
+    private void fetchDirect() {
+        Result[] batch = null;
+        IOException ioe = null;
+        try {
+            batch = scanner.next(rowsPerBatch);
+        } catch (IOException e) {
+            ioe = e;
+        } catch (RuntimeException e) {
+            ioe = new IOException(e);
+        }
+        directFetches++;
+        addBatch(batch, ioe);
+    }
+
+    // Returns the next batch, or null when the scan is exhausted
+    synchronized Result[] next() throws IOException, InterruptedException {
+        long stallStart = 0;
+        while (batches.isEmpty() && fetchException == null && ! (scanDone && ! running)) {
+            if (stallStart == 0)
+                stallStart = System.nanoTime();
+            if (! running) {
+                startFetch();
+                if (! running) {
+                    fetchDirect();
+                    continue;
+                }
+            }
+            wait();
+        }
+        if (stallStart != 0) {
+            stallCount++;
+            stallTimeNanos += System.nanoTime() - stallStart;
+        }
+        Result[] batch = batches.pollFirst();
+        if (batch == null) {
+            if (fetchException != null) {
+                IOException ioe = fetchException;
+                fetchException = null;
+                throw ioe;
+            }
+            return null;
+        }
+        queuedBytes -= batchBytes.pollFirst();
+        if (! running && ! scanDone && ! closed)
+            startFetch();
+        return batch;
+    }
+
+    // Stops further prefetching and waits for the outstanding
+    // scanner.next() so that the scanner can be closed safely.
+    // Returns false if the fetch did not complete within the timeout.
+    synchronized boolean close(long timeoutMillis) throws InterruptedException {
+        closed = true;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long waitTime;
+        while (running) {
+            waitTime = deadline - System.currentTimeMillis();
+            if (waitTime <= 0)
+                return false;
+            wait(waitTime);
+        }
+        batches.clear();
+        batchBytes.clear();
+        queuedBytes = 0;
+        return true;
+    }
+
+    synchronized int getStallCount() {
+        return stallCount;
+    }
+
+    synchronized long getStallTimeMillis() {
+        return stallTimeNanos / 1000000;
+    }
+
+    synchronized int getDirectFetches() {
+        return directFetches;
+    }
+
+    synchronized String getStats() {
+        return "depth: " + prefetchDepth + " maxBytes: " + prefetchMaxBytes
+            + " batches: " + batchesFetched + " bytes: " + bytesFetched
+            + " maxQueuedBatches: " + maxQueuedBatches
+            + " stalls: " + stallCount + " stallTime(ms): " + (stallTimeNanos / 1000000)
+            + " directFetches: " + directFetches;
+    }
+
+    static long resultSize(Result[] result) {
+        long size = 0;
+        Cell[] kvList;
+        for (int rowNum = 0; rowNum < result.length; rowNum++) {
+            kvList = result[rowNum].rawCells();
+            if (kvList == null)
+                continue;
+            for (int colNum = 0; colNum < kvList.length; colNum++) {
+                Cell kv = kvList[colNum];
+                size += kv.getRowLength() + kv.getFamilyLength()
+                    + kv.getQualifierLength() + kv.getValueLength() + Bytes.SIZEOF_LONG;
+            }
+        }
+        return size;
+    }
+}
@@ -25,16 +25,22 @@
 package org.trafodion.sql;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.PropertyConfigurator;
 import org.apache.hadoop.conf.Configuration;
 import org.trafodion.sql.TrafConfiguration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.ReflectionUtils;
 //import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
@@ -54,6 +60,24 @@ public class SequenceFileReader {
 //    LazySimpleSerDe serde = null;
   boolean isEOF = false;
   String lastError = null;  
+
+  // Split state for fetchRowBatch()
+  static int envBatchSize = 1024 * 1024;
+  long splitStop = 0;
+  boolean splitDone = true;
+  ByteBuffer batchBuf = null;
+  byte[] pendingRow = null;   // row read but not yet copied into a batch
+  int pendingLen = -1;
+
+  // Read-ahead state; the producer thread owns the reader while it runs
+  static final ByteBuffer END_OF_SPLIT = ByteBuffer.allocate(0);
+  Thread readAheadThread = null;
+  volatile boolean readAheadStop = false;
+  volatile Exception readAheadError = null;
+  ArrayBlockingQueue<ByteBuffer> freeBatches = null;
+  ArrayBlockingQueue<ByteBuffer> filledBatches = null;
+  ByteBuffer lastBatch = null;
+
   static { 
     String confFile = System.getProperty("trafodion.log4j.configFile");
     if (confFile == null) {
@@ -62,6 +86,9 @@ public class SequenceFileReader {
     }
     PropertyConfigurator.configure(confFile);
     conf = TrafConfiguration.create(TrafConfiguration.HDFS_CONF);
+    String batchSize = System.getenv("SEQFILE_BATCH_SIZE");
+    if (batchSize != null)
+      envBatchSize = Integer.parseInt(batchSize.trim());
   }
     
   /**
@@ -323,6 +350,206 @@ public class SequenceFileReader {
 		return newRow;
 	}
 	
+	/**
+	 * Position the reader at the first record of a split. Rows are then
+	 * returned by fetchRowBatch() until the split is exhausted, using the
+	 * same stop rule as fetchNextRow(long).
+	 * @param startOffset File offset at which the split begins.
+	 * @param stopOffset File offset at which to start looking for a sync marker.
+	 * @param readAhead Fill the next batch on a separate thread while the
+	 *        caller processes the current one.
+	 * @return null if OK, or error message.
+	 */
+	public String beginSplit(long startOffset, long stopOffset, boolean readAhead)
+                  throws IOException {
+
+		if (reader == null) {
+			return "open() was not called first.";
+		}
+
+		endReadAhead();
+		reader.sync(startOffset);
+		splitStop = stopOffset;
+		splitDone = false;
+		pendingLen = -1;
+
+		if (readAhead) {
+			freeBatches = new ArrayBlockingQueue<ByteBuffer>(2);
+			filledBatches = new ArrayBlockingQueue<ByteBuffer>(3);
+			freeBatches.add(allocateBatch(envBatchSize));
+			freeBatches.add(allocateBatch(envBatchSize));
+			readAheadStop = false;
+			readAheadError = null;
+			readAheadThread = new Thread(new Runnable() {
+				public void run() {
+					readAhead();
+				}
+			}, "SequenceFileReader-readahead");
+			readAheadThread.setDaemon(true);
+			readAheadThread.start();
+		}
+		return null;
+	}
+
+	/**
+	 * Fetch the next batch of rows of the split started by beginSplit().
+	 * The batch is a direct buffer in native byte order laid out as an int
+	 * row count followed by an int length and the row bytes for each row.
+	 * The buffer is reused, so it is only valid until the next call.
+	 * @return The batch, or null at the end of the split or on error.
+	 */
+	public ByteBuffer fetchRowBatch() throws IOException {
+
+		lastError = null;
+		if (reader == null) {
+			lastError = "open() was not called first.";
+			return null;
+		}
+
+		if (readAheadThread == null) {
+			if (batchBuf == null)
+				batchBuf = allocateBatch(envBatchSize);
+			ByteBuffer batch = fillBatch(batchBuf);
+			if (batch != null)
+				batchBuf = batch;
+			return batch;
+		}
+
+		ByteBuffer batch;
+		try {
+			if (lastBatch != null) {
+				freeBatches.put(lastBatch);
+				lastBatch = null;
+			}
+			batch = filledBatches.take();
+		} catch (InterruptedException ie) {
+			throw new IOException(ie);
+		}
+
+		if (batch == END_OF_SPLIT) {
+			Exception e = readAheadError;
+			endReadAhead();
+			splitDone = true;
+			if (e instanceof IOException)
+				throw (IOException)e;
+			if (e != null)
+				throw new IOException(e);
+			return null;
+		}
+		lastBatch = batch;
+		return batch;
+	}
+
+	/**
+	 * Body of the read-ahead thread: fill free buffers until the split is
+	 * done or the consumer asks to stop.
+	 */
+	private void readAhead() {
+		try {
+			while (!readAheadStop) {
+				ByteBuffer buf = freeBatches.poll(100, TimeUnit.MILLISECONDS);
+				if (buf == null)
+					continue;
+				ByteBuffer batch = fillBatch(buf);
+				if (batch == null)
+					break;
+				while (!readAheadStop &&
+				       !filledBatches.offer(batch, 100, TimeUnit.MILLISECONDS))
+					;
+			}
+		} catch (Exception e) {
+			readAheadError = e;
+		}
+		filledBatches.offer(END_OF_SPLIT);
+	}
+
+	/**
+	 * Stop the read-ahead thread, if any, and wait for it to let go of
+	 * the reader.
+	 */
+	private void endReadAhead() {
+		if (readAheadThread == null)
+			return;
+		readAheadStop = true;
+		try {
+			readAheadThread.join();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+		}
+		readAheadThread = null;
+		freeBatches = null;
+		filledBatches = null;
+		lastBatch = null;
+	}
+
+	private static ByteBuffer allocateBatch(int size) {
+		return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Copy rows of the current split into buf. A row that does not fit is
+	 * kept for the next batch; a single row larger than the buffer makes
+	 * the buffer grow.
+	 * @return The filled buffer, which may be a larger replacement for buf,
+	 *         or null if the split has no more rows.
+	 */
+	private ByteBuffer fillBatch(ByteBuffer buf) throws IOException {
+
+		buf.clear();
+		buf.putInt(0);
+		int numRows = 0;
+		while (true) {
+			if (pendingLen < 0) {
+				if (splitDone)
+					break;
+				long startingPosition = reader.getPosition();
+				if (!reader.next(key, row)) {
+					isEOF = true;
+					splitDone = true;
+					break;
+				}
+				// Same rule as fetchNextRow(long): past stopOffset and past
+				// a sync marker means the row belongs to the next split.
+				if ((startingPosition > splitStop) && reader.syncSeen()) {
+					splitDone = true;
+					break;
+				}
+				setPendingRow();
+			}
+			if (buf.remaining() < 4 + pendingLen) {
+				if (numRows > 0)
+					break;
+				buf = allocateBatch(Math.max(buf.capacity() * 2, 8 + pendingLen));
+				buf.putInt(0);
+			}
+			buf.putInt(pendingLen);
+			buf.put(pendingRow, 0, pendingLen);
+			numRows++;
+			pendingLen = -1;
+		}
+
+		if (numRows == 0)
+			return null;
+		buf.putInt(0, numRows);
+		buf.flip();
+		return buf;
+	}
+
+	private void setPendingRow() throws IOException {
+		if (row instanceof Text) {
+			pendingRow = ((Text)row).getBytes();
+			pendingLen = ((Text)row).getLength();
+		}
+		else if (row instanceof BytesWritable) {
+			pendingRow = ((BytesWritable)row).getBytes();
+			pendingLen = ((BytesWritable)row).getLength();
+		}
+		else {
+			pendingRow = row.toString().getBytes("UTF-8");
+			pendingLen = pendingRow.length;
+		}
+	}
+
 	/**
 	 * Close the reader.
 	 */
@@ -334,6 +561,7 @@ public class SequenceFileReader {
 			return null;
 		}
 
+      endReadAhead();
       IOUtils.closeStream(reader);            
     
     return null;
@@ -35,42 +35,29 @@ import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.Connection;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import java.lang.Byte;
 
-class SizeInfo {
-    String serverName;
-    String regionName;
-    String tableName;
-    int  numStores;
-    int  numStoreFiles;
-    Long storeUncompSize;
-    Long storeFileSize;
-    Long memStoreSize;
-    Long readRequestsCount;
-    Long writeRequestsCount;
-};
-
 public class TrafRegionStats {
 
-    private Admin hbAdmin;
-    private ClusterStatus clusterStatus;
-    private Collection<ServerName> servers;
-    private ServerName server;
-    private ServerLoad serverLoad;
-    private Iterator iterServer;
-    private Iterator iterRegion;
-    private boolean firstTime;
-    final long megaByte = 1024L * 1024L;
+    static final Log LOG = LogFactory.getLog(TrafRegionStats.class);
+
+    private Connection connection;
+    private Iterator<SizeInfo> iterRegion;
+    static final long megaByte = 1024L * 1024L;
 
 
     private final Map<byte[], SizeInfo> sizeInfoMap = 
@@ -79,6 +66,42 @@ public class TrafRegionStats {
     private SizeInfo currRegionSizeInfo = null;
 
     static final String ENABLE_REGIONSIZECALCULATOR = "hbase.regionsizecalculator.enable";
+
+    /**
+     * The region loads of the whole cluster as of loadTime, indexed by
+     * region name and by table name. A snapshot is never modified once
+     * published, so readers need no locking.
+     */
+    static class Snapshot {
+        final long loadTime = System.currentTimeMillis();
+        final Map<byte[], SizeInfo> byRegion =
+            new TreeMap<byte[], SizeInfo>(Bytes.BYTES_COMPARATOR);
+        final Map<String, List<SizeInfo>> byTable = new HashMap<String, List<SizeInfo>>();
+        final List<SizeInfo> all = new ArrayList<SizeInfo>();
+    }
+
+    // Process-wide cache of the cluster region loads. A lookup that finds
+    // the snapshot older than cacheTTL still uses it, and starts a refresh
+    // in the background so that the next lookup sees new figures.
+    // REGION_STATS_CACHE_TTL is in seconds; 0 disables the cache.
+    static long cacheTTL = 60 * 1000L;
+    // A region missing from a snapshot younger than this is not reloaded
+    // for: an offline region or a stale split would otherwise cost a
+    // cluster status load per lookup. REGION_STATS_MISS_REFRESH is in
+    // seconds.
+    static long missRefreshInterval = 10 * 1000L;
+    private static volatile Snapshot cachedSnapshot = null;
+    private static final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private static HTableClientExecutor refreshExecutor = null;
+
+    static {
+        String ttl = System.getenv("REGION_STATS_CACHE_TTL");
+        if (ttl != null)
+            cacheTTL = Long.parseLong(ttl.trim()) * 1000L;
+        String missRefresh = System.getenv("REGION_STATS_MISS_REFRESH");
+        if (missRefresh != null)
+            missRefreshInterval = Long.parseLong(missRefresh.trim()) * 1000L;
+    }
     
     boolean enabled(Configuration configuration) {
         return configuration.getBoolean(ENABLE_REGIONSIZECALCULATOR, true);
@@ -98,7 +121,7 @@ public class TrafRegionStats {
 
     
 
-    public TrafRegionStats (HTable table, Admin admin) throws IOException {
+    public TrafRegionStats (HTable table, Connection connection) throws IOException {
         
             if (!enabled(table.getConfiguration())) {
                 System.out.println("Region size calculation disabled.");
@@ -107,122 +130,161 @@ public class TrafRegionStats {
             
             //get regions for table
             Set<HRegionInfo> tableRegionInfos = table.getRegionLocations().keySet();
-            Set<byte[]> tableRegions = new TreeSet<byte[]>(Bytes.BYTES_COMPARATOR);
+            Snapshot snapshot = getSnapshot(connection);
+            boolean refreshed = false;
             for (HRegionInfo regionInfo : tableRegionInfos) {
-                tableRegions.add(regionInfo.getRegionName());
-            }
-            
-            ClusterStatus clusterStatus = admin.getClusterStatus();
-            Collection<ServerName> servers = clusterStatus.getServers();
-            final long megaByte = 1024L * 1024L;
-            
-            //iterate all cluster regions, filter regions from our table and compute their size
-            for (ServerName serverName: servers) {
-                ServerLoad serverLoad = clusterStatus.getLoad(serverName);
-
-                for (RegionLoad regionLoad: serverLoad.getRegionsLoad().values()) {
-                    byte[] regionId = regionLoad.getName();
-                    
-                    if (tableRegions.contains(regionId)) {
-                       
-                        int  numStores = regionLoad.getStores();
-                        int  numStoreFiles = regionLoad.getStorefiles();
-                        Long storeUncompSizeBytes = regionLoad.getStoreUncompressedSizeMB() * megaByte;
-                        Long storeFileSizeBytes = regionLoad.getStorefileSizeMB() * megaByte;
-                        Long memStoreSizeBytes = regionLoad.getMemStoreSizeMB() * megaByte;
-
-                        // this method is available in HBase 2.0.0
-                        //                        Long lastMajorCompactionTs = regionLoad.getLastMajorCompactionTs();
-
-                        byte[][] regNameParts = HRegionInfo.parseRegionName(regionLoad.getName());
-
-                        SizeInfo sizeInfo = new SizeInfo();
-                        sizeInfo.serverName = serverName.toShortString();
-                        sizeInfo.regionName = new String(regNameParts[2]); 
-                        sizeInfo.tableName = new String(regNameParts[0]);
-                        sizeInfo.numStores = numStores;
-                        sizeInfo.numStoreFiles = numStoreFiles;
-                        sizeInfo.storeUncompSize = storeUncompSizeBytes;
-                        sizeInfo.storeFileSize = storeFileSizeBytes;
-                        sizeInfo.memStoreSize = memStoreSizeBytes;
-
-                        sizeInfo.readRequestsCount = regionLoad.getReadRequestsCount();
-                        sizeInfo.writeRequestsCount = regionLoad.getWriteRequestsCount();
-
-                        sizeInfoMap.put(regionId, sizeInfo);
-                        
-                     }
+                byte[] regionId = regionInfo.getRegionName();
+                SizeInfo sizeInfo = snapshot.byRegion.get(regionId);
+                // A region created by a split or a move after the snapshot
+                // was taken; reload once rather than report no size.
+                if (sizeInfo == null && !refreshed) {
+                    snapshot = refreshForMiss(connection, snapshot);
+                    refreshed = true;
+                    sizeInfo = snapshot.byRegion.get(regionId);
                 }
+                if (sizeInfo != null)
+                    sizeInfoMap.put(regionId, sizeInfo);
             }
             
     }
 
 
     public TrafRegionStats (Connection connection) throws IOException {
-        hbAdmin = connection.getAdmin();
+        this.connection = connection;
     }
 
-    public boolean Open () throws IOException {
-        clusterStatus = hbAdmin.getClusterStatus();
-        servers = clusterStatus.getServers();
-        iterServer = servers.iterator();
+    /**
+     * Returns the cached region loads of the table, or null if the
+     * snapshot has no region of the table.
+     */
+    public static List<SizeInfo> getTableSizeInfo(Connection connection, String tableName)
+             throws IOException {
+        return getSnapshot(connection).byTable.get(tableName);
+    }
 
-        firstTime = true;
+    static Snapshot getSnapshot(Connection connection) throws IOException {
+        if (cacheTTL <= 0)
+            return loadSnapshot(connection);
 
-        return true;
+        Snapshot snapshot = cachedSnapshot;
+        if (snapshot == null)
+            return refreshSnapshot(connection, null);
+
+        if (System.currentTimeMillis() - snapshot.loadTime > cacheTTL)
+            startRefresh(connection, snapshot);
+        return snapshot;
     }
 
-    public boolean GetNextServer () throws IOException {
-        
-        if (! iterServer.hasNext())
-            return false;
-        
-        server = (ServerName)iterServer.next();
-        serverLoad = clusterStatus.getLoad(server);
+    /**
+     * Reload the snapshot in response to a region missing from stale,
+     * unless stale is younger than missRefreshInterval.
+     */
+    static Snapshot refreshForMiss(Connection connection, Snapshot stale) throws IOException {
+        if (System.currentTimeMillis() - stale.loadTime < missRefreshInterval)
+            return stale;
+        return refreshSnapshot(connection, stale);
+    }
 
-        return true;
+    /**
+     * Load a snapshot to replace stale, null if there is none yet. A
+     * caller that waited for another one's load gets that snapshot.
+     */
+    static synchronized Snapshot refreshSnapshot(Connection connection, Snapshot stale)
+             throws IOException {
+        Snapshot current = cachedSnapshot;
+        if (current != null && current != stale)
+            return current;
+        Snapshot snapshot = loadSnapshot(connection);
+        if (cacheTTL > 0)
+            cachedSnapshot = snapshot;
+        return snapshot;
     }
 
-    public boolean GetNextRegion () throws IOException {
-        
-        if ((firstTime) || (! iterRegion.hasNext())) {
-            firstTime = false;
-            if (! GetNextServer())
-                return false;
-            else
-              iterRegion = serverLoad.getRegionsLoad().values().iterator();  
+    private static void startRefresh(final Connection connection, final Snapshot stale) {
+        if (! refreshing.compareAndSet(false, true))
+            return;
+        synchronized (TrafRegionStats.class) {
+            if (refreshExecutor == null)
+                refreshExecutor = new HTableClientExecutor("regionstats", 1, 1);
         }
+        refreshExecutor.execute(new Runnable() {
+            public void run() {
+                try {
+                    refreshSnapshot(connection, stale);
+                }
+                catch (Exception e) {
+                    LOG.warn("Refresh of the region stats cache failed", e);
+                }
+                finally {
+                    refreshing.set(false);
+                }
+            }
+        });
+    }
 
-        RegionLoad regionLoad = (RegionLoad)iterRegion.next();
+    private static Snapshot loadSnapshot(Connection connection) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        Admin admin = connection.getAdmin();
+        try {
+            ClusterStatus clusterStatus = admin.getClusterStatus();
+            for (ServerName serverName : clusterStatus.getServers()) {
+                ServerLoad serverLoad = clusterStatus.getLoad(serverName);
+                String serverNameStr = serverName.toShortString();
 
-        byte[] regionId = regionLoad.getName();
-        
-        int  numStores = regionLoad.getStores();
-        int  numStoreFiles = regionLoad.getStorefiles();
-        Long storeUncompSizeBytes = regionLoad.getStoreUncompressedSizeMB() * megaByte;
-        Long storeFileSizeBytes = regionLoad.getStorefileSizeMB() * megaByte;
-        Long memStoreSizeBytes = regionLoad.getMemStoreSizeMB() * megaByte;
-        
+                for (RegionLoad regionLoad: serverLoad.getRegionsLoad().values()) {
+                    SizeInfo sizeInfo = makeSizeInfo(serverNameStr, regionLoad);
+                    snapshot.byRegion.put(regionLoad.getName(), sizeInfo);
+                    snapshot.all.add(sizeInfo);
+                    List<SizeInfo> tableRegions = snapshot.byTable.get(sizeInfo.tableName);
+                    if (tableRegions == null) {
+                        tableRegions = new ArrayList<SizeInfo>();
+                        snapshot.byTable.put(sizeInfo.tableName, tableRegions);
+                    }
+                    tableRegions.add(sizeInfo);
+                }
+            }
+        }
+        finally {
+            admin.close();
+        }
+        if (LOG.isDebugEnabled()) LOG.debug("Loaded region stats for " + snapshot.all.size()
+                     + " regions of " + snapshot.byTable.size() + " tables");
+        return snapshot;
+    }
+
+    private static SizeInfo makeSizeInfo(String serverName, RegionLoad regionLoad) throws IOException {
         // this method is available in HBase 2.0.0
         // Long lastMajorCompactionTs = regionLoad.getLastMajorCompactionTs();
-        
+
         byte[][] regNameParts = HRegionInfo.parseRegionName(regionLoad.getName());
 
-        currRegionSizeInfo = new SizeInfo();
+        SizeInfo sizeInfo = new SizeInfo();
+        sizeInfo.serverName = serverName;
+        sizeInfo.regionName = new String(regNameParts[2]);
+        sizeInfo.tableName = new String(regNameParts[0]);
+        sizeInfo.numStores = regionLoad.getStores();
+        sizeInfo.numStoreFiles = regionLoad.getStorefiles();
+        sizeInfo.storeUncompSize = regionLoad.getStoreUncompressedSizeMB() * megaByte;
+        sizeInfo.storeFileSize = regionLoad.getStorefileSizeMB() * megaByte;
+        sizeInfo.memStoreSize = regionLoad.getMemStoreSizeMB() * megaByte;
+
+        sizeInfo.readRequestsCount = regionLoad.getReadRequestsCount();
+        sizeInfo.writeRequestsCount = regionLoad.getWriteRequestsCount();
+        return sizeInfo;
+    }
+
+    public boolean Open () throws IOException {
+        iterRegion = getSnapshot(connection).all.iterator();
 
-        currRegionSizeInfo.serverName = new String(server.toShortString());
-        currRegionSizeInfo.regionName = new String(regNameParts[2]);
+        return true;
+    }
 
-  
-        currRegionSizeInfo.tableName = new String(regNameParts[0]);
-        currRegionSizeInfo.numStores = numStores;
-        currRegionSizeInfo.numStoreFiles = numStoreFiles;
-        currRegionSizeInfo.storeUncompSize = storeUncompSizeBytes;
-        currRegionSizeInfo.storeFileSize = storeFileSizeBytes;
-        currRegionSizeInfo.memStoreSize = memStoreSizeBytes;
+    public boolean GetNextRegion () throws IOException {
         
-        currRegionSizeInfo.readRequestsCount = regionLoad.getReadRequestsCount();
-        currRegionSizeInfo.writeRequestsCount = regionLoad.getWriteRequestsCount();
+        if (! iterRegion.hasNext())
+            return false;
+
+        currRegionSizeInfo = iterRegion.next();
 
         return true;
     }
@@ -233,10 +295,9 @@ public class TrafRegionStats {
     
     public boolean Close () throws IOException {
         
-        hbAdmin.close();
+        iterRegion = null;
 
         return true;
     }
 
 }
-
@@ -0,0 +1,157 @@
+// @@@ START COPYRIGHT @@@
+//
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+//
+// @@@ END COPYRIGHT @@@
+
+package org.trafodion.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * ScanPrefetcher on an idle lane and on one whose threads and queue are
+ * all taken, where it reads batches on the consumer thread.
+ */
+public class TestScanPrefetcher {
+
+  private static final byte[] FAMILY = Bytes.toBytes("#1");
+  private static final byte[] QUALIFIER = Bytes.toBytes("1");
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private HTableClientExecutor lane;
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    if (lane != null)
+      lane.shutdownNow();
+  }
+
+  // A scanner over rows 0 .. rows - 1 that fails on its failAt-th call
+  private static ResultScanner scanner(final int rows, final int failAt) {
+    return (ResultScanner)Proxy.newProxyInstance(
+        ResultScanner.class.getClassLoader(), new Class<?>[] { ResultScanner.class },
+        new InvocationHandler() {
+          private int next = 0;
+          private int calls = 0;
+
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close"))
+              return null;
+            if (! method.getName().equals("next") || args == null || args.length != 1)
+              throw new UnsupportedOperationException(method.getName());
+            if (++calls == failAt)
+              throw new IOException("scanner failed");
+            int n = Math.min((Integer)args[0], rows - next);
+            Result[] batch = new Result[n];
+            for (int i = 0; i < n; i++, next++) {
+              List<Cell> cells = new ArrayList<Cell>();
+              cells.add(new KeyValue(Bytes.toBytes(next), FAMILY, QUALIFIER, Bytes.toBytes(next)));
+              batch[i] = Result.create(cells);
+            }
+            return batch;
+          }
+        });
+  }
+
+  // Takes every thread and queue slot of the lane until tearDown
+  private void saturate(int threads, int queueSize) throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(threads);
+    Runnable blocker = new Runnable() {
+      public void run() {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+        }
+      }
+    };
+    for (int i = 0; i < threads + queueSize; i++)
+      lane.execute(blocker);
+    started.await();
+    assertEquals(queueSize, lane.getQueueDepth());
+  }
+
+  private static int drain(ScanPrefetcher prefetcher) throws Exception {
+    int expected = 0;
+    Result[] batch;
+    while ((batch = prefetcher.next()) != null) {
+      for (Result r : batch)
+        assertEquals(expected++, Bytes.toInt(r.getRow()));
+    }
+    return expected;
+  }
+
+  @Test(timeout = 10000)
+  public void testPrefetchOnIdleLane() throws Exception {
+    lane = new HTableClientExecutor("test", 2, 8);
+    ScanPrefetcher prefetcher = new ScanPrefetcher(scanner(1005, 0), 10, lane, 3, Long.MAX_VALUE);
+    prefetcher.start();
+    assertEquals(1005, drain(prefetcher));
+    assertTrue(prefetcher.close(1000));
+  }
+
+  @Test(timeout = 10000)
+  public void testSaturatedLaneFetchesOnConsumerThread() throws Exception {
+    lane = new HTableClientExecutor("test", 1, 1);
+    saturate(1, 1);
+    ScanPrefetcher prefetcher = new ScanPrefetcher(scanner(1005, 0), 10, lane, 3, Long.MAX_VALUE);
+    prefetcher.start();
+    assertEquals(1005, drain(prefetcher));
+    // Every batch, including the final short one, was read directly
+    assertEquals(101, prefetcher.getDirectFetches());
+    assertEquals(0, lane.getCallerRuns());
+    assertTrue(prefetcher.close(1000));
+  }
+
+  @Test(timeout = 10000)
+  public void testSaturatedLaneReportsScannerFailure() throws Exception {
+    lane = new HTableClientExecutor("test", 1, 1);
+    saturate(1, 1);
+    ScanPrefetcher prefetcher = new ScanPrefetcher(scanner(1005, 3), 10, lane, 3, Long.MAX_VALUE);
+    prefetcher.start();
+    assertEquals(10, prefetcher.next().length);
+    assertEquals(10, prefetcher.next().length);
+    try {
+      prefetcher.next();
+      fail("expected the scanner failure");
+    } catch (IOException e) {
+      assertEquals("scanner failed", e.getMessage());
+    }
+    assertNull(prefetcher.next());
+  }
+}